@@ -35,6 +35,8 @@ import org.eclipse.swt.widgets.Shell;
 import org.eclipse.ui.PlatformUI;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.rascalmpl.eclipse.editor.ParserCache;
+import org.rascalmpl.eclipse.util.KernelPool;
 
 import io.usethesource.impulse.runtime.PluginBase;
 
@@ -52,6 +54,10 @@ public class Activator extends PluginBase {
 	public void start(BundleContext context) throws Exception {
 		sInstance = this;
 		super.start(context);
+		
+		// starting the compiler kernel takes a while, so we do it before anybody needs it
+		KernelPool.getInstance().warmUp();
+		ParserCache.warmUp();
 	}
 	
   public static ImageDescriptor getRascalImage() {
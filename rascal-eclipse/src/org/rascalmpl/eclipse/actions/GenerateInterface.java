@@ -19,12 +19,12 @@ import org.eclipse.ui.IWorkbenchWindowActionDelegate;
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.IRascalResources;
 import org.rascalmpl.eclipse.editor.commands.AbstractEditorAction;
+import org.rascalmpl.eclipse.util.KernelPool;
 import org.rascalmpl.eclipse.util.ProjectConfig;
 import org.rascalmpl.eclipse.util.ResourcesToModules;
 import org.rascalmpl.library.experiments.Compiler.Commands.Rascal;
 import org.rascalmpl.library.experiments.Compiler.RVM.Interpreter.RVMExecutable;
 import org.rascalmpl.library.experiments.Compiler.RVM.Interpreter.java2rascal.ApiGen;
-import org.rascalmpl.library.experiments.Compiler.RVM.Interpreter.java2rascal.Java2Rascal;
 import org.rascalmpl.library.lang.rascal.boot.IKernel;
 import org.rascalmpl.library.util.PathConfig;
 import org.rascalmpl.uri.URIResolverRegistry;
@@ -62,13 +62,9 @@ public class GenerateInterface extends AbstractEditorAction implements IWorkbenc
                 String moduleName = ResourcesToModules.moduleFromFile(file);
                 IValueFactory vf = ValueFactoryFactory.getValueFactory();
                
-                try {
+                try (KernelPool.Lease lease = KernelPool.getInstance().lease()) {
                     PathConfig pcfg = new ProjectConfig(vf).getPathConfig(file.getProject());
-                    IKernel kernel = Java2Rascal.Builder.bridge(vf, new PathConfig(), IKernel.class)
-                            .trace(false)
-                            .profile(false)
-                            .verbose(false)
-                            .build();
+                    IKernel kernel = lease.get();
 
                     kernel.compileAndLink(vf.string(moduleName), pcfg.asConstructor(kernel), kernel.kw_compileAndLink());
                     ISourceLocation binary = Rascal.findBinary(pcfg.getBin(), moduleName);
@@ -0,0 +1,53 @@
+package org.rascalmpl.eclipse.builder;
+
+import java.io.PrintStream;
+
+/**
+ * Collects some statistics of an incremental build, to show how effective the early cut-off
+ * on unchanged module signatures is.
+ */
+public class BuildReport {
+    private final String project;
+    private final long start = System.currentTimeMillis();
+    private int compiled = 0;
+    private int changedSignatures = 0;
+    private int skipped = 0;
+
+    public BuildReport(String project) {
+        this.project = project;
+    }
+
+    public void compiled(int modules) {
+        compiled += modules;
+    }
+
+    /**
+     * A module was compiled and its exported signature changed, so its dependents are scheduled.
+     */
+    public void signatureChanged() {
+        changedSignatures++;
+    }
+
+    /**
+     * Dependents were not compiled because the signature of the modules they depend on did not change.
+     */
+    public void skipped(int modules) {
+        skipped += modules;
+    }
+
+    /**
+     * Prints the report, unless nothing was compiled; most auto-builds only touch resources which are not modules.
+     */
+    public void print(PrintStream out) {
+        if (compiled > 0) {
+            out.println(toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Rascal build of " + project + ": compiled " + compiled + " module(s), "
+            + changedSignatures + " with a changed signature, skipped " + skipped + " downstream compilation(s) in "
+            + (System.currentTimeMillis() - start) + "ms";
+    }
+}
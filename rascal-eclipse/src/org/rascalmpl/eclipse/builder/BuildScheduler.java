@@ -0,0 +1,111 @@
+package org.rascalmpl.eclipse.builder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.eclipse.builder.ModuleGraph.Component;
+
+/**
+ * Compiles the components of a {@link ModuleGraph} on a shared fork-join pool. A component is
+ * scheduled as soon as all the components it depends on have been compiled, such that independent
+ * parts of a project are compiled at the same time.
+ *
+ * The results are returned in the topological order of the graph, and not in the order of
+ * completion, such that clients can publish them deterministically. When compiling a component fails,
+ * the components which depend on it are not compiled at all, since they would read outdated binaries.
+ */
+public class BuildScheduler {
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    private BuildScheduler() { }
+
+    /**
+     * @return true iff scheduling the given graph could make use of more than one thread
+     */
+    public static boolean isWorthwhile(ModuleGraph<?> graph) {
+        return graph.size() > 1 && pool.getParallelism() > 1;
+    }
+
+    /**
+     * Compiles all components of the graph and waits for them to finish. This must be called from the build
+     * thread, since it is the only thread which is allowed to report progress.
+     *
+     * @param graph     the components to compile
+     * @param compiler  compiles a single component, on a pool thread, and throws an exception if that failed
+     * @param monitor   receives one unit of work per compiled module, and is polled for cancellation
+     * @return the results of all completed components, in topological order
+     */
+    public static <T, R> List<R> compile(ModuleGraph<T> graph, Function<List<T>, R> compiler, IProgressMonitor monitor) {
+        AtomicBoolean canceled = new AtomicBoolean(false);
+        Map<Component<T>, CompletableFuture<R>> futures = new HashMap<>();
+        Set<Component<T>> failed = ConcurrentHashMap.newKeySet();
+        List<Component<T>> skipped = new ArrayList<>();
+        List<R> results = new ArrayList<>(graph.size());
+
+        for (Component<T> comp : graph.getComponents()) {
+            // dependencies always come earlier in the topological order, so their futures exist already
+            CompletableFuture<?>[] deps = comp.getDependencies().stream().map(futures::get).toArray(CompletableFuture<?>[]::new);
+
+            futures.put(comp, CompletableFuture.allOf(deps).thenApplyAsync(ignored -> {
+                if (canceled.get()) {
+                    throw new CancellationException();
+                }
+
+                try {
+                    return compiler.apply(comp.getModules());
+                }
+                catch (RuntimeException e) {
+                    failed.add(comp);
+                    throw e;
+                }
+            }, pool));
+        }
+
+        for (Component<T> comp : graph.getComponents()) {
+            try {
+                results.add(futures.get(comp).get());
+            }
+            catch (ExecutionException e) {
+                if (failed.contains(comp)) {
+                    Activator.log("compilation of " + comp + " failed", e.getCause());
+                }
+                else if (!(e.getCause() instanceof CancellationException)) {
+                    // the failure of a dependency, which was logged already
+                    skipped.add(comp);
+                }
+            }
+            catch (InterruptedException e) {
+                canceled.set(true);
+                Thread.currentThread().interrupt();
+                break;
+            }
+            catch (CancellationException e) {
+                // skipped because an earlier component failed or the build was canceled
+            }
+
+            monitor.worked(comp.getModules().size());
+
+            if (monitor.isCanceled()) {
+                canceled.set(true);
+            }
+        }
+
+        if (!skipped.isEmpty()) {
+            Activator.log("did not compile " + skipped + " because compiling their dependencies failed", null);
+        }
+
+        return results;
+    }
+}
@@ -0,0 +1,291 @@
+package org.rascalmpl.eclipse.builder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.eclipse.util.ProjectConfig;
+
+/**
+ * Records for every module of a project which modules it imports and extends, and the reverse:
+ * which modules import or extend it. The incremental builder uses this to find the modules which
+ * must be recompiled after a change, and it is stored in the bin folder of the project such that
+ * it survives restarts of Eclipse.
+ *
+ * The index is written directly to the file system and not via the workspace API, to avoid triggering
+ * resource change events for a file which nobody but the builder is interested in.
+ */
+public class DependencyIndex {
+    public static final String INDEX_FILE = "rascal.deps";
+    private static final int VERSION = 2;
+
+    private final Map<String, Entry> modules = new HashMap<>();
+    private final Map<IPath, String> files = new HashMap<>();
+    private final Map<String, Set<String>> importers = new HashMap<>();
+    private final Map<String, Set<String>> extenders = new HashMap<>();
+
+    public static class Entry {
+        private final String name;
+        private final IPath file;
+        private final String root;
+        private final ModuleImports imports;
+        private String signature;
+
+        public Entry(String name, IPath file, String root, ModuleImports imports, String signature) {
+            this.name = name;
+            this.file = file;
+            this.root = root;
+            this.imports = imports;
+            this.signature = signature;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the workspace-absolute path of the source file of the module
+         */
+        public IPath getFile() {
+            return file;
+        }
+
+        public IFile getResource() {
+            return ResourcesPlugin.getWorkspace().getRoot().getFile(file);
+        }
+
+        /**
+         * @return the source root (as a location string) which the module was found in
+         */
+        public String getRoot() {
+            return root;
+        }
+
+        public ModuleImports getImports() {
+            return imports;
+        }
+
+        /**
+         * @return the hash of the exported signature of the module as it was last compiled, or null if unknown
+         */
+        public String getSignature() {
+            return signature;
+        }
+
+        public void setSignature(String signature) {
+            this.signature = signature;
+        }
+    }
+
+    /**
+     * Records the dependencies of a module. If the module was indexed before, its last known signature is retained.
+     */
+    public void put(String name, IPath file, String root, ModuleImports imports) {
+        Entry old = modules.get(name);
+        put(name, file, root, imports, old != null ? old.getSignature() : null);
+    }
+
+    private void put(String name, IPath file, String root, ModuleImports imports, String signature) {
+        remove(name);
+
+        Entry entry = new Entry(name, file, root, imports, signature);
+        modules.put(name, entry);
+        files.put(file, name);
+
+        for (String imp : imports.getImports()) {
+            importers.computeIfAbsent(imp, k -> new LinkedHashSet<>()).add(name);
+        }
+
+        for (String ext : imports.getExtends()) {
+            extenders.computeIfAbsent(ext, k -> new LinkedHashSet<>()).add(name);
+        }
+    }
+
+    public void remove(String name) {
+        Entry old = modules.remove(name);
+
+        if (old != null) {
+            files.remove(old.getFile());
+
+            for (String imp : old.getImports().getImports()) {
+                removeFrom(importers, imp, name);
+            }
+
+            for (String ext : old.getImports().getExtends()) {
+                removeFrom(extenders, ext, name);
+            }
+        }
+    }
+
+    private static void removeFrom(Map<String, Set<String>> index, String key, String name) {
+        Set<String> set = index.get(key);
+
+        if (set != null) {
+            set.remove(name);
+
+            if (set.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    public Entry get(String name) {
+        return modules.get(name);
+    }
+
+    /**
+     * @param file workspace-absolute path of a source file
+     * @return the entry of the module which was found in that file, or null
+     */
+    public Entry getByFile(IPath file) {
+        String name = files.get(file);
+        return name != null ? modules.get(name) : null;
+    }
+
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(modules.values());
+    }
+
+    public boolean isEmpty() {
+        return modules.isEmpty();
+    }
+
+    public void clear() {
+        modules.clear();
+        files.clear();
+        importers.clear();
+        extenders.clear();
+    }
+
+    public Set<String> getImporters(String name) {
+        return Collections.unmodifiableSet(importers.getOrDefault(name, Collections.emptySet()));
+    }
+
+    public Set<String> getExtenders(String name) {
+        return Collections.unmodifiableSet(extenders.getOrDefault(name, Collections.emptySet()));
+    }
+
+    /**
+     * @return the modules which directly import or extend the given module
+     */
+    public Set<String> getDependents(String name) {
+        Set<String> result = new LinkedHashSet<>(getImporters(name));
+        result.addAll(getExtenders(name));
+        return result;
+    }
+
+    private static File indexFile(IProject project) {
+        IPath bin = project.getFolder(ProjectConfig.BIN_FOLDER).getLocation();
+        return bin != null ? bin.append(INDEX_FILE).toFile() : null;
+    }
+
+    /**
+     * Reads the index of the given project. If it does not exist or can not be read, an empty index is returned.
+     */
+    public static DependencyIndex load(IProject project) {
+        DependencyIndex index = new DependencyIndex();
+        File file = indexFile(project);
+
+        if (file == null || !file.exists()) {
+            return index;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != VERSION) {
+                return index;
+            }
+
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                IPath path = Path.fromPortableString(in.readUTF());
+                String root = in.readUTF();
+                Set<String> imports = readNames(in);
+                Set<String> extended = readNames(in);
+                String signature = in.readBoolean() ? in.readUTF() : null;
+
+                index.put(name, path, root, new ModuleImports(imports, extended), signature);
+            }
+        }
+        catch (IOException e) {
+            Activator.log("could not read Rascal dependency index of " + project.getName() + ", starting afresh", e);
+            index.clear();
+        }
+
+        return index;
+    }
+
+    private static Set<String> readNames(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Set<String> result = new LinkedHashSet<>(size);
+
+        for (int i = 0; i < size; i++) {
+            result.add(in.readUTF());
+        }
+
+        return result;
+    }
+
+    public void save(IProject project) {
+        File file = indexFile(project);
+
+        if (file == null || !file.getParentFile().exists()) {
+            return;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(VERSION);
+            out.writeInt(modules.size());
+
+            for (Entry e : modules.values()) {
+                out.writeUTF(e.getName());
+                out.writeUTF(e.getFile().toPortableString());
+                out.writeUTF(e.getRoot());
+                writeNames(out, e.getImports().getImports());
+                writeNames(out, e.getImports().getExtends());
+                out.writeBoolean(e.getSignature() != null);
+
+                if (e.getSignature() != null) {
+                    out.writeUTF(e.getSignature());
+                }
+            }
+        }
+        catch (IOException e) {
+            Activator.log("could not write Rascal dependency index of " + project.getName(), e);
+        }
+    }
+
+    private static void writeNames(DataOutputStream out, Set<String> names) throws IOException {
+        out.writeInt(names.size());
+
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    public static void delete(IProject project) {
+        File file = indexFile(project);
+
+        if (file != null && file.exists()) {
+            file.delete();
+        }
+    }
+}
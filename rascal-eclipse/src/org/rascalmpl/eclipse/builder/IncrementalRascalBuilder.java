@@ -2,15 +2,24 @@ package org.rascalmpl.eclipse.builder;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
-import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceDelta;
@@ -19,29 +28,27 @@ import org.eclipse.core.resources.IResourceVisitor;
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.ICoreRunnable;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
-import org.osgi.framework.Bundle;
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.IRascalResources;
 import org.rascalmpl.eclipse.editor.IDEServicesModelProvider;
 import org.rascalmpl.eclipse.editor.MessagesToMarkers;
+import org.rascalmpl.eclipse.editor.SummaryStore;
 import org.rascalmpl.eclipse.preferences.RascalPreferences;
+import org.rascalmpl.eclipse.util.KernelPool;
 import org.rascalmpl.eclipse.util.ProjectConfig;
 import org.rascalmpl.eclipse.util.RascalEclipseManifest;
-import org.rascalmpl.library.experiments.Compiler.RVM.Interpreter.java2rascal.Java2Rascal;
 import org.rascalmpl.library.lang.rascal.boot.IKernel;
 import org.rascalmpl.library.util.PathConfig;
 import org.rascalmpl.uri.ProjectURIResolver;
 import org.rascalmpl.uri.URIResolverRegistry;
-import org.rascalmpl.uri.URIUtil;
 import org.rascalmpl.values.ValueFactoryFactory;
 
-import io.usethesource.impulse.builder.MarkerCreator;
 import io.usethesource.impulse.runtime.RuntimePlugin;
 import io.usethesource.vallang.IConstructor;
 import io.usethesource.vallang.IList;
@@ -56,46 +63,38 @@ import io.usethesource.vallang.IValueFactory;
  * It also interacts with Project Clean actions to clear up files and markers on request.  
  */
 public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
-    private static ThreadLocal<IKernel> kernel = new ThreadLocal<IKernel>() {
-        protected IKernel initialValue() {
-            try {
-                PrintStream out = new PrintStream(RuntimePlugin.getInstance().getConsoleStream());
-                PrintStream err = new PrintStream(RuntimePlugin.getInstance().getConsoleStream());
-                IValueFactory vf = ValueFactoryFactory.getValueFactory();
-                
-                Bundle rascalBundle = Activator.getInstance().getBundle();
-                URL entry = FileLocator.toFileURL(rascalBundle.getEntry("lib/rascal.jar"));
-                ISourceLocation rascalJarLoc = vf.sourceLocation(URIUtil.fromURL(entry));
-                PathConfig pcfg = new PathConfig()
-                        .addJavaCompilerPath(rascalJarLoc)
-                        .addClassloader(rascalJarLoc);
-                        
-                return Java2Rascal.Builder
-                        .bridge(vf, pcfg, IKernel.class)
-                        .stderr(err)
-                        .stdout(out)
-                        .build();
-            } catch (IOException | URISyntaxException e) {
-                Activator.log("could not initialize incremental Rascal builder", e);
-                return null;
-            }
-        }
-    };
-    
     private IValueFactory vf = ValueFactoryFactory.getValueFactory();
     private List<String> binaryExtension = Arrays.asList("imps","rvm", "rvmx", "tc","sig","sigs");
     
     private ISourceLocation projectLoc;
     private PathConfig pathConfig;
+    private DependencyIndex index;
+    private final MarkerSink markers = new MarkerSink(IRascalResources.ID_RASCAL_MARKER, new MessagesToMarkers());
+    
+    private static class ConsoleHolder {
+        /** shared by all builds, since the console stream itself stays open for the life time of the workbench */
+        static final PrintStream sOut = new PrintStream(RuntimePlugin.getInstance().getConsoleStream(), true);
+    }
 
     public IncrementalRascalBuilder() { }
 
 	@Override
 	protected void clean(IProgressMonitor monitor) throws CoreException {
 		cleanBinFiles(monitor);
+		SummaryStore.delete(getProject(), monitor);
 		cleanProblemMarkers(monitor);
+		cleanDependencyIndex();
 	}
 
+    private void cleanDependencyIndex() {
+        DependencyIndex.delete(getProject());
+        ReferenceIndex.getInstance().removeProject(getProject());
+        
+        if (index != null) {
+            index.clear();
+        }
+    }
+
     private void cleanProblemMarkers(IProgressMonitor monitor) throws CoreException {
         RascalEclipseManifest manifest = new RascalEclipseManifest();
         
@@ -157,6 +156,9 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
 	    
 	    
         project.getWorkspace().run(runner, project,  IWorkspace.AVOID_UPDATE, monitor);
+        
+        // the summaries which the editors were using are now outdated
+        IDEServicesModelProvider.getInstance().refreshInvalidated();
 
 	    // TODO: return project this project depends on?
 		return new IProject[0];
@@ -176,21 +178,27 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
 	    initializeParameters(false);
 	    
 	    try {
-	        for (IValue srcv : pathConfig.getSrcs()) {
-	            ISourceLocation src = (ISourceLocation) srcv;
-
+	        for (ISourceLocation src : getProjectSourceRoots(pathConfig)) {
 	            if (!URIResolverRegistry.getInstance().isDirectory(src)) {
 	                Activator.log("Source config is not a directory?", new IllegalArgumentException(src.toString()));
 	                continue;
 	            }
 
-	            // the pathConfig source path currently still contains library sources,
-	            // which we want to compile on-demand only:
-	            if (src.getScheme().equals("project") && src.getAuthority().equals(projectLoc.getAuthority())) {
-	                IList programs = kernel.get().compileAll((ISourceLocation) srcv, pathConfig.asConstructor(kernel.get()), kernel.get().kw_compile());
+	            try (KernelPool.Lease lease = KernelPool.getInstance().lease()) {
+	                IKernel kernel = lease.get();
+	                IList programs = kernel.compileAll(src, pathConfig.asConstructor(kernel), kernel.kw_compile());
 	                markErrors(programs);
 	            }
 	        }
+	        
+	        markers.flush(monitor);
+	        
+	        index.clear();
+	        Map<String, ModuleWork> modules = indexModules(collectModules(getProjectSourceRoots(pathConfig)));
+	        recordSignatures(modules.keySet());
+	        index.save(getProject());
+	        
+	        ReferenceIndex.getInstance().update(getProject(), getLocations(modules.values()));
 	    }
 	    catch (Throwable e) {
 	        Activator.log("error during compilation of project " + projectLoc, e);
@@ -199,6 +207,48 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
 	        monitor.done();
 	    }
 	}
+	
+	/**
+	 * @return the source roots of the current project; the pathConfig source path also contains library sources,
+	 * which we want to compile on-demand only.
+	 */
+	private List<ISourceLocation> getProjectSourceRoots(PathConfig pcfg) {
+	    List<ISourceLocation> result = new LinkedList<>();
+	    
+	    for (IValue srcv : pcfg.getSrcs()) {
+	        ISourceLocation src = (ISourceLocation) srcv;
+	        
+	        if (src.getScheme().equals("project") && src.getAuthority().equals(projectLoc.getAuthority())) {
+	            result.add(src);
+	        }
+	    }
+	    
+	    return result;
+	}
+	
+	private List<ModuleWork> collectModules(List<ISourceLocation> roots) throws CoreException {
+	    List<ModuleWork> result = new LinkedList<>();
+	    
+	    for (ISourceLocation root : roots) {
+	        IResource folder = getProject().findMember(root.getPath());
+	        
+	        if (folder != null && folder.exists()) {
+	            folder.accept(new IResourceVisitor() {
+	                @Override
+	                public boolean visit(IResource resource) throws CoreException {
+	                    if (IRascalResources.RASCAL_EXT.equals(resource.getFileExtension()) && resource instanceof IFile) {
+	                        result.add(new ModuleWork((IFile) resource));
+	                        return false;
+	                    }
+	                    
+	                    return true;
+	                }
+	            });
+	        }
+	    }
+	    
+	    return result;
+	}
 
 	private static class ModuleWork {
 	    public IFile file;
@@ -215,10 +265,6 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
 	        return getLocation() != null;
 	    }
 
-        public void deleteMarkers() throws CoreException {
-            file.deleteMarkers(IRascalResources.ID_RASCAL_MARKER, true, IFile.DEPTH_ZERO);
-        }
-
         public void clearUseDefCache() {
             IDEServicesModelProvider.getInstance().clearSummaryCache(getLocation());
         }
@@ -227,21 +273,24 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
     private static class WorkCollector implements IResourceDeltaVisitor {
         private boolean metaDataChanged = false;
         private List<ModuleWork> dirty = new LinkedList<>();
+        private List<IPath> removed = new LinkedList<>();
         
         /**
          * Analyzes what to do based on a set of changed resources
          * 
          * @param delta the input model of changed resources in Eclipse
          * @param todo  an output parameter which will contain the worklist
-         * @return true iff the whole project must be cleaned for some reason
+         * @param removed an output parameter which will contain the workspace paths of deleted modules
+         * @return true iff the source configuration of the project has changed
          */
-        public static boolean fillWorkList(IResourceDelta delta, List<ModuleWork> todo) {
+        public static boolean fillWorkList(IResourceDelta delta, List<ModuleWork> todo, List<IPath> removed) {
             assert todo.isEmpty();
 
             try {
                 WorkCollector c = new WorkCollector();
                 delta.accept(c);
                 todo.addAll(c.dirty);
+                removed.addAll(c.removed);
                 return c.metaDataChanged;
             } catch (CoreException e) {
                 Activator.log("incremental builder failed", e);
@@ -258,7 +307,12 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
                 return false;
             }
             else if (IRascalResources.RASCAL_EXT.equals(path.getFileExtension() /* could be null */)) {
-                if ((delta.getFlags() & IResourceDelta.CONTENT) == 0) {
+                if (delta.getKind() == IResourceDelta.REMOVED) {
+                    removed.add(delta.getFullPath());
+                    return false;
+                }
+                
+                if (delta.getKind() != IResourceDelta.ADDED && (delta.getFlags() & IResourceDelta.CONTENT) == 0) {
                     return false;
                 }
                 
@@ -287,14 +341,13 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
         
         try {
             List<ModuleWork> todo = new LinkedList<>();
+            List<IPath> removed = new LinkedList<>();
 
-            if (WorkCollector.fillWorkList(delta, todo)) {
-                clean(monitor);
-                initializeParameters(true);
-                buildWholeProject(monitor);
+            if (WorkCollector.fillWorkList(delta, todo, removed)) {
+                buildChangedConfiguration(monitor);
             }
             else {
-                buildDirty(todo, monitor);
+                buildDirty(todo, removed, monitor);
             }
         } catch (CoreException e) {
             Activator.log("incremental Rascal build failed", e);
@@ -305,33 +358,349 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
         return "rascal".equals(getProject().getName());
     }
     
-    private void buildDirty(List<ModuleWork> todo, IProgressMonitor monitor) {
+    /**
+     * When RASCAL.MF changes we only invalidate the modules which are affected by moved source
+     * or library roots, instead of rebuilding the whole project.
+     */
+    private void buildChangedConfiguration(IProgressMonitor monitor) throws CoreException {
+        PathConfig old = pathConfig;
+        initializeParameters(true);
+        
+        if (old == null || index.isEmpty() || !old.getBin().equals(pathConfig.getBin())) {
+            clean(monitor);
+            buildWholeProject(monitor);
+            return;
+        }
+        
+        Set<String> oldRoots = new HashSet<>();
+        Set<String> newRoots = new HashSet<>();
+        getProjectSourceRoots(old).forEach(l -> oldRoots.add(l.getURI().toString()));
+        List<ISourceLocation> added = new LinkedList<>();
+        
+        for (ISourceLocation root : getProjectSourceRoots(pathConfig)) {
+            newRoots.add(root.getURI().toString());
+            
+            if (!oldRoots.contains(root.getURI().toString())) {
+                added.add(root);
+            }
+        }
+        
+        boolean libsChanged = !old.getLibs().equals(pathConfig.getLibs());
+        List<String> gone = new LinkedList<>();
+        List<ModuleWork> todo = new LinkedList<>();
+        
+        for (DependencyIndex.Entry entry : index.getEntries()) {
+            if (!newRoots.contains(entry.getRoot())) {
+                gone.add(entry.getName());
+            }
+            else if (libsChanged && entry.getResource().exists() && entry.getImports().getDependencies().stream().anyMatch(d -> index.get(d) == null)) {
+                // this module depends on a library module, which may now be resolved differently
+                todo.add(new ModuleWork(entry.getResource()));
+            }
+        }
+        
+        todo.addAll(removeModules(gone, monitor));
+        todo.addAll(collectModules(added));
+        
+        buildWithDependents(todo, monitor);
+    }
+    
+    /**
+     * Removes the given modules from the index, together with their markers and binaries.
+     * @return the modules which depend on the removed modules
+     */
+    private List<ModuleWork> removeModules(List<String> names, IProgressMonitor monitor) throws CoreException {
+        Set<String> dependents = new HashSet<>();
+        
+        for (String name : names) {
+            DependencyIndex.Entry entry = index.get(name);
+            
+            if (entry == null) {
+                continue;
+            }
+            
+            IFile file = entry.getResource();
+            
+            if (file.exists()) {
+                file.deleteMarkers(IRascalResources.ID_RASCAL_MARKER, true, IFile.DEPTH_ZERO);
+            }
+            
+            ISourceLocation loc = ProjectURIResolver.constructProjectURI(entry.getFile());
+            IDEServicesModelProvider.getInstance().clearSummaryCache(loc);
+            ReferenceIndex.getInstance().remove(loc);
+            deleteBinaries(name, monitor);
+            dependents.addAll(index.getDependents(name));
+            index.remove(name);
+        }
+        
+        dependents.removeAll(names);
+        return toWork(dependents);
+    }
+    
+    private void deleteBinaries(String moduleName, IProgressMonitor monitor) throws CoreException {
+        IFolder bin = getProject().getFolder(ProjectConfig.BIN_FOLDER);
+        IPath base = new Path(moduleName.replaceAll("::", "/"));
+        
+        for (String ext : binaryExtension) {
+            IFile file = bin.getFile(base.addFileExtension(ext));
+            
+            if (file.exists()) {
+                file.delete(true, monitor);
+            }
+        }
+    }
+    
+    private List<ModuleWork> toWork(Collection<String> names) {
+        List<ModuleWork> result = new LinkedList<>();
+        
+        for (String name : names) {
+            DependencyIndex.Entry entry = index.get(name);
+            
+            if (entry != null && entry.getResource().exists()) {
+                result.add(new ModuleWork(entry.getResource()));
+            }
+        }
+        
+        return result;
+    }
+    
+    private void buildDirty(List<ModuleWork> todo, List<IPath> removed, IProgressMonitor monitor) {
         try {
             initializeParameters(false);
-            cleanChangedModules(todo, monitor);
-            buildChangedModules(todo, monitor);
+            
+            List<String> gone = new LinkedList<>();
+            for (IPath path : removed) {
+                DependencyIndex.Entry entry = index.getByFile(path);
+                
+                if (entry != null) {
+                    gone.add(entry.getName());
+                }
+            }
+            
+            todo.addAll(removeModules(gone, monitor));
+            buildWithDependents(todo, monitor);
         } catch (Throwable e) {
             Activator.log("exception during increment Rascal build on " + getProject(), e);
         }
     }
+    
+    /**
+     * Compiles the given modules, and then repeatedly the modules which depend on a module 
+     * of which the signature changed by this compilation, until nothing changes anymore.
+     * 
+     * A module which was compiled in an earlier wave is compiled again when one of its dependencies changes
+     * later on; the modules of a single wave are ordered by their imports, so they already see each other's changes.
+     */
+    private void buildWithDependents(List<ModuleWork> todo, IProgressMonitor monitor) throws CoreException {
+        BuildReport report = new BuildReport(getProject().getName());
+        IPath bin = getProject().getFolder(ProjectConfig.BIN_FOLDER).getLocation();
+        Set<String> done = new HashSet<>();
+        Set<String> cutoff = new HashSet<>();
+        List<ModuleWork> wave = todo;
+        Set<ISourceLocation> compiled = new LinkedHashSet<>();
+        // every wave but the first needs a changed signature, so a chain of them is never longer than the project
+        int waves = 0;
+        
+        while (!wave.isEmpty() && !monitor.isCanceled()) {
+            if (waves++ > index.getEntries().size()) {
+                Activator.log("the signatures of " + getLocations(wave) + " keep changing, stopped compiling them", null);
+                break;
+            }
+            
+            Map<String, ModuleWork> modules = indexModules(wave);
+            compiled.addAll(getLocations(modules.values()));
+            
+            cleanChangedModules(wave, monitor);
+            buildChangedModules(modules, monitor);
+            report.compiled(modules.size());
+            
+            Set<String> next = new HashSet<>();
+            for (String name : modules.keySet()) {
+                DependencyIndex.Entry entry = index.get(name);
+                
+                if (entry == null) {
+                    continue;
+                }
+                
+                String signature = bin != null ? ModuleSignature.hash(bin, name) : null;
+                
+                // an unknown signature only counts as a change once, or failing modules in a cycle would keep going
+                boolean changed = signature == null ? !done.contains(name) : !signature.equals(entry.getSignature());
+                
+                if (changed) {
+                    report.signatureChanged();
+                    next.addAll(index.getDependents(name));
+                }
+                else {
+                    cutoff.addAll(index.getDependents(name));
+                }
+                
+                entry.setSignature(signature);
+            }
+            
+            done.addAll(modules.keySet());
+            next.removeAll(modules.keySet());
+            wave = toWork(next);
+        }
+        
+        cutoff.removeAll(done);
+        report.skipped(cutoff.size());
+        report.print(ConsoleHolder.sOut);
+        
+        index.save(getProject());
+        ReferenceIndex.getInstance().update(getProject(), compiled);
+    }
+    
+    private static List<ISourceLocation> getLocations(Collection<ModuleWork> modules) {
+        List<ISourceLocation> result = new ArrayList<>(modules.size());
+        
+        for (ModuleWork mod : modules) {
+            result.add(mod.getLocation());
+        }
+        
+        return result;
+    }
+    
+    private void recordSignatures(Collection<String> names) {
+        IPath bin = getProject().getFolder(ProjectConfig.BIN_FOLDER).getLocation();
+        
+        for (String name : names) {
+            DependencyIndex.Entry entry = index.get(name);
+            
+            if (entry != null && bin != null) {
+                entry.setSignature(ModuleSignature.hash(bin, name));
+            }
+        }
+    }
+    
+    /**
+     * Scans the imports of the given modules and records them in the dependency index.
+     * @return the modules by their qualified name 
+     */
+    private Map<String, ModuleWork> indexModules(List<ModuleWork> todo) {
+        Map<String, ModuleWork> modules = new TreeMap<>();
+        
+        for (ModuleWork mod : todo) {
+            if (!mod.isValidModule()) {
+                continue;
+            }
+            
+            ISourceLocation loc = mod.getLocation();
+            
+            try {
+                String name = pathConfig.getModuleName(loc);
+                modules.put(name, mod);
+                index.put(name, mod.file.getFullPath(), getSourceRoot(loc), ModuleImports.scan(mod.file));
+            }
+            catch (IOException | CoreException e) {
+                // the compiler will report the problem, here we just lose the dependency information
+                modules.put(loc.toString(), mod);
+            }
+        }
+        
+        return modules;
+    }
+    
+    private String getSourceRoot(ISourceLocation loc) {
+        for (ISourceLocation root : getProjectSourceRoots(pathConfig)) {
+            String path = root.getPath().endsWith("/") ? root.getPath() : root.getPath() + "/";
+            
+            if (loc.getPath().startsWith(path)) {
+                return root.getURI().toString();
+            }
+        }
+        
+        return "";
+    }
 
-    private void buildChangedModules(List<ModuleWork> todo, IProgressMonitor monitor) throws CoreException {
+    private void buildChangedModules(Map<String, ModuleWork> todo, IProgressMonitor monitor) throws CoreException {
         monitor.beginTask("Compiling changed Rascal modules", todo.size());
         
-        IList locs = getModuleLocations(todo);
+        ModuleGraph<ModuleWork> graph = getModuleGraph(todo);
         
         try {
-            if (!locs.isEmpty()) {
-                IList results = kernel.get().compile(locs, pathConfig.asConstructor(kernel.get()), kernel.get().kw_compile());
-                markErrors(results);
+            if (BuildScheduler.isWorthwhile(graph)) {
+                // the pool threads can not acquire the scheduling rules which this build thread is holding,
+                // so they write their binaries directly to the file system and we refresh the bin folder afterwards.
+                IFolder bin = getProject().getFolder(ProjectConfig.BIN_FOLDER);
+                PathConfig detached = detachFromWorkspace(pathConfig, bin);
+                
+                List<IList> results = BuildScheduler.compile(graph, modules -> compile(modules, detached), monitor);
+                bin.refreshLocal(IResource.DEPTH_INFINITE, monitor);
+                
+                for (IList programs : results) {
+                    markErrors(programs);
+                }
+            }
+            else {
+                IList locs = getModuleLocations(new ArrayList<>(todo.values()));
+
+                if (!locs.isEmpty()) {
+                    try (KernelPool.Lease lease = KernelPool.getInstance().lease()) {
+                        IKernel kernel = lease.get();
+                        IList results = kernel.compile(locs, pathConfig.asConstructor(kernel), kernel.kw_compile());
+                        markErrors(results);
+                    }
+                }
+                
+                // this shares the locking of the project for efficiency's sake
+                monitor.worked(todo.size());
             }
         } 
         catch (Throwable e) {
             Activator.log("Unexpected error during compilation:" + e.getMessage(), e);
         }
         
-        // this shares the locking of the project for efficiency's sake
-        monitor.worked(todo.size());
+        // all markers of this round of compilation are published in a single batch
+        markers.flush(monitor);
+    }
+
+    private IList compile(List<ModuleWork> modules, PathConfig pcfg) {
+        IList locs = getModuleLocations(modules);
+        
+        if (locs.isEmpty()) {
+            return vf.list();
+        }
+        
+        try (KernelPool.Lease lease = KernelPool.getInstance().lease()) {
+            IKernel kernel = lease.get();
+            return kernel.compile(locs, pcfg.asConstructor(kernel), kernel.kw_compile());
+        }
+        catch (IOException e) {
+            // failing makes the scheduler log it and skip the modules which depend on these
+            throw new UncheckedIOException(e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+    
+    private ModuleGraph<ModuleWork> getModuleGraph(Map<String, ModuleWork> modules) {
+        Map<String, Set<String>> imports = new HashMap<>();
+        
+        // the modules which are not recompiled still order the ones which are, via their own imports
+        for (DependencyIndex.Entry entry : index.getEntries()) {
+            imports.put(entry.getName(), entry.getImports().getDependencies());
+        }
+        
+        return new ModuleGraph<>(modules, imports);
+    }
+    
+    /**
+     * Produces a copy of the given path configuration which writes binaries to the file system location of the bin
+     * folder, rather than via the workspace API.
+     */
+    private PathConfig detachFromWorkspace(PathConfig pcfg, IFolder bin) throws URISyntaxException {
+        ISourceLocation projectBin = pcfg.getBin();
+        ISourceLocation fileBin = vf.sourceLocation("file", "", bin.getLocation().toString() + "/");
+        IListWriter libs = vf.listWriter();
+        
+        for (IValue lib : pcfg.getLibs()) {
+            libs.append(lib.equals(projectBin) ? fileBin : lib);
+        }
+        
+        return new PathConfig(pcfg.getSrcs(), libs.done(), fileBin, pcfg.getBoot(), pcfg.getCourses(), pcfg.getJavaCompilerPath(), pcfg.getClassloaders());
     }
 
     private IList getModuleLocations(List<ModuleWork> todo) {
@@ -347,7 +716,8 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
     private void cleanChangedModules(List<ModuleWork> todo, IProgressMonitor monitor) throws CoreException {
         monitor.beginTask("Cleaning old errors", todo.size());
         for (ModuleWork mod : todo) {
-            mod.deleteMarkers();
+            // old markers are replaced (or removed) when the new messages are flushed after compilation
+            markers.expect(mod.file);
             mod.clearUseDefCache();
         }
         monitor.worked(todo.size());
@@ -383,8 +753,7 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
             Activator.log("Unexpected Rascal compiler result: " + result, new IllegalArgumentException());
         }
         
-        new MessagesToMarkers().process(loc, (ISet) result.get("messages"), 
-                new MarkerCreator(new ProjectURIResolver().resolveFile(loc), IRascalResources.ID_RASCAL_MARKER));
+        markers.add(new ProjectURIResolver().resolveFile(loc), loc, (ISet) result.get("messages"));
     }
 
     private void initializeParameters(boolean force) throws CoreException {
@@ -396,5 +765,15 @@ public class IncrementalRascalBuilder extends IncrementalProjectBuilder {
         
         projectLoc = ProjectURIResolver.constructProjectURI(project.getFullPath());
         pathConfig = IDEServicesModelProvider.getInstance().getPathConfig(project);
+        
+        if (index == null) {
+            index = DependencyIndex.load(project);
+            
+            if (index.isEmpty()) {
+                // first build after an upgrade or after a clean: only the imports are scanned here,
+                // nothing is compiled
+                indexModules(collectModules(getProjectSourceRoots(pathConfig)));
+            }
+        }
     }
 }
@@ -0,0 +1,178 @@
+package org.rascalmpl.eclipse.builder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
+import org.rascalmpl.eclipse.editor.MessagesTo;
+
+import io.usethesource.vallang.IConstructor;
+import io.usethesource.vallang.ISet;
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IString;
+import io.usethesource.vallang.IValue;
+import io.usethesource.vallang.type.Type;
+
+/**
+ * Collects the messages of a build for a number of files, and then updates the markers of all these files
+ * in a single workspace operation. Only the difference with the markers which are already on a file is applied:
+ * unchanged markers are left alone, such that a build which produces the same warnings as before does not
+ * generate any resource change events at all.
+ */
+public class MarkerSink {
+    private static final String[] KEY_ATTRIBUTES = { IMarker.MESSAGE, IMarker.SEVERITY, IMarker.CHAR_START, IMarker.CHAR_END, IMarker.LINE_NUMBER };
+
+    private final String markerType;
+    private final MessagesTo messagesTo;
+    private final Map<IFile, List<Map<String, Object>>> pending = new LinkedHashMap<>();
+
+    public MarkerSink(String markerType, MessagesTo messagesTo) {
+        this.markerType = markerType;
+        this.messagesTo = messagesTo;
+    }
+
+    /**
+     * Registers a file of which the markers must be replaced on flush, even if no messages are added for it.
+     */
+    public void expect(IFile file) {
+        pending.computeIfAbsent(file, f -> new ArrayList<>());
+    }
+
+    /**
+     * Adds the messages in the given set which are located in the file of the given location.
+     */
+    public void add(IFile file, ISourceLocation fileLoc, ISet messages) {
+        List<Map<String, Object>> markers = pending.computeIfAbsent(file, f -> new ArrayList<>());
+        Type elemType = messages.getType().getElementType();
+
+        if (!elemType.isAbstractData() || !elemType.getName().equals("Message")) {
+            return;
+        }
+
+        for (IValue messagev : messages) {
+            IConstructor message = (IConstructor) messagev;
+            ISourceLocation loc = (ISourceLocation) message.get(1);
+
+            if (loc.getPath().equals(fileLoc.getPath())) {
+                markers.add(attributes(((IString) message.get(0)).getValue(), messagesTo.getSeverity(message), loc));
+            }
+        }
+    }
+
+    /**
+     * Adds a single message, for example about a parse error, which is not a Message value.
+     */
+    public void add(IFile file, String message, int severity, ISourceLocation loc) {
+        pending.computeIfAbsent(file, f -> new ArrayList<>()).add(attributes(message, severity, loc));
+    }
+
+    private static Map<String, Object> attributes(String message, int severity, ISourceLocation loc) {
+        Map<String, Object> attrs = new HashMap<>();
+        attrs.put(IMarker.MESSAGE, message);
+        attrs.put(IMarker.SEVERITY, severity);
+        attrs.put(IMarker.PRIORITY, IMarker.PRIORITY_HIGH);
+
+        if (loc.hasOffsetLength()) {
+            attrs.put(IMarker.CHAR_START, loc.getOffset());
+            attrs.put(IMarker.CHAR_END, loc.getOffset() + loc.getLength());
+        }
+
+        if (loc.hasLineColumn()) {
+            attrs.put(IMarker.LINE_NUMBER, loc.getBeginLine());
+        }
+
+        return attrs;
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Applies all pending changes in one batch, and empties the sink.
+     */
+    public void flush(IProgressMonitor monitor) throws CoreException {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<IFile, List<Map<String, Object>>> work = new LinkedHashMap<>(pending);
+        pending.clear();
+
+        IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        ISchedulingRule rule = null;
+
+        for (IFile file : work.keySet()) {
+            rule = MultiRule.combine(rule, workspace.getRuleFactory().markerRule(file));
+        }
+
+        IWorkspaceRunnable update = new IWorkspaceRunnable() {
+            @Override
+            public void run(IProgressMonitor monitor) throws CoreException {
+                for (Map.Entry<IFile, List<Map<String, Object>>> entry : work.entrySet()) {
+                    if (entry.getKey().exists()) {
+                        update(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        };
+
+        workspace.run(update, rule, IWorkspace.AVOID_UPDATE, monitor);
+    }
+
+    private void update(IFile file, List<Map<String, Object>> wanted) throws CoreException {
+        Map<List<Object>, Map<String, Object>> todo = new LinkedHashMap<>();
+
+        for (Map<String, Object> attrs : wanted) {
+            todo.put(key(attrs), attrs);
+        }
+
+        Set<List<Object>> kept = new HashSet<>();
+
+        for (IMarker existing : file.findMarkers(markerType, true, IResource.DEPTH_ZERO)) {
+            List<Object> key = key(existing.getAttributes(KEY_ATTRIBUTES));
+
+            if (todo.containsKey(key) && kept.add(key)) {
+                // this marker is still valid, leave it alone
+                continue;
+            }
+
+            existing.delete();
+        }
+
+        for (Map.Entry<List<Object>, Map<String, Object>> entry : todo.entrySet()) {
+            if (!kept.contains(entry.getKey())) {
+                file.createMarker(markerType).setAttributes(entry.getValue());
+            }
+        }
+    }
+
+    private static List<Object> key(Map<String, Object> attrs) {
+        List<Object> key = new ArrayList<>(KEY_ATTRIBUTES.length);
+
+        for (String attr : KEY_ATTRIBUTES) {
+            key.add(attrs.get(attr));
+        }
+
+        return key;
+    }
+
+    private static List<Object> key(Object[] values) {
+        return Arrays.asList(values);
+    }
+}
@@ -0,0 +1,192 @@
+package org.rascalmpl.eclipse.builder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The import graph between a set of modules, split into strongly connected components.
+ * Modules which import each other (directly or indirectly) end up in the same component and must
+ * be compiled together; components which do not depend on each other may be compiled at the same time.
+ *
+ * The graph is ordered by the transitive imports of the whole project, restricted to the given set: when C imports B
+ * and B imports A, then C depends on A even if B is not in the set, because compiling C reads the binaries of B,
+ * which depend on those of A.
+ */
+public class ModuleGraph<T> {
+    private final List<Component<T>> components = new ArrayList<>();
+
+    public static class Component<T> {
+        private final int index;
+        private final List<String> names = new ArrayList<>();
+        private final List<T> modules = new ArrayList<>();
+        private final Set<Component<T>> dependencies = new LinkedHashSet<>();
+
+        private Component(int index) {
+            this.index = index;
+        }
+
+        /**
+         * @return the position of this component in the topological order of the graph
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public List<String> getNames() {
+            return Collections.unmodifiableList(names);
+        }
+
+        public List<T> getModules() {
+            return Collections.unmodifiableList(modules);
+        }
+
+        /**
+         * @return the components which must be compiled before this one
+         */
+        public Set<Component<T>> getDependencies() {
+            return Collections.unmodifiableSet(dependencies);
+        }
+
+        @Override
+        public String toString() {
+            return names.toString();
+        }
+    }
+
+    /**
+     * @param modules maps module names to the modules to compile
+     * @param imports maps the names of all modules of the project, not only those to compile, to the names of the
+     *                modules they import or extend
+     */
+    public ModuleGraph(Map<String, T> modules, Map<String, Set<String>> imports) {
+        // sorting the names makes the order of the components deterministic
+        new Tarjan<>(new TreeMap<>(modules), imports, components).run();
+    }
+
+    /**
+     * @return all components, such that every component comes after the components it depends on
+     */
+    public List<Component<T>> getComponents() {
+        return Collections.unmodifiableList(components);
+    }
+
+    public int size() {
+        return components.size();
+    }
+
+    private static class Tarjan<T> {
+        private final TreeMap<String, T> modules;
+        private final Map<String, Set<String>> imports;
+        private final List<Component<T>> result;
+        private final Map<String, Integer> index = new HashMap<>();
+        private final Map<String, Integer> lowlink = new HashMap<>();
+        private final Map<String, Component<T>> componentOf = new HashMap<>();
+        private final Map<String, Set<String>> successors = new HashMap<>();
+        private final Deque<String> stack = new ArrayDeque<>();
+        private final Set<String> onStack = new LinkedHashSet<>();
+        private int counter = 0;
+
+        public Tarjan(TreeMap<String, T> modules, Map<String, Set<String>> imports, List<Component<T>> result) {
+            this.modules = modules;
+            this.imports = imports;
+            this.result = result;
+        }
+
+        public void run() {
+            for (String name : modules.keySet()) {
+                if (!index.containsKey(name)) {
+                    connect(name);
+                }
+            }
+        }
+
+        /**
+         * @return the modules in the graph which the given module reaches via modules which are not in the graph
+         */
+        private Set<String> successors(String name) {
+            return successors.computeIfAbsent(name, n -> {
+                Set<String> succ = new LinkedHashSet<>();
+                Set<String> visited = new HashSet<>();
+                Deque<String> todo = new ArrayDeque<>();
+                todo.push(n);
+
+                while (!todo.isEmpty()) {
+                    for (String imp : imports.getOrDefault(todo.pop(), Collections.emptySet())) {
+                        if (!visited.add(imp)) {
+                            continue;
+                        }
+
+                        if (modules.containsKey(imp)) {
+                            // the imports of imp are covered by the edges of imp itself
+                            if (!imp.equals(n)) {
+                                succ.add(imp);
+                            }
+                        }
+                        else {
+                            todo.push(imp);
+                        }
+                    }
+                }
+
+                return succ;
+            });
+        }
+
+        private void connect(String name) {
+            index.put(name, counter);
+            lowlink.put(name, counter);
+            counter++;
+            stack.push(name);
+            onStack.add(name);
+
+            for (String next : successors(name)) {
+                if (!index.containsKey(next)) {
+                    connect(next);
+                    lowlink.put(name, Math.min(lowlink.get(name), lowlink.get(next)));
+                }
+                else if (onStack.contains(next)) {
+                    lowlink.put(name, Math.min(lowlink.get(name), index.get(next)));
+                }
+            }
+
+            if (lowlink.get(name).equals(index.get(name))) {
+                // Tarjan completes components in reverse topological order of the import edges,
+                // which means imported components are always completed before their importers.
+                Component<T> comp = new Component<>(result.size());
+                String member;
+
+                do {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    componentOf.put(member, comp);
+                    comp.names.add(member);
+                } while (!member.equals(name));
+
+                Collections.sort(comp.names);
+
+                for (String n : comp.names) {
+                    comp.modules.add(modules.get(n));
+
+                    for (String imp : successors(n)) {
+                        Component<T> dep = componentOf.get(imp);
+
+                        if (dep != comp) {
+                            comp.dependencies.add(dep);
+                        }
+                    }
+                }
+
+                result.add(comp);
+            }
+        }
+    }
+}
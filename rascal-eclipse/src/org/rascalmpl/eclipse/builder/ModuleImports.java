@@ -0,0 +1,246 @@
+package org.rascalmpl.eclipse.builder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.rascalmpl.eclipse.editor.ParserCache;
+import org.rascalmpl.parser.Parser;
+import org.rascalmpl.parser.gtd.exception.ParseError;
+import org.rascalmpl.values.uptr.ITree;
+import org.rascalmpl.values.uptr.TreeAdapter;
+
+import io.usethesource.vallang.IValue;
+
+/**
+ * Finds the names of the modules which a Rascal module imports or extends. The builder uses this to order the
+ * compilation of changed modules and to decide which dependents to recompile after a signature changed, so a
+ * missed import means stale binaries.
+ *
+ * Only the header of the module is parsed, which is much cheaper than parsing all of it. When the header does not
+ * parse, the compiler is going to report that anyway, and we fall back to a textual scan for the import statements
+ * in the mean time. That scan skips comments and strings, but can be fooled by tags and character classes which
+ * contain quotes or import statements.
+ */
+public class ModuleImports {
+    private static final Pattern IMPORT = Pattern.compile("\\b(import|extend)\\s+(\\\\?[A-Za-z_][A-Za-z0-9_]*(\\s*::\\s*\\\\?[A-Za-z_][A-Za-z0-9_]*)*)\\s*;");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    
+    private final Set<String> imports;
+    private final Set<String> extended;
+
+    public ModuleImports(Set<String> imports, Set<String> extended) {
+        this.imports = imports;
+        this.extended = extended;
+    }
+    
+    /**
+     * @return the names of the modules which are imported
+     */
+    public Set<String> getImports() {
+        return Collections.unmodifiableSet(imports);
+    }
+    
+    /**
+     * @return the names of the modules which are extended
+     */
+    public Set<String> getExtends() {
+        return Collections.unmodifiableSet(extended);
+    }
+    
+    /**
+     * @return the names of all modules which are either imported or extended
+     */
+    public Set<String> getDependencies() {
+        Set<String> result = new LinkedHashSet<>(imports);
+        result.addAll(extended);
+        return result;
+    }
+
+    public static ModuleImports scan(IFile file) throws CoreException, IOException {
+        try (InputStream in = file.getContents(); Reader reader = new InputStreamReader(in, file.getCharset())) {
+            StringBuilder b = new StringBuilder();
+            char[] buf = new char[8192];
+            int read;
+
+            while ((read = reader.read(buf)) != -1) {
+                b.append(buf, 0, read);
+            }
+
+            return scan(b, file.getLocationURI());
+        }
+    }
+
+    public static ModuleImports scan(CharSequence contents, URI uri) {
+        char[] input = new char[contents.length()];
+
+        for (int i = 0; i < input.length; i++) {
+            input[i] = contents.charAt(i);
+        }
+
+        try {
+            return of(ParserCache.parse(Parser.START_PRE_MODULE, uri, input));
+        }
+        catch (ParseError e) {
+            return scanText(contents);
+        }
+    }
+
+    /**
+     * @return the imports and extends in the header of a parse tree of a module, which is not parsed again
+     */
+    public static ModuleImports of(ITree module) {
+        Set<String> imports = new LinkedHashSet<>();
+        Set<String> extended = new LinkedHashSet<>();
+        collect(module, imports, extended);
+        return new ModuleImports(imports, extended);
+    }
+
+    private static void collect(ITree tree, Set<String> imports, Set<String> extended) {
+        if (TreeAdapter.isAmb(tree)) {
+            // an ambiguous import still depends on the same module, whichever alternative we take
+            collect((ITree) TreeAdapter.getAlternatives(tree).iterator().next(), imports, extended);
+            return;
+        }
+
+        if (!TreeAdapter.isAppl(tree) || TreeAdapter.isLiteral(tree) || TreeAdapter.isCILiteral(tree) || TreeAdapter.isLexical(tree)) {
+            return;
+        }
+
+        if (!TreeAdapter.isList(tree)) {
+            String sort = TreeAdapter.getSortName(tree);
+
+            if ("Import".equals(sort)) {
+                String kind = TreeAdapter.getConstructorName(tree);
+                ITree name = find(tree, "QualifiedName");
+
+                if (name != null && ("default".equals(kind) || "extend".equals(kind))) {
+                    ("extend".equals(kind) ? extended : imports).add(qualifiedName(name));
+                }
+
+                return;
+            }
+            else if ("Rest".equals(sort) || "Body".equals(sort)) {
+                return;
+            }
+        }
+
+        for (IValue arg : TreeAdapter.getArgs(tree)) {
+            collect((ITree) arg, imports, extended);
+        }
+    }
+
+    private static ITree find(ITree tree, String sort) {
+        if (!TreeAdapter.isAppl(tree) || TreeAdapter.isLiteral(tree) || TreeAdapter.isCILiteral(tree) || TreeAdapter.isLexical(tree)) {
+            return null;
+        }
+
+        if (!TreeAdapter.isList(tree) && sort.equals(TreeAdapter.getSortName(tree))) {
+            return tree;
+        }
+
+        for (IValue arg : TreeAdapter.getArgs(tree)) {
+            ITree found = find((ITree) arg, sort);
+
+            if (found != null) {
+                return found;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Joins the names in a qualified name, leaving out the layout and comments between them and the escapes.
+     */
+    private static String qualifiedName(ITree tree) {
+        StringBuilder b = new StringBuilder();
+
+        for (IValue arg : TreeAdapter.getArgs(TreeAdapter.isList(tree) ? tree : (ITree) TreeAdapter.getArgs(tree).get(0))) {
+            ITree name = (ITree) arg;
+
+            if (TreeAdapter.isLexical(name)) {
+                if (b.length() > 0) {
+                    b.append("::");
+                }
+
+                b.append(TreeAdapter.yield(name).replace("\\", ""));
+            }
+        }
+
+        return b.toString();
+    }
+
+    /**
+     * Finds the import statements in the text of a module, for when its header does not parse.
+     */
+    static ModuleImports scanText(CharSequence contents) {
+        Set<String> imports = new LinkedHashSet<>();
+        Set<String> extended = new LinkedHashSet<>();
+        Matcher m = IMPORT.matcher(stripCommentsAndStrings(contents));
+
+        while (m.find()) {
+            String name = WHITESPACE.matcher(m.group(2)).replaceAll("").replaceAll("\\\\", "");
+            
+            if ("extend".equals(m.group(1))) {
+                extended.add(name);
+            }
+            else {
+                imports.add(name);
+            }
+        }
+
+        return new ModuleImports(imports, extended);
+    }
+
+    /**
+     * Blanks out comments and string literals such that the keywords we look for can not be matched inside of them.
+     */
+    private static CharSequence stripCommentsAndStrings(CharSequence input) {
+        StringBuilder out = new StringBuilder(input.length());
+        int len = input.length();
+
+        for (int i = 0; i < len; i++) {
+            char c = input.charAt(i);
+
+            if (c == '/' && i + 1 < len && input.charAt(i + 1) == '/') {
+                while (i < len && input.charAt(i) != '\n') {
+                    i++;
+                }
+                out.append('\n');
+            }
+            else if (c == '/' && i + 1 < len && input.charAt(i + 1) == '*') {
+                i += 2;
+                while (i < len && !(input.charAt(i) == '*' && i + 1 < len && input.charAt(i + 1) == '/')) {
+                    i++;
+                }
+                i++;
+                out.append(' ');
+            }
+            else if (c == '"') {
+                i++;
+                while (i < len && input.charAt(i) != '"') {
+                    if (input.charAt(i) == '\\') {
+                        i++;
+                    }
+                    i++;
+                }
+                out.append(' ');
+            }
+            else {
+                out.append(c);
+            }
+        }
+
+        return out;
+    }
+}
@@ -0,0 +1,52 @@
+package org.rascalmpl.eclipse.builder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Computes a hash of the exported signature of a compiled module, which is stored by the compiler
+ * in its .tc and .sig binaries. If the hash of a module does not change after it was recompiled,
+ * then the modules which import it do not have to be recompiled (early cut-off).
+ */
+public class ModuleSignature {
+    public static final List<String> EXTENSIONS = Arrays.asList("tc", "sig");
+
+    private ModuleSignature() { }
+
+    /**
+     * @param bin  the file system location of the bin folder of the project
+     * @param name the qualified name of the module
+     * @return a hex string hash, or null if the module has no signature binaries (yet)
+     */
+    public static String hash(IPath bin, String name) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            IPath base = bin.append(name.replaceAll("::", "/"));
+            boolean found = false;
+
+            for (String ext : EXTENSIONS) {
+                File file = base.addFileExtension(ext).toFile();
+
+                if (file.exists()) {
+                    digest.update(ext.getBytes());
+                    digest.update(Files.readAllBytes(file.toPath()));
+                    found = true;
+                }
+            }
+
+            return found ? new BigInteger(1, digest.digest()).toString(16) : null;
+        }
+        catch (NoSuchAlgorithmException | IOException e) {
+            // without a signature the module will count as changed
+            return null;
+        }
+    }
+}
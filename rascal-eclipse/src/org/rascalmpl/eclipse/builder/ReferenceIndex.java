@@ -0,0 +1,645 @@
+package org.rascalmpl.eclipse.builder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.eclipse.editor.IDEServicesModelProvider;
+import org.rascalmpl.eclipse.editor.SummaryIndex;
+import org.rascalmpl.library.util.PathConfig;
+import org.rascalmpl.uri.ProjectURIResolver;
+import org.rascalmpl.values.ValueFactoryFactory;
+
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IValueFactory;
+
+/**
+ * A workspace-wide index from definitions to their uses, across all modules of all projects. Finding the references
+ * to a definition is a hash lookup here, where the summaries only know about the uses in a single module.
+ *
+ * The index is fed with the use/def relations of the summaries of modules after the builder compiled them; the
+ * contribution of a module is replaced as a whole when it is compiled again, and removed with the module.
+ *
+ * Locations are interned to int handles, which index flat int arrays with the file, offset, length, lines and
+ * columns of each location, and the uses of a definition are int arrays of such handles. A handle of a location
+ * which is no longer used is only reclaimed when the index is compacted, after half of the handles went stale.
+ */
+public class ReferenceIndex {
+    private static final IValueFactory VF = ValueFactoryFactory.getValueFactory();
+    /** file, offset, length, begin line, begin column, end line, end column */
+    private static final int FIELDS = 7;
+    private static final int NONE = -1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<ISourceLocation> files = new ArrayList<>();
+    private final Map<ISourceLocation, Integer> fileIds = new HashMap<>();
+
+    private int[] locations = new int[FIELDS * 1024];
+    private int size = 0;
+    /** how many (use, def) pairs refer to each handle; a handle which no pair refers to is stale */
+    private int[] refs = new int[1024];
+    private int live = 0;
+    /** open addressing from the hash of a location to its handle plus one, so zero is an empty slot */
+    private int[] table = new int[2048];
+
+    /** the uses of each definition, indexed by the handle of the definition */
+    private IntList[] usesOf = new IntList[1024];
+    /** the definitions in each file, by file id */
+    private final Map<Integer, IntList> defsIn = new HashMap<>();
+    /** the (use, def) pairs which each module contributed, by the file id of the module */
+    private final Map<Integer, int[]> contributions = new HashMap<>();
+    private int pairs = 0;
+
+    private final Set<String> loadedProjects = ConcurrentHashMap.newKeySet();
+    private final UpdateJob job = new UpdateJob();
+
+    ReferenceIndex() { }
+
+    private static class InstanceHolder {
+        static ReferenceIndex sInstance = new ReferenceIndex();
+    }
+
+    public static ReferenceIndex getInstance() {
+        return InstanceHolder.sInstance;
+    }
+
+    /**
+     * Replaces the uses which the given module contributes to the index by the uses in the given summary.
+     */
+    public void put(ISourceLocation module, SummaryIndex summary) {
+        List<ISourceLocation> useDefs = new ArrayList<>();
+        for (ISourceLocation def : summary.getUsedDefs()) {
+            for (ISourceLocation use : summary.getUses(def)) {
+                useDefs.add(use);
+                useDefs.add(def);
+            }
+        }
+
+        put(module, useDefs);
+    }
+
+    /**
+     * @param useDefs the uses and the definitions they use, alternating
+     */
+    void put(ISourceLocation module, List<ISourceLocation> useDefs) {
+        lock.writeLock().lock();
+
+        try {
+            int id = fileId(module.top());
+            removeContribution(id);
+            addContribution(id, useDefs);
+
+            if (size > 4096 && size > 2 * live) {
+                compact();
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the uses in the given module from the index, for example when the module was deleted.
+     */
+    public void remove(ISourceLocation module) {
+        lock.writeLock().lock();
+
+        try {
+            Integer id = fileIds.get(module.top());
+
+            if (id != null) {
+                removeContribution(id);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the uses in all modules of the given project, for example when the project is cleaned.
+     */
+    public void removeProject(IProject project) {
+        loadedProjects.remove(project.getName());
+        lock.writeLock().lock();
+
+        try {
+            for (Map.Entry<ISourceLocation, Integer> e : fileIds.entrySet()) {
+                if ("project".equals(e.getKey().getScheme()) && project.getName().equals(e.getKey().getAuthority())) {
+                    removeContribution(e.getValue());
+                }
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the uses of exactly the given definition, in all modules in the index
+     */
+    public List<ISourceLocation> findReferences(ISourceLocation def) {
+        lock.readLock().lock();
+
+        try {
+            int handle = lookup(def, false);
+            return handle == NONE ? Collections.emptyList() : toLocations(usesOf[handle]);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the definitions which the name at the given offset uses, or else the innermost definition around the
+     * offset, and then the uses of those definitions.
+     *
+     * @return the uses in all modules in the index, sorted by file and offset
+     */
+    public List<ISourceLocation> findReferencesAt(ISourceLocation file, int offset) {
+        lock.readLock().lock();
+
+        try {
+            Integer id = fileIds.get(file.top());
+
+            if (id == null) {
+                return Collections.emptyList();
+            }
+
+            IntList defs = new IntList();
+            int[] contribution = contributions.get(id);
+
+            if (contribution != null) {
+                for (int i = 0; i < contribution.length; i += 2) {
+                    if (contains(contribution[i], offset) && !defs.contains(contribution[i + 1])) {
+                        defs.add(contribution[i + 1]);
+                    }
+                }
+            }
+
+            if (defs.size == 0) {
+                int innermost = innermostDefAt(id, offset);
+
+                if (innermost != NONE) {
+                    defs.add(innermost);
+                }
+            }
+
+            List<ISourceLocation> result = new ArrayList<>();
+            for (int i = 0; i < defs.size; i++) {
+                result.addAll(toLocations(usesOf[defs.elems[i]]));
+            }
+
+            result.sort(ReferenceIndex::compare);
+            return result;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the uses, in all modules in the index, of all definitions in the given file
+     */
+    public List<ISourceLocation> findReferencesInto(ISourceLocation file) {
+        lock.readLock().lock();
+
+        try {
+            Integer id = fileIds.get(file.top());
+            IntList defs = id != null ? defsIn.get(id) : null;
+
+            if (defs == null) {
+                return Collections.emptyList();
+            }
+
+            List<ISourceLocation> result = new ArrayList<>();
+            for (int i = 0; i < defs.size; i++) {
+                result.addAll(toLocations(usesOf[defs.elems[i]]));
+            }
+
+            return result;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Makes sure that all modules of the given project will be in the index, by adding the modules which the
+     * builder knows about in the background, once per session.
+     */
+    public void load(IProject project) {
+        if (project == null || !project.isOpen() || !loadedProjects.add(project.getName())) {
+            return;
+        }
+
+        // the dependency index is read from disk by the job, since this is called from the UI thread
+        job.queue.add(new Work(project, null));
+        job.schedule();
+    }
+
+    /**
+     * Replaces the contributions of the given modules, which were just compiled, in the background.
+     */
+    public void update(IProject project, Collection<ISourceLocation> modules) {
+        for (ISourceLocation module : modules) {
+            job.queue.add(new Work(project, module));
+        }
+
+        job.schedule();
+    }
+
+    /**
+     * @return false while the contributions of compiled modules are still being added to the index
+     */
+    public boolean isUpToDate() {
+        return job.queue.isEmpty() && job.getState() != Job.RUNNING;
+    }
+
+    /**
+     * @return the number of interned locations, including the stale ones which were not reclaimed yet
+     */
+    int getLocationCount() {
+        lock.readLock().lock();
+
+        try {
+            return size;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.readLock().lock();
+
+        try {
+            return "ReferenceIndex [modules=" + contributions.size() + ", uses=" + pairs + ", locations=" + size + "]";
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addContribution(int module, List<ISourceLocation> useDefs) {
+        int[] contribution = new int[useDefs.size()];
+
+        for (int i = 0; i < contribution.length; i += 2) {
+            int use = lookup(useDefs.get(i), true);
+            int def = lookup(useDefs.get(i + 1), true);
+            contribution[i] = use;
+            contribution[i + 1] = def;
+            retain(use);
+            retain(def);
+
+            if (usesOf[def] == null) {
+                usesOf[def] = new IntList();
+                defsIn.computeIfAbsent(locations[def * FIELDS], k -> new IntList()).add(def);
+            }
+
+            usesOf[def].add(use);
+        }
+
+        if (contribution.length > 0) {
+            contributions.put(module, contribution);
+            pairs += contribution.length / 2;
+        }
+    }
+
+    private void removeContribution(int module) {
+        int[] contribution = contributions.remove(module);
+
+        if (contribution == null) {
+            return;
+        }
+
+        for (int i = 0; i < contribution.length; i += 2) {
+            int use = contribution[i];
+            int def = contribution[i + 1];
+            IntList uses = usesOf[def];
+
+            uses.remove(use);
+            release(use);
+            release(def);
+
+            if (uses.size == 0) {
+                // the definition is no longer used anywhere, so it should not be found by innermostDefAt anymore
+                usesOf[def] = null;
+                int file = locations[def * FIELDS];
+                IntList defs = defsIn.get(file);
+                defs.remove(def);
+
+                if (defs.size == 0) {
+                    defsIn.remove(file);
+                }
+            }
+        }
+
+        pairs -= contribution.length / 2;
+    }
+
+    private void retain(int handle) {
+        if (refs[handle]++ == 0) {
+            live++;
+        }
+    }
+
+    private void release(int handle) {
+        if (--refs[handle] == 0) {
+            live--;
+        }
+    }
+
+    /**
+     * Rebuilds the location table from the current contributions only, to reclaim the handles of stale locations.
+     */
+    private void compact() {
+        Map<Integer, List<ISourceLocation>> current = new HashMap<>();
+
+        for (Map.Entry<Integer, int[]> e : contributions.entrySet()) {
+            List<ISourceLocation> useDefs = new ArrayList<>(e.getValue().length);
+
+            for (int handle : e.getValue()) {
+                useDefs.add(toLocation(handle));
+            }
+
+            current.put(e.getKey(), useDefs);
+        }
+
+        locations = new int[FIELDS * Math.max(1024, live)];
+        size = 0;
+        table = new int[Math.max(2048, Integer.highestOneBit(live) * 4)];
+        usesOf = new IntList[locations.length / FIELDS];
+        refs = new int[locations.length / FIELDS];
+        live = 0;
+        defsIn.clear();
+        contributions.clear();
+        pairs = 0;
+
+        for (Map.Entry<Integer, List<ISourceLocation>> e : current.entrySet()) {
+            addContribution(e.getKey(), e.getValue());
+        }
+    }
+
+    private int innermostDefAt(int file, int offset) {
+        IntList defs = defsIn.get(file);
+        int result = NONE;
+
+        if (defs != null) {
+            for (int i = 0; i < defs.size; i++) {
+                int def = defs.elems[i];
+
+                if (contains(def, offset) && (result == NONE || locations[def * FIELDS + 2] < locations[result * FIELDS + 2])) {
+                    result = def;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private boolean contains(int handle, int offset) {
+        int start = locations[handle * FIELDS + 1];
+        return start != NONE && start <= offset && offset < start + locations[handle * FIELDS + 2];
+    }
+
+    private int fileId(ISourceLocation file) {
+        Integer id = fileIds.get(file);
+
+        if (id == null) {
+            id = files.size();
+            files.add(file);
+            fileIds.put(file, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * @return the handle of the given location, or {@link #NONE} if it is not in the table and should not be added
+     */
+    private int lookup(ISourceLocation loc, boolean intern) {
+        Integer file = intern ? Integer.valueOf(fileId(loc.top())) : fileIds.get(loc.top());
+
+        if (file == null) {
+            return NONE;
+        }
+
+        int offset = loc.hasOffsetLength() ? loc.getOffset() : NONE;
+        int length = loc.hasOffsetLength() ? loc.getLength() : NONE;
+        int mask = table.length - 1;
+
+        for (int slot = hash(file, offset, length) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+
+            if (entry == 0) {
+                return intern ? add(slot, file, loc) : NONE;
+            }
+
+            int i = (entry - 1) * FIELDS;
+            if (locations[i] == file && locations[i + 1] == offset && locations[i + 2] == length) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private int add(int slot, int file, ISourceLocation loc) {
+        if (size * FIELDS == locations.length) {
+            locations = Arrays.copyOf(locations, locations.length * 2);
+            usesOf = Arrays.copyOf(usesOf, usesOf.length * 2);
+            refs = Arrays.copyOf(refs, refs.length * 2);
+        }
+
+        int handle = size++;
+        int i = handle * FIELDS;
+        boolean lines = loc.hasLineColumn();
+
+        locations[i] = file;
+        locations[i + 1] = loc.hasOffsetLength() ? loc.getOffset() : NONE;
+        locations[i + 2] = loc.hasOffsetLength() ? loc.getLength() : NONE;
+        locations[i + 3] = lines ? loc.getBeginLine() : NONE;
+        locations[i + 4] = lines ? loc.getBeginColumn() : NONE;
+        locations[i + 5] = lines ? loc.getEndLine() : NONE;
+        locations[i + 6] = lines ? loc.getEndColumn() : NONE;
+        table[slot] = handle + 1;
+
+        if (size * 2 > table.length) {
+            rehash();
+        }
+
+        return handle;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+
+        for (int handle = 0; handle < size; handle++) {
+            int i = handle * FIELDS;
+            int slot = hash(locations[i], locations[i + 1], locations[i + 2]) & mask;
+
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            table[slot] = handle + 1;
+        }
+    }
+
+    private static int hash(int file, int offset, int length) {
+        int h = file * 31 + offset;
+        h = h * 31 + length;
+        return h ^ (h >>> 16);
+    }
+
+    private ISourceLocation toLocation(int handle) {
+        int i = handle * FIELDS;
+        ISourceLocation file = files.get(locations[i]);
+
+        if (locations[i + 1] == NONE) {
+            return file;
+        }
+
+        if (locations[i + 3] == NONE) {
+            return VF.sourceLocation(file, locations[i + 1], locations[i + 2]);
+        }
+
+        return VF.sourceLocation(file, locations[i + 1], locations[i + 2], locations[i + 3], locations[i + 5], locations[i + 4], locations[i + 6]);
+    }
+
+    private List<ISourceLocation> toLocations(IntList handles) {
+        if (handles == null) {
+            return Collections.emptyList();
+        }
+
+        List<ISourceLocation> result = new ArrayList<>(handles.size);
+        for (int i = 0; i < handles.size; i++) {
+            result.add(toLocation(handles.elems[i]));
+        }
+
+        return result;
+    }
+
+    private static int compare(ISourceLocation a, ISourceLocation b) {
+        int c = a.top().toString().compareTo(b.top().toString());
+
+        if (c != 0) {
+            return c;
+        }
+
+        return Integer.compare(a.hasOffsetLength() ? a.getOffset() : NONE, b.hasOffsetLength() ? b.getOffset() : NONE);
+    }
+
+    private static class IntList {
+        int[] elems = new int[4];
+        int size = 0;
+
+        void add(int elem) {
+            if (size == elems.length) {
+                elems = Arrays.copyOf(elems, size * 2);
+            }
+
+            elems[size++] = elem;
+        }
+
+        /** removes one occurrence of the element; the order of the others is not preserved */
+        void remove(int elem) {
+            for (int i = 0; i < size; i++) {
+                if (elems[i] == elem) {
+                    elems[i] = elems[--size];
+                    return;
+                }
+            }
+        }
+
+        boolean contains(int elem) {
+            for (int i = 0; i < size; i++) {
+                if (elems[i] == elem) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    private static class Work {
+        final IProject project;
+        /** null to add all modules which the builder knows about in the project */
+        final ISourceLocation module;
+
+        Work(IProject project, ISourceLocation module) {
+            this.project = project;
+            this.module = module;
+        }
+    }
+
+    /**
+     * Gets the summaries of compiled modules, from the summary store if possible, and adds them to the index.
+     */
+    private class UpdateJob extends Job {
+        final ConcurrentLinkedQueue<Work> queue = new ConcurrentLinkedQueue<>();
+
+        UpdateJob() {
+            super("Indexing Rascal references");
+            setSystem(true);
+            setPriority(DECORATE);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            Map<IProject, PathConfig> configs = new HashMap<>();
+            Work work;
+
+            while ((work = queue.poll()) != null) {
+                if (monitor.isCanceled()) {
+                    queue.clear();
+                    return Status.CANCEL_STATUS;
+                }
+
+                if (!work.project.isOpen()) {
+                    continue;
+                }
+
+                if (work.module == null) {
+                    for (DependencyIndex.Entry entry : DependencyIndex.load(work.project).getEntries()) {
+                        queue.add(new Work(work.project, ProjectURIResolver.constructProjectURI(entry.getFile())));
+                    }
+
+                    continue;
+                }
+
+                try {
+                    PathConfig pcfg = configs.computeIfAbsent(work.project, p -> IDEServicesModelProvider.getInstance().getPathConfig(p));
+                    SummaryIndex summary = IDEServicesModelProvider.getInstance().getSummaryIndex(work.module, pcfg);
+
+                    if (summary != null) {
+                        put(work.module, summary);
+                    }
+                }
+                catch (Throwable e) {
+                    Activator.log("could not index the references in " + work.module, e);
+                }
+            }
+
+            return Status.OK_STATUS;
+        }
+    }
+}
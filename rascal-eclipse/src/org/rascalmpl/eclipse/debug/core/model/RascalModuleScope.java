@@ -0,0 +1,149 @@
+package org.rascalmpl.eclipse.debug.core.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.model.IValue;
+import org.eclipse.debug.core.model.IVariable;
+import org.rascalmpl.debug.IRascalFrame;
+import org.rascalmpl.interpreter.result.IRascalResult;
+
+/**
+ * Groups the global variables of a module which is imported by a stack frame. The variables are only looked up
+ * when the user expands the scope in the variables view, such that suspending in a frame with many imports
+ * does not cost anything for the modules nobody looks at.
+ */
+public class RascalModuleScope extends RascalDebugElement implements IVariable {
+	private final RascalStackFrame frame;
+	private final String module;
+	private final Globals globals = new Globals();
+
+	protected RascalModuleScope(RascalStackFrame frame, String module) {
+		super(frame.getRascalDebugTarget());
+		this.frame = frame;
+		this.module = module;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IVariable#getValue()
+	 */
+	public IValue getValue() throws DebugException {
+		return globals;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IVariable#getName()
+	 */
+	public String getName() throws DebugException {
+		return module;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IVariable#getReferenceTypeName()
+	 */
+	public String getReferenceTypeName() throws DebugException {
+		return "module";
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof RascalModuleScope) {
+			RascalModuleScope o = (RascalModuleScope) obj;
+			return module.equals(o.module) && frame.equals(o.frame);
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return module.hashCode();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IVariable#hasValueChanged()
+	 */
+	public boolean hasValueChanged() throws DebugException {
+		return false;
+	}
+
+	public void setValue(String expression) throws DebugException {
+
+	}
+
+	public void setValue(IValue value) throws DebugException {
+
+	}
+
+	public boolean supportsValueModification() {
+		return false;
+	}
+
+	public boolean verifyValue(String expression) throws DebugException {
+		return false;
+	}
+
+	public boolean verifyValue(IValue value) throws DebugException {
+		return false;
+	}
+
+	/**
+	 * The contents of the scope, which are materialized the first time they are asked for.
+	 */
+	private class Globals extends RascalDebugElement implements IValue {
+		private IVariable[] variables = null;
+
+		Globals() {
+			super(frame.getRascalDebugTarget());
+		}
+
+		public String getReferenceTypeName() throws DebugException {
+			return "module";
+		}
+
+		public String getValueString() throws DebugException {
+			return module;
+		}
+
+		public boolean isAllocated() throws DebugException {
+			return true;
+		}
+
+		public synchronized IVariable[] getVariables() throws DebugException {
+			if (variables == null) {
+				variables = materialize();
+			}
+
+			return variables.clone();
+		}
+
+		public boolean hasVariables() throws DebugException {
+			// we do not look the module up just to decide whether to draw the expand button
+			return true;
+		}
+
+		private IVariable[] materialize() {
+			IRascalFrame scope = getRascalDebugTarget().getEvaluator().getModule(module);
+
+			if (scope == null) {
+				return new IVariable[0];
+			}
+
+			List<String> names = new ArrayList<>(scope.getFrameVariables());
+			Collections.sort(names);
+
+			List<IVariable> result = new ArrayList<>(names.size());
+			for (String name : names) {
+				IRascalResult var = scope.getFrameVariable(name);
+
+				if (var != null) {
+					result.add(new RascalVariable(frame, name, var.getType(), var.getValue()));
+				}
+			}
+
+			return result.toArray(new IVariable[result.size()]);
+		}
+	}
+}
@@ -14,7 +14,6 @@
 package org.rascalmpl.eclipse.debug.core.model;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -46,7 +45,12 @@ public class RascalStackFrame extends RascalDebugElement implements IStackFrame
 	 */
   private final IStackFrame parent;
 
-  private final IVariable[] variables;
+  private final IRascalFrame environment;
+
+  /**
+   * Materialized when the variables view first asks for them, not when the frame is created
+   */
+  private IVariable[] variables = null;
 
   private final String name; 
 
@@ -56,7 +60,7 @@ public class RascalStackFrame extends RascalDebugElement implements IStackFrame
 		this.thread = thread;
 		/* need to clone to know previous state, in order to compute model deltas */ 
 		this.location = location;
-		this.variables = initVariables(environment);
+		this.environment = environment;
 		this.name = environment.getName();
 	}
 	
@@ -67,23 +71,19 @@ public class RascalStackFrame extends RascalDebugElement implements IStackFrame
     vars.addAll(keys);
     Collections.sort(vars);
 
-    ArrayList<IVariable> ivars = new ArrayList<>(vars.size() * 2);
+    Set<String> imports = environment.getImports();
+    ArrayList<IVariable> ivars = new ArrayList<>(vars.size() + imports.size());
 
     for (String v : vars) {
       IRascalResult var = environment.getFrameVariable(v);
       ivars.add(new RascalVariable(this, v, var.getType(), var.getValue()));
     }
     
-    for (String s:environment.getImports()) {
-        IRascalFrame module = thread.getRascalDebugTarget().getEvaluator().getModule(s);
-        
-        if (module != null) {
-            Set<String> variables = module.getFrameVariables();
-            for (String v:variables) {
-                IRascalResult w = module.getFrameVariable(v);
-                ivars.add(new RascalVariable(this, s + "::" + v, w.getType(), w.getValue()));
-            }
-        }
+    // the globals of imported modules are only looked up when their scope is expanded
+    List<String> modules = new ArrayList<>(imports);
+    Collections.sort(modules);
+    for (String s : modules) {
+        ivars.add(new RascalModuleScope(this, s));
     }
     
     return ivars.toArray(new IVariable[ivars.size()]);
@@ -146,7 +146,10 @@ public class RascalStackFrame extends RascalDebugElement implements IStackFrame
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IStackFrame#getVariables()
 	 */
-	public IVariable[] getVariables() throws DebugException {
+	public synchronized IVariable[] getVariables() throws DebugException {
+		if (variables == null) {
+			variables = initVariables(environment);
+		}
 		return variables;
 	}
 
@@ -161,7 +164,7 @@ public class RascalStackFrame extends RascalDebugElement implements IStackFrame
 	 * @see org.eclipse.debug.core.model.IStackFrame#hasVariables()
 	 */
 	public boolean hasVariables() throws DebugException {
-		return variables.length > 0;
+		return !environment.getFrameVariables().isEmpty() || !environment.getImports().isEmpty();
 	}
 
 	/* (non-Javadoc)
@@ -301,7 +304,7 @@ public class RascalStackFrame extends RascalDebugElement implements IStackFrame
 			RascalStackFrame sf = (RascalStackFrame) obj;
 			
 			return obj == this 
-			    || (Arrays.equals(variables, sf.variables)
+			    || (environment == sf.environment
 			    && ((parent == null && sf.parent == null) || (parent != null && sf.parent != null && parent.equals(sf.parent))) 
 			    && thread == sf.thread
 			    && location.equals(sf.location)
@@ -20,8 +20,8 @@ import static org.rascalmpl.debug.DebugMessageFactory.requestStepOver;
 import static org.rascalmpl.debug.DebugMessageFactory.requestSuspension;
 import static org.rascalmpl.debug.DebugMessageFactory.requestTermination;
 
-import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.debug.core.DebugEvent;
 import org.eclipse.debug.core.DebugException;
@@ -33,6 +33,7 @@ import org.rascalmpl.debug.IRascalEventListener;
 import org.rascalmpl.debug.IRascalFrame;
 import org.rascalmpl.debug.IRascalRuntimeInspection;
 import org.rascalmpl.debug.RascalEvent;
+import org.rascalmpl.eclipse.util.LatencyHistogram;
 import org.rascalmpl.uri.URIUtil;
 import io.usethesource.vallang.ISourceLocation;
 
@@ -44,6 +45,18 @@ public class RascalThread extends RascalDebugElement implements IThread, IRascal
 	private boolean fStepping = false;
 	private boolean fSuspended = false;
 	
+	/**
+	 * The frames of the current suspension, built once and handed out until the thread resumes.
+	 */
+	private IStackFrame[] fFrames = null;
+	
+	/**
+	 * When the last step was requested, or 0 if its frames have been built already.
+	 */
+	private long fRequested = 0;
+	private long fLastStep = -1;
+	private final LatencyHistogram fStepLatency = new LatencyHistogram();
+	
 	public RascalThread(IDebugTarget target) {
 		super(target);
 		getRascalDebugTarget().addEventListener(this);
@@ -68,28 +81,56 @@ public class RascalThread extends RascalDebugElement implements IThread, IRascal
 	}
 
 	@Override
-	public IStackFrame[] getStackFrames() throws DebugException {
+	public synchronized IStackFrame[] getStackFrames() throws DebugException {
 		if (isSuspended()) {
-			IRascalRuntimeInspection eval = getRascalDebugTarget().getEvaluator();
-			Stack<IRascalFrame> callStack = eval.getCurrentStack();
-			
-			int size = callStack.size();
-			Set<String> imports = callStack.get(size-1).getImports();
-			IStackFrame[] theFrames = new IStackFrame[callStack.size()+imports.size()];
-			// for the top, use the current AST location
-			ISourceLocation currentLoc = eval.getCurrentPointOfExecution() != null ? 
-			    eval.getCurrentPointOfExecution()
-			    : URIUtil.rootLocation("stdin");
-			theFrames[0] = new RascalStackFrame(this, callStack.get(size-1), currentLoc, null);
-			for (int i = 1; i < size; i++) { 
-				theFrames[i] = new RascalStackFrame(this, callStack.get(size-i-1), callStack.get(size-i).getCallerLocation(), theFrames[i-1]);
+			if (fFrames == null) {
+				fFrames = buildStackFrames();
+				
+				if (fRequested != 0) {
+					long latency = System.nanoTime() - fRequested;
+					fStepLatency.record(latency);
+					fLastStep = TimeUnit.NANOSECONDS.toMillis(latency);
+					fRequested = 0;
+				}
 			}
 			
-			return theFrames;
+			return fFrames;
 		}
 		return new IStackFrame[0];
 	}
 	
+	private IStackFrame[] buildStackFrames() {
+		IRascalRuntimeInspection eval = getRascalDebugTarget().getEvaluator();
+		Stack<IRascalFrame> callStack = eval.getCurrentStack();
+		
+		int size = callStack.size();
+		IStackFrame[] theFrames = new IStackFrame[size];
+		// for the top, use the current AST location
+		ISourceLocation currentLoc = eval.getCurrentPointOfExecution() != null ? 
+		    eval.getCurrentPointOfExecution()
+		    : URIUtil.rootLocation("stdin");
+		theFrames[0] = new RascalStackFrame(this, callStack.get(size-1), currentLoc, null);
+		for (int i = 1; i < size; i++) { 
+			theFrames[i] = new RascalStackFrame(this, callStack.get(size-i-1), callStack.get(size-i).getCallerLocation(), theFrames[i-1]);
+		}
+		
+		return theFrames;
+	}
+	
+	/**
+	 * @return the time between a resume or step request and the stack frames of the suspension it ended in
+	 */
+	public LatencyHistogram getStepLatency() {
+		return fStepLatency;
+	}
+	
+	/**
+	 * @return the step latency in milliseconds of the last step, or -1 if the thread was resumed since
+	 */
+	public synchronized long getLastStepLatency() {
+		return fLastStep;
+	}
+	
 	@Override
 	public IStackFrame getTopStackFrame() throws DebugException {
 		IStackFrame[] frames = getStackFrames();
@@ -122,6 +163,7 @@ public class RascalThread extends RascalDebugElement implements IThread, IRascal
 
 	@Override
 	public void resume() throws DebugException {
+		requested(false);
 		sendRequest(requestResumption());
 	}
 
@@ -152,11 +194,13 @@ public class RascalThread extends RascalDebugElement implements IThread, IRascal
 
 	@Override
 	public void stepInto() throws DebugException {
+		requested(true);
 		sendRequest(requestStepInto());
 	}
 
 	@Override
 	public void stepOver() throws DebugException {
+		requested(true);
 		sendRequest(requestStepOver());
 	}
 		
@@ -191,6 +235,24 @@ public class RascalThread extends RascalDebugElement implements IThread, IRascal
 		fStepping = stepping;
 	}
 	
+	/**
+	 * Starts the clock for the step latency; running to the next breakpoint is not a step.
+	 */
+	private synchronized void requested(boolean step) {
+		fRequested = step ? System.nanoTime() : 0;
+		
+		if (!step) {
+			fLastStep = -1;
+		}
+	}
+	
+	/**
+	 * Forgets the frames of the previous suspension.
+	 */
+	private synchronized void invalidateFrames() {
+		fFrames = null;
+	}
+	
 	/**
 	 * Sets whether this thread is suspended
 	 * 
@@ -245,6 +307,7 @@ public class RascalThread extends RascalDebugElement implements IThread, IRascal
 		// clear previous state
 		fBreakpoint = null;
 		setStepping(false);
+		invalidateFrames();
 		
 		switch (event.getKind()) {
 			case SUSPEND:	
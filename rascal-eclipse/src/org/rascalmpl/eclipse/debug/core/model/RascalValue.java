@@ -15,6 +15,7 @@ package org.rascalmpl.eclipse.debug.core.model;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Iterator;
 
 import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.model.IValue;
@@ -42,6 +43,8 @@ public class RascalValue extends RascalDebugElement implements IValue {
 	
 	/* do not print more than MAX_VALUE_STRING characters */
 	private final static int MAX_VALUE_STRING = 1000;
+	/* do not create more than PAGE_SIZE children at once, larger collections are divided into logical ranges */
+	final static int PAGE_SIZE = 1000;
 	private final RascalStackFrame target;
 	private final io.usethesource.vallang.IValue value;
 	private final Type decl;
@@ -130,7 +133,8 @@ public class RascalValue extends RascalDebugElement implements IValue {
 	}
 
 	public IVariable[] getVariables() throws DebugException {
-	  return null;
+	  IVariable[] result = getVariables2();
+	  return result != null ? result : new IVariable[0];
 	}
 	
 	/* (non-Javadoc)
@@ -141,9 +145,6 @@ public class RascalValue extends RascalDebugElement implements IValue {
 	    return children.clone();
 	  }
 	  
-	  TypeFactory tf = TypeFactory.getInstance();
-	  final Type vt = tf.valueType();
-	  
 		if (value == null) {
 		  return null;
 		}
@@ -166,23 +167,12 @@ public class RascalValue extends RascalDebugElement implements IValue {
 
 			@Override
 			public IVariable[] visitList(Type type) {
-				IList list = (IList) value;
-				IVariable[] result = new IVariable[list.length()];
-				for (int i = 0; i < list.length(); i++) {
-					result[i] = new RascalVariable(target, "[" + i + "]", decl.isList() ? decl.getElementType() : list.getElementType(), list.get(i));
-				}
-				return result; 
+				return getPage(0, ((IList) value).length());
 			}
 
 			@Override
 			public IVariable[] visitMap(Type type) {
-				IMap map = (IMap) value;
-				IVariable[] result = new IVariable[map.size()];
-				int i = 0;
-				for (io.usethesource.vallang.IValue key : map) {
-					result[i++] = new RascalVariable(target, key.toString(), decl.isMap() ? decl.getValueType() : vt, map.get(key));
-				}
-				return result;
+				return getPage(0, ((IMap) value).size());
 			}
 
 			@Override
@@ -197,13 +187,7 @@ public class RascalValue extends RascalDebugElement implements IValue {
 
 			@Override
 			public IVariable[] visitSet(Type type) {
-				ISet set = (ISet) value;
-				IVariable[] result = new IVariable[set.size()];
-				int i = 0;
-				for (io.usethesource.vallang.IValue elem : set) {
-					result[i++] = new RascalVariable(target, "[" + i + "]", decl.isSet() ? decl.getElementType() : vt, elem);
-				}
-				return result;
+				return getPage(0, ((ISet) value).size());
 			}
 
 			@Override
@@ -334,7 +318,72 @@ public class RascalValue extends RascalDebugElement implements IValue {
 	}
 
 	public boolean hasVariables() throws DebugException {
-	  return false;
+	  return hasVariables2();
+	}
+	
+	/**
+	 * Returns the children of this list, set or map for the elements from index <code>from</code> up to 
+	 * <code>to</code>. If there are more than {@link #PAGE_SIZE} of them, they are grouped into at most
+	 * {@link #PAGE_SIZE} ranges instead, which create their own children when they are expanded.
+	 */
+	IVariable[] getPage(int from, int to) {
+	  int count = to - from;
+	  
+	  if (count <= PAGE_SIZE) {
+	    return getElements(from, to);
+	  }
+	  
+	  long span = PAGE_SIZE;
+	  while (count > span * PAGE_SIZE) {
+	    span *= PAGE_SIZE;
+	  }
+	  
+	  IVariable[] result = new IVariable[(int) ((count + span - 1) / span)];
+	  for (int i = 0; i < result.length; i++) {
+	    int start = (int) (from + i * span);
+	    result[i] = new RascalValuePage(this, start, (int) Math.min(to, start + span));
+	  }
+	  return result;
+	}
+	
+	private IVariable[] getElements(int from, int to) {
+	  IVariable[] result = new IVariable[to - from];
+	  
+	  if (value instanceof IList) {
+	    IList list = (IList) value;
+	    Type elementType = decl.isList() ? decl.getElementType() : list.getElementType();
+	    for (int i = from; i < to; i++) {
+	      result[i - from] = new RascalVariable(target, "[" + i + "]", elementType, list.get(i));
+	    }
+	  }
+	  else if (value instanceof IMap) {
+	    IMap map = (IMap) value;
+	    Type valueType = decl.isMap() ? decl.getValueType() : TypeFactory.getInstance().valueType();
+	    Iterator<io.usethesource.vallang.IValue> keys = map.iterator();
+	    skip(keys, from);
+	    for (int i = from; i < to; i++) {
+	      io.usethesource.vallang.IValue key = keys.next();
+	      // the label of a key is only printed when it is shown
+	      result[i - from] = new RascalVariable(target, key, valueType, map.get(key));
+	    }
+	  }
+	  else if (value instanceof ISet) {
+	    Type elementType = decl.isSet() ? decl.getElementType() : TypeFactory.getInstance().valueType();
+	    Iterator<io.usethesource.vallang.IValue> elements = ((ISet) value).iterator();
+	    skip(elements, from);
+	    for (int i = from; i < to; i++) {
+	      result[i - from] = new RascalVariable(target, "[" + i + "]", elementType, elements.next());
+	    }
+	  }
+	  
+	  return result;
+	}
+	
+	private static void skip(Iterator<io.usethesource.vallang.IValue> iterator, int n) {
+	  // sets and maps can not be indexed, but skipping does not allocate anything
+	  for (int i = 0; i < n; i++) {
+	    iterator.next();
+	  }
 	}
 	
 	/* (non-Javadoc)
@@ -0,0 +1,126 @@
+package org.rascalmpl.eclipse.debug.core.model;
+
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.model.IValue;
+import org.eclipse.debug.core.model.IVariable;
+
+/**
+ * A logical range of the elements of a large list, set or map, labeled like <code>[1000..1999]</code>. The
+ * children of the range are only created when the user expands it, and a range which is still too large is
+ * divided into ranges again.
+ */
+public class RascalValuePage extends RascalDebugElement implements IVariable {
+	private final RascalValue collection;
+	private final int from;
+	private final int to;
+	private final Elements elements = new Elements();
+
+	/**
+	 * @param from the index of the first element of the range
+	 * @param to the index just after the last element of the range
+	 */
+	protected RascalValuePage(RascalValue collection, int from, int to) {
+		super(collection.getDebugTarget());
+		this.collection = collection;
+		this.from = from;
+		this.to = to;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IVariable#getValue()
+	 */
+	public IValue getValue() throws DebugException {
+		return elements;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IVariable#getName()
+	 */
+	public String getName() throws DebugException {
+		return "[" + from + ".." + (to - 1) + "]";
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IVariable#getReferenceTypeName()
+	 */
+	public String getReferenceTypeName() throws DebugException {
+		return collection.getReferenceTypeName();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof RascalValuePage) {
+			RascalValuePage o = (RascalValuePage) obj;
+			return from == o.from && to == o.to && collection.getRuntimeValue() == o.collection.getRuntimeValue();
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * from + to;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IVariable#hasValueChanged()
+	 */
+	public boolean hasValueChanged() throws DebugException {
+		return false;
+	}
+
+	public void setValue(String expression) throws DebugException {
+
+	}
+
+	public void setValue(IValue value) throws DebugException {
+
+	}
+
+	public boolean supportsValueModification() {
+		return false;
+	}
+
+	public boolean verifyValue(String expression) throws DebugException {
+		return false;
+	}
+
+	public boolean verifyValue(IValue value) throws DebugException {
+		return false;
+	}
+
+	/**
+	 * The elements in the range, which are created the first time they are asked for.
+	 */
+	private class Elements extends RascalDebugElement implements IValue {
+		private IVariable[] children = null;
+
+		Elements() {
+			super(collection.getDebugTarget());
+		}
+
+		public String getReferenceTypeName() throws DebugException {
+			return collection.getReferenceTypeName();
+		}
+
+		public String getValueString() throws DebugException {
+			return (to - from) + " elements";
+		}
+
+		public boolean isAllocated() throws DebugException {
+			return true;
+		}
+
+		public synchronized IVariable[] getVariables() throws DebugException {
+			if (children == null) {
+				children = collection.getPage(from, to);
+			}
+
+			return children.clone();
+		}
+
+		public boolean hasVariables() throws DebugException {
+			return to > from;
+		}
+	}
+}
@@ -13,16 +13,28 @@
 *******************************************************************************/
 package org.rascalmpl.eclipse.debug.core.model;
 
+import java.io.IOException;
+import java.io.Writer;
+
 import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.model.IValue;
 import org.eclipse.debug.core.model.IVariable;
+import org.rascalmpl.interpreter.utils.LimitedResultWriter;
+import org.rascalmpl.interpreter.utils.LimitedResultWriter.IOLimitReachedException;
+import io.usethesource.vallang.io.StandardTextWriter;
 import io.usethesource.vallang.type.Type;
 
 /**
  *  Model for the local variable of a module. 
  */
 public class RascalVariable extends RascalDebugElement implements IVariable {
-	private final String name;
+	/* do not print more than MAX_LABEL_STRING characters of a key */
+	private final static int MAX_LABEL_STRING = 100;
+
+	private String name;
+
+	/* the map key this variable is labeled with, or null */
+	private final io.usethesource.vallang.IValue key;
 	
 	private final io.usethesource.vallang.IValue value;
 
@@ -33,6 +45,19 @@ public class RascalVariable extends RascalDebugElement implements IVariable {
 	protected RascalVariable(RascalStackFrame frame, String name, Type declaredType, io.usethesource.vallang.IValue value) {
 		super(frame.getRascalDebugTarget());
 		this.name = name;
+		this.key = null;
+		this.frame = frame;
+		this.value = value;
+		this.declaredType = declaredType;
+	}
+
+	/**
+	 * A variable for the value of a map key, which is only printed when the label is shown.
+	 */
+	protected RascalVariable(RascalStackFrame frame, io.usethesource.vallang.IValue key, Type declaredType, io.usethesource.vallang.IValue value) {
+		super(frame.getRascalDebugTarget());
+		this.name = null;
+		this.key = key;
 		this.frame = frame;
 		this.value = value;
 		this.declaredType = declaredType;
@@ -52,16 +77,32 @@ public class RascalVariable extends RascalDebugElement implements IVariable {
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IVariable#getName()
 	 */
-	public String getName() throws DebugException {
+	public synchronized String getName() throws DebugException {
+		if (name == null) {
+			name = printKey();
+		}
 		return name;
 	}
+
+	private String printKey() {
+		Writer w = new LimitedResultWriter(MAX_LABEL_STRING);
+		try {
+			new StandardTextWriter(false).write(key, w);
+			return w.toString();
+		} catch (IOLimitReachedException e) {
+			return w.toString();
+		}
+		catch (IOException e) {
+			return "error during serialization...";
+		}
+	}
 	
 	@Override
 	public boolean equals(Object obj) {
 	  if (obj instanceof RascalVariable) {
 	    RascalVariable o = (RascalVariable) obj;
 	    
-	    return (value==null && o.value==null) || (name.equals(o.name)
+	    return (value==null && o.value==null) || ((key != null ? key.equals(o.key) : name.equals(o.name))
 	        && value.equals(o.value));
 	  }
 	  
@@ -70,7 +111,7 @@ public class RascalVariable extends RascalDebugElement implements IVariable {
 	
 	@Override
 	public int hashCode() {
-	  return name.hashCode();
+	  return key != null ? key.hashCode() : name.hashCode();
 	}
 
 	/* (non-Javadoc)
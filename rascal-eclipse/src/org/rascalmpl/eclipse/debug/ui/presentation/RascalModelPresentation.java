@@ -20,6 +20,7 @@ import org.eclipse.core.runtime.Path;
 import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.model.ILineBreakpoint;
 import org.eclipse.debug.core.model.IValue;
+import org.eclipse.debug.core.model.IVariable;
 import org.eclipse.debug.ui.IDebugModelPresentation;
 import org.eclipse.debug.ui.IValueDetailListener;
 import org.eclipse.jface.viewers.LabelProvider;
@@ -31,7 +32,6 @@ import org.rascalmpl.eclipse.debug.core.model.RascalDebugTarget;
 import org.rascalmpl.eclipse.debug.core.model.RascalStackFrame;
 import org.rascalmpl.eclipse.debug.core.model.RascalThread;
 import org.rascalmpl.eclipse.debug.core.model.RascalValue;
-import org.rascalmpl.eclipse.debug.core.model.RascalVariable;
 import org.rascalmpl.uri.URIEditorInput;
 import org.rascalmpl.uri.URIStorage;
 
@@ -60,8 +60,9 @@ public class RascalModelPresentation extends LabelProvider implements IDebugMode
 	      return getStackFrameText((RascalStackFrame)element);
 	    } else if (element instanceof RascalValue) {
 	      return ((RascalValue) element).getReferenceTypeName();
-	    } else if (element instanceof RascalVariable) {
-	      return ((RascalVariable) element).getName();
+	    } else if (element instanceof IVariable) {
+	      // also module scopes and ranges of large collections
+	      return ((IVariable) element).getName();
 	    }
 	  } catch (DebugException e) {
 	    return null;
@@ -142,7 +143,8 @@ public class RascalModelPresentation extends LabelProvider implements IDebugMode
 		} else if (thread.isSuspendedByBreakpoint()) {
 			label += " (suspended by line breakpoint)";
 		} else if (thread.isSuspended()) {
-			label += " (suspended)";
+			long step = thread.getLastStepLatency();
+			label += step >= 0 ? " (suspended, last step took " + step + "ms)" : " (suspended)";
 		}
 		return label;
 	}
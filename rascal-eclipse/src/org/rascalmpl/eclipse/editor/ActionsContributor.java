@@ -20,9 +20,11 @@ import org.rascalmpl.eclipse.actions.GenerateInterface;
 import org.rascalmpl.eclipse.actions.StartConsole;
 import org.rascalmpl.eclipse.editor.commands.BrowseTree;
 import org.rascalmpl.eclipse.editor.commands.CopyToConsole;
+import org.rascalmpl.eclipse.editor.commands.FindReferences;
 import org.rascalmpl.eclipse.editor.commands.ImportInConsole;
 import org.rascalmpl.eclipse.editor.commands.ResetProjectState;
 import org.rascalmpl.eclipse.editor.commands.RunTests;
+import org.rascalmpl.eclipse.editor.commands.ShowParseLatency;
 import org.rascalmpl.eclipse.editor.commands.TextTree;
 import org.rascalmpl.eclipse.editor.highlight.ShowAsHTML;
 import org.rascalmpl.eclipse.editor.highlight.ShowAsLatex;
@@ -38,6 +40,7 @@ public class ActionsContributor implements ILanguageActionsContributor {
 		menuManager.add(new StartConsole(editor));
 		menuManager.add(new CopyToConsole(editor));
 		menuManager.add(new ImportInConsole(editor));
+		menuManager.add(new FindReferences(editor));
 		 
 		MenuManager exp = new SubMenu(menuManager, "Experimental");
 		exp.add(new RunTests(editor));
@@ -49,6 +52,7 @@ public class ActionsContributor implements ILanguageActionsContributor {
 		devel.add(new ResetProjectState(editor));
 		devel.add(new TextTree(editor));
 		devel.add(new BrowseTree(editor));
+		devel.add(new ShowParseLatency(editor));
 	}
 
 	@Override
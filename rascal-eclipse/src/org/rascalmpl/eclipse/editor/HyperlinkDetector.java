@@ -21,7 +21,6 @@ import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.hyperlink.IHyperlink;
 import org.eclipse.ui.texteditor.ITextEditor;
-import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.preferences.RascalPreferences;
 import org.rascalmpl.eclipse.terms.TermParseController;
 import org.rascalmpl.library.util.PathConfig;
@@ -55,7 +54,7 @@ public class HyperlinkDetector implements ISourceHyperlinkDetector {
 		
 		if (tree != null && parseController instanceof TermParseController) {
 		    // DSL case
-			return getTreeLinks(tree, region);
+			return getTreeLinks(tree, (NodeLocator) parseController.getSourcePositionLocator(), region);
 		}
 		
 		if (tree != null && parseController instanceof ParseController && RascalPreferences.isRascalCompilerEnabled()) {
@@ -66,24 +65,16 @@ public class HyperlinkDetector implements ISourceHyperlinkDetector {
 		    IProject prj = rprj != null ? rprj.getRawProject() : null;
 		    PathConfig pcfg = IDEServicesModelProvider.getInstance().getPathConfig(prj);
 
-		    ISet useDef = imp.getUseDef(rascalPc.getSourceLocation(), pcfg, rascalPc.getModuleName());
+		    List<ITuple> useDefs = imp.getUseDefsAt(rascalPc.getSourceLocation(), pcfg, region.getOffset());
 
-		    if (!checkUseDefType(useDef)) {
-		        Activator.log(useDef.getType() + " is not a rel[loc,loc] or rel[loc,loc,str]? " + useDef, null);
-		        return new IHyperlink[0];
-		    }
-
-		    return getLinksForRegionFromUseDefRelation(region, useDef);
+		    return getLinksFromUseDefs(useDefs);
 		}
 		
 		return null;
 	}
 
-    private boolean checkUseDefType(ISet useDef) {
-        return useDef.getType().isSubtypeOf(linksRelType1) || useDef.getType().isSubtypeOf(linksRelType2);
-    }
 	
-	private IHyperlink[] getTreeLinks(ITree tree, IRegion region) {
+	private IHyperlink[] getTreeLinks(ITree tree, NodeLocator locator, IRegion region) {
 		IValue xref = tree.asAnnotatable().getAnnotation("hyperlinks");
 		
 		if (xref != null && (xref.getType().isSubtypeOf(linksRelType1) || xref.getType().isSubtypeOf(linksRelType2))) {
@@ -91,7 +82,8 @@ public class HyperlinkDetector implements ISourceHyperlinkDetector {
 		}
 		
 		
-		ITree ref = TreeAdapter.locateAnnotatedTree(tree, "link", region.getOffset());
+		ParseTreeIndex index = locator.getIndex(tree);
+		ITree ref = index.locateAnnotatedTree("link", region.getOffset());
 		
 		if (ref != null) {
 			IValue link = ref.asAnnotatable().getAnnotation("link");
@@ -102,7 +94,7 @@ public class HyperlinkDetector implements ISourceHyperlinkDetector {
 			
 			
 		}
-		ref = TreeAdapter.locateAnnotatedTree(tree, "links", region.getOffset());
+		ref = index.locateAnnotatedTree("links", region.getOffset());
 		if (ref != null) {
 			IValue links = ref.asAnnotatable().getAnnotation("links");
 			if (links != null && links.getType().isSet() && links.getType().getElementType().isSourceLocation()) {
@@ -116,7 +108,7 @@ public class HyperlinkDetector implements ISourceHyperlinkDetector {
 		}
 		
 		IValue docLinksMapValue = tree.asAnnotatable().getAnnotation("docLinks");
-		ITree subtree = TreeAdapter.locateAnnotatedTree(tree, "loc", region.getOffset());
+		ITree subtree = index.locateAnnotatedTree("loc", region.getOffset());
 		if (docLinksMapValue != null && docLinksMapValue.getType().isMap() && subtree != null) {
 			ISourceLocation loc = TreeAdapter.getLocation(subtree);
 			if (loc != null) {
@@ -138,6 +130,28 @@ public class HyperlinkDetector implements ISourceHyperlinkDetector {
 		return null;
 	}
 
+    private IHyperlink[] getLinksFromUseDefs(List<ITuple> useDefs) {
+        List<IHyperlink> links = new ArrayList<>();
+        
+        for (ITuple t : useDefs) {
+            ISourceLocation loc = (ISourceLocation) t.get(0);
+            ISourceLocation to = (ISourceLocation) t.get(1);
+            
+            if (t.arity() == 3 && t.get(2) instanceof IString) {
+                links.add(new SourceLocationHyperlink(loc, to, ((IString) t.get(2)).getValue()));
+            }
+            else {
+                links.add(new SourceLocationHyperlink(loc, to, to.toString()));
+            }
+        }
+        
+        if (links.isEmpty()) {
+            return null;
+        }
+        
+        return sortAndFilterHyperlinks(links);
+    }
+
     private IHyperlink[] getLinksForRegionFromUseDefRelation(IRegion region, ISet rel) {
         List<IHyperlink> links = new ArrayList<>();
          
@@ -1,44 +1,102 @@
 package org.rascalmpl.eclipse.editor;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.eclipse.builder.ModuleImports;
+import org.rascalmpl.eclipse.util.KernelPool;
 import org.rascalmpl.eclipse.util.ProjectConfig;
-import org.rascalmpl.library.experiments.Compiler.RVM.Interpreter.java2rascal.Java2Rascal;
 import org.rascalmpl.library.lang.rascal.boot.IKernel;
 import org.rascalmpl.library.util.PathConfig;
+import org.rascalmpl.uri.URIResolverRegistry;
+import org.rascalmpl.uri.URIUtil;
 import org.rascalmpl.values.ValueFactoryFactory;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 
 import io.usethesource.vallang.IConstructor;
-import io.usethesource.vallang.IMap;
 import io.usethesource.vallang.INode;
 import io.usethesource.vallang.ISet;
 import io.usethesource.vallang.ISourceLocation;
 import io.usethesource.vallang.IString;
+import io.usethesource.vallang.ITuple;
 import io.usethesource.vallang.IValue;
 import io.usethesource.vallang.IValueFactory;
-import io.usethesource.vallang.IWithKeywordParameters;
 
+/**
+ * Provides the summaries which the compiler computes for modules to the IDE services (hover, hyperlinks, documentation).
+ *
+ * Computing a summary takes a compiler kernel and can take seconds, so the editor services never wait for it: they
+ * get the current summary if it is available, the last good summary of the module if it is being recomputed, or
+ * nothing at all, while the summary is computed in the background. To make the latter rare, summaries are
+ * prefetched when an editor is opened and recomputed after a build has invalidated them.
+ */
 public class IDEServicesModelProvider {
+    private static final int THREADS = Math.min(2, Runtime.getRuntime().availableProcessors());
+    
     private final IValueFactory vf;
-    private final IKernel kernel;
-    private final Cache<URI, IConstructor> summaryCache;
+    private final KernelPool kernels;
+    private final Cache<URI, SummaryIndex> summaryCache;
+    /** summaries which were invalidated by a build, to use until their replacement is computed */
+    private final Cache<URI, SummaryIndex> lastGood;
+    private final Map<URI, CompletableFuture<SummaryIndex>> pending = new ConcurrentHashMap<>();
+    private final Set<URI> invalidated = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor;
+    /** counts the invalidations, such that a summary which was computed before one is not cached after it */
+    private long generation = 0;
+    /** the generation at which the summaries of the modules were invalidated last, which also guards the generations */
+    private final Map<URI, Long> invalidatedAt = new HashMap<>();
+    private long everythingInvalidatedAt = 0;
+    /** a kernel of our own for the outline and the navigator, which run on the UI thread and can not wait for the pool */
+    private IKernel dedicated;
     
     private IDEServicesModelProvider() {
-        try {
-            vf = ValueFactoryFactory.getValueFactory();
-            kernel = Java2Rascal.Builder.bridge(vf, new PathConfig(), IKernel.class).build();
-            summaryCache = Caffeine.newBuilder().weakValues().expireAfterAccess(10, TimeUnit.MINUTES).maximumSize(32_000).build();
-        } 
-        catch (IOException e) {
-            throw new RuntimeException(e);
+        vf = ValueFactoryFactory.getValueFactory();
+        kernels = KernelPool.getInstance();
+        summaryCache = Caffeine.newBuilder().softValues().expireAfterAccess(10, TimeUnit.MINUTES).maximumSize(32_000).build();
+        lastGood = Caffeine.newBuilder().softValues().maximumSize(1_000).build();
+        executor = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "Rascal summary computation");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.execute(() -> {
+            try {
+                getDedicatedKernel();
+            }
+            catch (IOException e) {
+                Activator.log("could not start Rascal kernel for the IDE services", e);
+            }
+        });
+    }
+    
+    private synchronized IKernel getDedicatedKernel() throws IOException {
+        if (dedicated == null) {
+            dedicated = kernels.createDedicated();
         }
+        
+        return dedicated;
     }
     
     private static class InstanceHolder {
@@ -49,76 +107,252 @@ public class IDEServicesModelProvider {
         return InstanceHolder.sInstance;
     }
     
-    @SuppressWarnings("unchecked")
-    private <T extends IValue> T get(ISourceLocation occ, PathConfig pcfg, String field, T def) {
-       IConstructor summary = getSummary(occ, pcfg);
-       
-       if (summary != null) {
-           IWithKeywordParameters<? extends IConstructor> kws = summary.asWithKeywordParameters();
-           if (kws.hasParameters()) {
-               T val = (T) kws.getParameter(field);
-               
-               if (val != null) {
-                   return val;
-               }
-           }
-       }
-       
-       return def;
+    /**
+     * Never blocks on the computation of a summary.
+     * 
+     * @return the summary of the module of the given location if it is in memory, or else the last good summary of that
+     *         module (or null if there is none) while the current summary is computed in the background
+     */
+    public SummaryIndex getAvailableSummary(ISourceLocation occ, PathConfig pcfg) {
+        SummaryIndex summary = summaryCache.getIfPresent(occ.getURI());
+        
+        if (summary != null) {
+            return summary;
+        }
+        
+        getSummaryAsync(occ, pcfg);
+        return lastGood.getIfPresent(occ.getURI());
     }
     
+    /**
+     * Computes the summary of the module of the given location in the background, unless it is in memory already or
+     * it is being computed already.
+     */
+    public CompletableFuture<SummaryIndex> getSummaryAsync(ISourceLocation occ, PathConfig pcfg) {
+        URI key = occ.getURI();
+        SummaryIndex summary = summaryCache.getIfPresent(key);
+        
+        if (summary != null) {
+            return CompletableFuture.completedFuture(summary);
+        }
+        
+        CompletableFuture<SummaryIndex> future = pending.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(() -> getSummaryIndex(occ, pcfg), executor));
+        future.whenComplete((result, e) -> pending.remove(key, future));
+        return future;
+    }
+    
+    /**
+     * Computes the summaries of a module and the modules it directly imports or extends in the background, for
+     * example when the module is opened in an editor.
+     */
+    public void prefetch(IProject project, ISourceLocation module) {
+        if (project == null || module == null) {
+            return;
+        }
+        
+        executor.execute(() -> {
+            PathConfig pcfg = getPathConfig(project);
+            getSummaryAsync(module, pcfg);
+            
+            for (ISourceLocation imported : resolveDependencies(module, pcfg)) {
+                getSummaryAsync(imported, pcfg);
+            }
+        });
+    }
+    
+    private List<ISourceLocation> resolveDependencies(ISourceLocation module, PathConfig pcfg) {
+        URIResolverRegistry reg = URIResolverRegistry.getInstance();
+        
+        try (InputStream in = reg.getInputStream(module); Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            StringBuilder b = new StringBuilder();
+            char[] buf = new char[8192];
+            int read;
+            
+            while ((read = reader.read(buf)) != -1) {
+                b.append(buf, 0, read);
+            }
+            
+            return new ArrayList<>(resolveModules(ModuleImports.scan(b, module.getURI()).getDependencies(), pcfg).values());
+        }
+        catch (IOException e) {
+            // then we prefetch the module itself only
+            return Collections.emptyList();
+        }
+    }
+    
+    /**
+     * Looks for the source files of modules in the source folders of a path configuration, which takes a file system
+     * access for every folder that is tried.
+     * 
+     * @return the locations of the modules which were found, by module name
+     */
+    public Map<String, ISourceLocation> resolveModules(Iterable<String> moduleNames, PathConfig pcfg) {
+        URIResolverRegistry reg = URIResolverRegistry.getInstance();
+        Map<String, ISourceLocation> result = new LinkedHashMap<>();
+        
+        for (String name : moduleNames) {
+            String path = name.replaceAll("::", "/") + ".rsc";
+            
+            for (IValue src : pcfg.getSrcs()) {
+                ISourceLocation candidate = URIUtil.getChildLocation((ISourceLocation) src, path);
+                
+                if (reg.exists(candidate)) {
+                    result.put(name, candidate);
+                    break;
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Recomputes, in the background, the summaries which were in use before a build invalidated them.
+     */
+    public void refreshInvalidated() {
+        List<URI> todo = new ArrayList<>(invalidated);
+        invalidated.removeAll(todo);
+        
+        for (URI uri : todo) {
+            ISourceLocation loc = vf.sourceLocation(uri);
+            
+            if (!"project".equals(loc.getScheme())) {
+                continue;
+            }
+            
+            IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(loc.getAuthority());
+            
+            if (project.isOpen()) {
+                executor.execute(() -> getSummaryAsync(loc, getPathConfig(project)));
+            }
+        }
+    }
+    
+    /**
+     * Looks up the summary of a module in the memory cache first, then in the summary store of its project,
+     * and only computes it using a compiler kernel if both fail.
+     */
     public IConstructor getSummary(ISourceLocation occ, PathConfig pcfg) {
-         IConstructor summary = summaryCache.getIfPresent(occ.getURI());
-         
-         if (summary == null) {
-             try {
-            	 String moduleName = pcfg.getModuleName(occ);
-                 summary = kernel.makeSummary(vf.string(moduleName), pcfg.asConstructor(kernel));
-                 if (summary.asWithKeywordParameters().hasParameters()) {
-                     // otherwise it is an empty model which we do not 
-                     // want to cache.
-                     summaryCache.put(occ.getURI(), summary);
-                 }
-             }
-             catch (Throwable e) {
-                 Activator.log("failure to create summary for IDE features", e);
-             }
-         }
-         
-         return summary;
-     }
-    
-    // TODO to be removed, rewrite HyperlinkDetector
-    public ISet getUseDef(ISourceLocation file, PathConfig pcfg, String moduleName) {
-        return get(file, pcfg, "useDef", vf.set());
+        SummaryIndex index = getSummaryIndex(occ, pcfg);
+        return index != null ? index.getSummary() : null;
+    }
+    
+    /**
+     * Same as {@link #getSummary(ISourceLocation, PathConfig)}, but returns the summary with its use/def
+     * relation indexed, which is what is cached.
+     */
+    public SummaryIndex getSummaryIndex(ISourceLocation occ, PathConfig pcfg) {
+        URI key = occ.getURI();
+        SummaryIndex index = summaryCache.getIfPresent(key);
+        
+        if (index == null) {
+            long started = getGeneration();
+            
+            try {
+                String moduleName = pcfg.getModuleName(occ);
+                File stored = SummaryStore.locate(occ, moduleName);
+                IConstructor summary = SummaryStore.read(stored, moduleName);
+                
+                if (summary != null) {
+                    index = SummaryIndex.of(summary);
+                    cacheIfCurrent(key, index, started);
+                    return index;
+                }
+                
+                try (KernelPool.Lease lease = kernels.lease()) {
+                    IKernel kernel = lease.get();
+                    summary = kernel.makeSummary(vf.string(moduleName), pcfg.asConstructor(kernel));
+                }
+                
+                index = SummaryIndex.of(summary);
+                
+                if (summary.asWithKeywordParameters().hasParameters()) {
+                    // otherwise it is an empty model which we do not 
+                    // want to cache.
+                    cacheIfCurrent(key, index, started);
+                    // the store is keyed by the source text it was located for, so this is never outdated
+                    SummaryStore.write(stored, moduleName, summary);
+                }
+            }
+            catch (Throwable e) {
+                Activator.log("failure to create summary for IDE features", e);
+            }
+        }
+        
+        return index;
+    }
+    
+    private long getGeneration() {
+        synchronized (invalidatedAt) {
+            return generation;
+        }
+    }
+    
+    /**
+     * Caches a summary, unless its module was invalidated after its computation started, since then it may
+     * be outdated. It is still returned to whoever asked for it, like the last good summary would be.
+     */
+    private void cacheIfCurrent(URI key, SummaryIndex index, long started) {
+        synchronized (invalidatedAt) {
+            if (everythingInvalidatedAt <= started && invalidatedAt.getOrDefault(key, 0L) <= started) {
+                summaryCache.put(key, index);
+            }
+        }
+    }
+    
+    /**
+     * @return the use/def tuples of the module of the given file of which the use contains the offset
+     */
+    public List<ITuple> getUseDefsAt(ISourceLocation file, PathConfig pcfg, int offset) {
+        SummaryIndex index = getAvailableSummary(file, pcfg);
+        return index != null ? index.getUseDefsAt(offset) : Collections.emptyList();
     }
     
     public IString getType(ISourceLocation occ, PathConfig pcfg){
-    	IMap locationTypes = get(occ, pcfg, "locationTypes", vf.mapWriter().done());
-    	return (IString) locationTypes.get(occ);
+        SummaryIndex index = getAvailableSummary(occ, pcfg);
+        return index != null ? index.getType(occ) : null;
     }
     
     public ISet getDefs(ISourceLocation occ, PathConfig pcfg) {
-        ISet useDefs = get(occ, pcfg, "useDef", vf.set());
-        return useDefs.asRelation().index(occ);
+        SummaryIndex index = getAvailableSummary(occ, pcfg);
+        return index != null ? index.getDefs(occ) : vf.set();
     }
     
     public IString getSynopsis(ISourceLocation occ, PathConfig pcfg) {
-        IMap synopses = get(occ, pcfg, "synopses", vf.mapWriter().done());
-        return (IString) synopses.get(occ);
+        SummaryIndex index = getAvailableSummary(occ, pcfg);
+        return index != null ? index.getSynopsis(occ) : null;
     }
     
     public ISourceLocation getDocLoc(ISourceLocation occ, PathConfig pcfg) {
-        IMap docLocs = get(occ, pcfg, "docLocs", vf.mapWriter().done());
-        return (ISourceLocation) docLocs.get(occ);
+        SummaryIndex index = getAvailableSummary(occ, pcfg);
+        return index != null ? index.getDocLoc(occ) : null;
     }
     
     public INode getOutline(IConstructor module) {
-        return kernel.outline(module);
+        try {
+            IKernel kernel = getDedicatedKernel();
+            
+            synchronized (kernel) {
+                return kernel.outline(module);
+            }
+        }
+        catch (IOException e) {
+            Activator.log("failure to create outline", e);
+            return null;
+        }
     }
     
     public IConstructor getPathConfigCons(IProject prj) {
-        return getPathConfig(prj).asConstructor(kernel);
+        try {
+            IKernel kernel = getDedicatedKernel();
+            
+            synchronized (kernel) {
+                return getPathConfig(prj).asConstructor(kernel);
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
     
     public PathConfig getPathConfig(IProject prj) {
@@ -134,10 +368,35 @@ public class IDEServicesModelProvider {
     }
     
     public void clearSummaryCache(ISourceLocation file) {
-        summaryCache.invalidate(file.getURI());
+        URI key = file.getURI();
+        
+        synchronized (invalidatedAt) {
+            invalidatedAt.put(key, ++generation);
+            // a summary which is being computed may be outdated, so the next request starts a new computation
+            pending.remove(key);
+            SummaryIndex old = summaryCache.getIfPresent(key);
+            
+            if (old != null) {
+                lastGood.put(key, old);
+                invalidated.add(key);
+            }
+            
+            summaryCache.invalidate(key);
+        }
     }
 
     public void invalidateEverything() {
-        summaryCache.invalidateAll();
+        synchronized (invalidatedAt) {
+            everythingInvalidatedAt = ++generation;
+            invalidatedAt.clear();
+            pending.clear();
+            
+            for (Map.Entry<URI, SummaryIndex> entry : summaryCache.asMap().entrySet()) {
+                lastGood.put(entry.getKey(), entry.getValue());
+                invalidated.add(entry.getKey());
+            }
+            
+            summaryCache.invalidateAll();
+        }
     }
 }
@@ -0,0 +1,420 @@
+package org.rascalmpl.eclipse.editor;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.rascalmpl.values.ValueFactoryFactory;
+import org.rascalmpl.values.uptr.IRascalValueFactory;
+import org.rascalmpl.values.uptr.ITree;
+import org.rascalmpl.values.uptr.TreeAdapter;
+
+import io.usethesource.vallang.IList;
+import io.usethesource.vallang.IListWriter;
+import io.usethesource.vallang.ISetWriter;
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IValue;
+
+/**
+ * Re-parses only the top-level declaration of a Rascal module which was damaged by an edit, and splices
+ * the new declaration into the parse tree of the previous version of the module.
+ *
+ * The damaged region is found by comparing the new input with the input of the previous successful parse.
+ * When the edit is not strictly inside a single declaration, or the declaration does not parse on its own
+ * anymore, we give up and the caller should parse the whole module. The latter also guarantees that parse
+ * errors are always reported by the full parser, in the context of the whole module.
+ *
+ * Only the path from the root to the new declaration is rebuilt. The source locations of the subtrees after the
+ * edit are not moved in the tree itself, but recorded in a {@link Displacement}, which the token index applies
+ * when it reads a location, such that highlighting does not copy anything.
+ *
+ * Clients which need the tree itself, like the outline and the folding, get a copy with all locations in place
+ * from {@link Displacement#materialize}. In that copy only the subtrees before the edit are shared with the previous
+ * tree; every subtree after the edit is a new object, since its locations moved. So caches which should survive an
+ * edit can not be keyed on the identity of subtrees, but should use their text, like the symbol tree cache does.
+ */
+public class IncrementalParser {
+    private static final String TOPLEVEL = "Toplevel";
+    private static final IRascalValueFactory VF = (IRascalValueFactory) ValueFactoryFactory.getValueFactory();
+    /** after this many edits without a full parse, the tree is copied to keep the chains of shifts short */
+    private static final int MAX_GENERATIONS = 32;
+
+    private String lastInput;
+    private ITree lastTree;
+    private Displacement lastDisplacement = Displacement.NONE;
+    private ITree candidate;
+    private Displacement candidateDisplacement;
+
+    /**
+     * Remembers the result of a successful parse, as the basis for the next incremental parse.
+     */
+    public synchronized void update(String input, ITree tree) {
+        this.lastDisplacement = tree != null && tree == candidate ? candidateDisplacement : Displacement.NONE;
+        this.lastInput = input;
+        this.lastTree = tree;
+        this.candidate = null;
+        this.candidateDisplacement = null;
+    }
+
+    public void reset() {
+        update(null, null);
+    }
+
+    /**
+     * @return the locations which still have to be moved in the given tree, if it was produced by this parser
+     */
+    public synchronized Displacement getDisplacement(ITree tree) {
+        return tree != null && tree == lastTree ? lastDisplacement : Displacement.NONE;
+    }
+
+    /**
+     * @return a parse tree for the new input, or null if it could not be produced incrementally
+     */
+    public synchronized ITree parse(String input, ISourceLocation loc) {
+        if (lastTree == null || lastInput == null) {
+            return null;
+        }
+
+        if (lastInput.equals(input)) {
+            return adopt(lastTree, lastDisplacement);
+        }
+
+        int oldLength = lastInput.length();
+        int newLength = input.length();
+        int limit = Math.min(oldLength, newLength);
+        int prefix = 0;
+
+        while (prefix < limit && lastInput.charAt(prefix) == input.charAt(prefix)) {
+            prefix++;
+        }
+
+        int suffix = 0;
+        while (suffix < limit - prefix && lastInput.charAt(oldLength - suffix - 1) == input.charAt(newLength - suffix - 1)) {
+            suffix++;
+        }
+
+        int damageEnd = oldLength - suffix;
+        List<ITree> path = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+        List<Chain> chains = new ArrayList<>();
+
+        if (!findDeclaration(lastTree, lastDisplacement, prefix, damageEnd, path, indices, chains)) {
+            return null;
+        }
+
+        int last = path.size() - 1;
+        ITree declaration = path.get(last);
+        ISourceLocation old = Chain.apply(chains.get(last), TreeAdapter.getLocation(declaration));
+        int delta = newLength - oldLength;
+        String snippet = input.substring(old.getOffset(), old.getOffset() + old.getLength() + delta);
+        ITree replacement;
+
+        try {
+            replacement = ParserCache.parse(TOPLEVEL, loc.getURI(), snippet.toCharArray());
+        }
+        catch (Throwable e) {
+            // parse errors, and other failures, are reported by the full parse
+            return null;
+        }
+
+        // the snippet was parsed as if it started at the beginning of the file
+        replacement = copy(replacement, new Shift(0, old.getOffset(), 1, old.getBeginLine() - 1, old.getBeginColumn()));
+
+        ISourceLocation now = TreeAdapter.getLocation(replacement);
+        Shift after = new Shift(old.getOffset() + old.getLength(), delta, old.getEndLine(), now.getEndLine() - old.getEndLine(), now.getEndColumn() - old.getEndColumn());
+
+        Map<ITree, Chain[]> pending = new IdentityHashMap<>(lastDisplacement.pending);
+        pending.remove(declaration);
+
+        ITree result = replacement;
+        for (int i = last - 1; i >= 0; i--) {
+            ITree parent = path.get(i);
+            int index = indices.get(i + 1);
+            IList args = TreeAdapter.getArgs(parent);
+            Chain[] moves = new Chain[args.length()];
+
+            for (int j = 0; j < moves.length; j++) {
+                if (j != index) {
+                    Chain move = lastDisplacement.child(parent, j, chains.get(i));
+                    moves[j] = j > index ? Chain.then(move, after) : move;
+                }
+            }
+
+            ITree rebuilt = relocate(parent, VF.appl(TreeAdapter.getProduction(parent), args.put(index, result)), Chain.then(chains.get(i), after));
+            pending.remove(parent);
+            pending.put(rebuilt, moves);
+            result = rebuilt;
+        }
+
+        Displacement displacement = new Displacement(pending, lastDisplacement.generations + 1);
+
+        if (displacement.generations > MAX_GENERATIONS) {
+            return adopt(displacement.materialize(result), Displacement.NONE);
+        }
+
+        return adopt(result, displacement);
+    }
+
+    /**
+     * The displacement of a new tree only becomes the basis of the next parse when the caller {@link #update}s with that tree.
+     */
+    private ITree adopt(ITree tree, Displacement displacement) {
+        this.candidate = tree;
+        this.candidateDisplacement = displacement;
+        return tree;
+    }
+
+    /**
+     * Finds the path from the root to the deepest top-level declaration which strictly contains the damaged region,
+     * together with the moves which apply to the locations of the nodes on the path.
+     */
+    private static boolean findDeclaration(ITree tree, Displacement displacement, int start, int end, List<ITree> path, List<Integer> indices, List<Chain> chains) {
+        ITree current = tree;
+        Chain chain = null;
+        int found = -1;
+        indices.add(-1);
+        path.add(current);
+        chains.add(chain);
+
+        while (TreeAdapter.isAppl(current)) {
+            if (isDeclaration(current)) {
+                found = path.size();
+            }
+
+            IList args = TreeAdapter.getArgs(current);
+            ITree next = null;
+
+            for (int i = 0; i < args.length(); i++) {
+                ITree child = (ITree) args.get(i);
+                Chain move = displacement.child(current, i, chain);
+                ISourceLocation l = Chain.apply(move, TreeAdapter.getLocation(child));
+
+                if (l != null && l.hasOffsetLength() && l.getOffset() < start && end < l.getOffset() + l.getLength()) {
+                    next = child;
+                    chain = move;
+                    indices.add(i);
+                    path.add(child);
+                    chains.add(chain);
+                    break;
+                }
+            }
+
+            if (next == null) {
+                break;
+            }
+
+            current = next;
+        }
+
+        if (found == -1) {
+            return false;
+        }
+
+        // cut the path below the declaration
+        while (path.size() > found) {
+            path.remove(path.size() - 1);
+            indices.remove(indices.size() - 1);
+            chains.remove(chains.size() - 1);
+        }
+
+        return true;
+    }
+
+    private static boolean isDeclaration(ITree tree) {
+        return !TreeAdapter.isList(tree)
+            && !TreeAdapter.isLiteral(tree)
+            && !TreeAdapter.isCILiteral(tree)
+            && !TreeAdapter.isLexical(tree)
+            && TOPLEVEL.equals(TreeAdapter.getSortName(tree));
+    }
+
+    /**
+     * Copies a tree with moved source locations.
+     */
+    private static ITree copy(ITree tree, Move move) {
+        if (TreeAdapter.isAppl(tree)) {
+            IListWriter args = VF.listWriter();
+
+            for (IValue arg : TreeAdapter.getArgs(tree)) {
+                args.append(copy((ITree) arg, move));
+            }
+
+            return relocate(tree, VF.appl(TreeAdapter.getProduction(tree), args.done()), move);
+        }
+        else if (TreeAdapter.isAmb(tree)) {
+            ISetWriter alts = VF.setWriter();
+
+            for (IValue alt : TreeAdapter.getAlternatives(tree)) {
+                alts.insert(copy((ITree) alt, move));
+            }
+
+            return relocate(tree, VF.amb(alts.done()), move);
+        }
+        else {
+            // characters and cycles have no positions
+            return tree;
+        }
+    }
+
+    private static ITree relocate(ITree original, ITree copy, Move move) {
+        ISourceLocation loc = TreeAdapter.getLocation(original);
+
+        if (loc == null) {
+            return copy;
+        }
+
+        return (ITree) copy.asAnnotatable().setAnnotations(original.asAnnotatable().getAnnotations()).asAnnotatable().setAnnotation("loc", move != null ? move.apply(loc) : loc);
+    }
+
+    private interface Move {
+        ISourceLocation apply(ISourceLocation loc);
+    }
+
+    /**
+     * The source locations of a tree produced by {@link IncrementalParser#parse} which have not been moved yet.
+     * For every rebuilt node it records, per child, the shifts which apply to all locations in that child.
+     * Nodes which are not in the displacement have their children at the right locations, relative to the
+     * node itself.
+     */
+    public static final class Displacement {
+        public static final Displacement NONE = new Displacement(new IdentityHashMap<>(), 0);
+
+        private final Map<ITree, Chain[]> pending;
+        private final int generations;
+
+        private Displacement(Map<ITree, Chain[]> pending, int generations) {
+            this.pending = pending;
+            this.generations = generations;
+        }
+
+        public boolean isEmpty() {
+            return pending.isEmpty();
+        }
+
+        /**
+         * @param chain the shifts which apply to the parent
+         * @return the shifts which apply to the index-th child of the parent
+         */
+        Chain child(ITree parent, int index, Chain chain) {
+            Chain[] moves = pending.get(parent);
+            return moves == null ? chain : Chain.concat(moves[index], chain);
+        }
+
+        /**
+         * @return a copy of the tree with all source locations in place, which shares the subtrees that did not move;
+         *         this allocates every node after the first edit since the last full parse
+         */
+        public ITree materialize(ITree tree) {
+            return isEmpty() || tree == null ? tree : materialize(tree, null);
+        }
+
+        private ITree materialize(ITree tree, Chain chain) {
+            Chain[] moves = pending.get(tree);
+
+            if (moves == null) {
+                return chain == null ? tree : copy(tree, chain);
+            }
+
+            IList args = TreeAdapter.getArgs(tree);
+            IListWriter w = VF.listWriter();
+
+            for (int i = 0; i < args.length(); i++) {
+                w.append(materialize((ITree) args.get(i), Chain.concat(moves[i], chain)));
+            }
+
+            return relocate(tree, VF.appl(TreeAdapter.getProduction(tree), w.done()), chain);
+        }
+    }
+
+    /**
+     * An immutable sequence of shifts, applied from the oldest to the newest.
+     */
+    static final class Chain implements Move {
+        private final Chain previous;
+        private final Shift shift;
+
+        private Chain(Chain previous, Shift shift) {
+            this.previous = previous;
+            this.shift = shift;
+        }
+
+        static Chain then(Chain chain, Shift shift) {
+            return shift.isIdentity() ? chain : new Chain(chain, shift);
+        }
+
+        /**
+         * @return the shifts of the first chain followed by the ones of the second
+         */
+        static Chain concat(Chain first, Chain second) {
+            if (second == null) {
+                return first;
+            }
+
+            if (first == null) {
+                return second;
+            }
+
+            return new Chain(concat(first, second.previous), second.shift);
+        }
+
+        static ISourceLocation apply(Chain chain, ISourceLocation loc) {
+            return chain == null ? loc : chain.apply(loc);
+        }
+
+        @Override
+        public ISourceLocation apply(ISourceLocation loc) {
+            return shift.apply(previous != null ? previous.apply(loc) : loc);
+        }
+    }
+
+    /**
+     * Moves all source positions at or after a certain offset by a fixed distance. Columns only move for
+     * positions on the line where the edit ended.
+     */
+    static class Shift implements Move {
+        private final int from;
+        private final int offset;
+        private final int pivotLine;
+        private final int lines;
+        private final int columns;
+
+        public Shift(int from, int offset, int pivotLine, int lines, int columns) {
+            this.from = from;
+            this.offset = offset;
+            this.pivotLine = pivotLine;
+            this.lines = lines;
+            this.columns = columns;
+        }
+
+        private boolean isIdentity() {
+            return offset == 0 && lines == 0 && columns == 0;
+        }
+
+        @Override
+        public ISourceLocation apply(ISourceLocation loc) {
+            if (loc == null || !loc.hasOffsetLength() || !loc.hasLineColumn()) {
+                return loc;
+            }
+
+            int begin = loc.getOffset();
+            int end = begin + loc.getLength();
+            int beginLine = loc.getBeginLine(), beginColumn = loc.getBeginColumn();
+            int endLine = loc.getEndLine(), endColumn = loc.getEndColumn();
+
+            if (begin >= from) {
+                beginColumn += beginLine == pivotLine ? columns : 0;
+                beginLine += lines;
+                begin += offset;
+            }
+
+            if (end >= from) {
+                endColumn += endLine == pivotLine ? columns : 0;
+                endLine += lines;
+                end += offset;
+            }
+
+            return VF.sourceLocation(loc, begin, end - begin, beginLine, endLine, beginColumn, endColumn);
+        }
+    }
+}
@@ -76,13 +76,16 @@ public class MessagesTo {
 		}
 	}
 	
+	public int getSeverity(IConstructor message) {
+		if (severityMap.containsKey(message.getName())) {
+			return severityMap.get(message.getName());
+		} 
+		
+		return defaultSeverity;
+	}
+	
 	private void processMessage(IConstructor marker, ISourceLocation loc, IMessageHandler handler)  {
-		int severity;
-		if(severityMap.containsKey(marker.getName())){
-			severity = severityMap.get(marker.getName());
-		} else {
-			severity = defaultSeverity;
-		}
+		int severity = getSeverity(marker);
 
 		String msg = ((IString) marker.get(0)).getValue();
 		Map<String,Object> attrs = new HashMap<String,Object>();
@@ -24,10 +24,22 @@ import io.usethesource.vallang.ISourceLocation;
 import io.usethesource.vallang.IValue;
 
 public class NodeLocator implements ISourcePositionLocator {
+	private ParseTreeIndex index;
+
+	/**
+	 * @return the index of the tree, which is only built again when the tree changed
+	 */
+	public synchronized ParseTreeIndex getIndex(ITree tree) {
+		if (index == null || index.getTree() != tree) {
+			index = ParseTreeIndex.build(tree);
+		}
+		
+		return index;
+	}
 
 	public Object findNode(Object ast, int offset) {
 		if (ast instanceof ITree) {
-			return TreeAdapter.locateLexical((ITree) ast, offset);
+			return getIndex((ITree) ast).locateLexical(offset);
 		}
 		else if (ast instanceof AbstractAST) {
 			return ((AbstractAST) ast).findNode(offset);
@@ -40,7 +52,7 @@ public class NodeLocator implements ISourcePositionLocator {
 
 	public Object findNode(Object ast, int startOffset, int endOffset) {
 		if (ast instanceof ITree) {
-			return TreeAdapter.locateLexical((ITree) ast, startOffset);
+			return getIndex((ITree) ast).locateLexical(startOffset);
 		}
 		else if (ast instanceof AbstractAST) {
 			return ((AbstractAST) ast).findNode(startOffset);
@@ -17,7 +17,9 @@
 package org.rascalmpl.eclipse.editor;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.Assert;
@@ -31,19 +33,16 @@ import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.IRascalResources;
+import org.rascalmpl.eclipse.editor.IncrementalParser.Displacement;
 import org.rascalmpl.eclipse.nature.IWarningHandler;
 import org.rascalmpl.eclipse.nature.RascalMonitor;
+import org.rascalmpl.eclipse.preferences.RascalPreferences;
+import org.rascalmpl.eclipse.util.LatencyHistogram;
 import org.rascalmpl.interpreter.Evaluator;
 import org.rascalmpl.interpreter.asserts.Ambiguous;
 import org.rascalmpl.interpreter.control_exceptions.Throw;
 import org.rascalmpl.interpreter.staticErrors.StaticError;
-import org.rascalmpl.library.lang.rascal.syntax.RascalParser;
-import org.rascalmpl.parser.Parser;
 import org.rascalmpl.parser.gtd.exception.ParseError;
-import org.rascalmpl.parser.gtd.result.action.IActionExecutor;
-import org.rascalmpl.parser.gtd.result.out.DefaultNodeFlattener;
-import org.rascalmpl.parser.uptr.UPTRNodeFactory;
-import org.rascalmpl.parser.uptr.action.NoActionExecutor;
 import org.rascalmpl.uri.ProjectURIResolver;
 import org.rascalmpl.uri.file.FileURIResolver;
 import io.usethesource.vallang.IConstructor;
@@ -65,12 +64,19 @@ public class ParseController implements IParseController, IMessageHandlerProvide
 	protected IMessageHandler handler;
 	protected ISourceProject project;
 	protected IConstructor parseTree;
+	private Displacement displacement = Displacement.NONE;
+	private IConstructor currentAst;
 	protected ParseJob job;
 	protected IPath path;
 	protected Language language;
 	protected IDocument document;
 	protected Evaluator parser;
 	protected IWarningHandler warnings;
+	private TokenIndex tokens;
+	private IConstructor tokenTree;
+	protected final ParseScheduler scheduler = new ParseScheduler();
+	private final List<Runnable> messages = new CopyOnWriteArrayList<>();
+	private final NodeLocator locator = new NodeLocator();
 	
 	public IAnnotationTypeInfo getAnnotationTypeInfo() {
 		return null;
@@ -80,12 +86,22 @@ public class ParseController implements IParseController, IMessageHandlerProvide
 		return handler;
 	}
 	
-	public Object getCurrentAst() {
-		return parseTree;
+	/**
+	 * The locations after the last edit of an incrementally parsed tree are only moved when a client asks for the tree,
+	 * and then only once per tree. The subtrees after the edit are copies then, see {@link IncrementalParser}.
+	 */
+	public synchronized Object getCurrentAst() {
+		if (currentAst == null && parseTree != null) {
+			currentAst = displacement.materialize((ITree) parseTree);
+		}
+		
+		return currentAst;
 	}
 	
-    public void setCurrentAst(IConstructor parseTree) {
+    public synchronized void setCurrentAst(IConstructor parseTree) {
 		this.parseTree = parseTree;
+		this.displacement = Displacement.NONE;
+		this.currentAst = parseTree;
 	}
 
 	public Language getLanguage() {
@@ -96,7 +112,7 @@ public class ParseController implements IParseController, IMessageHandlerProvide
 	}
 
 	public ISourcePositionLocator getSourcePositionLocator() {
-		return new NodeLocator();
+		return locator;
 	}
 
 	public IPath getPath() {
@@ -112,7 +128,30 @@ public class ParseController implements IParseController, IMessageHandlerProvide
 	}
 	
 	public Iterator<Object> getTokenIterator(IRegion region) {
-		return parseTree != null ? new TokenIterator(false, parseTree) : null;
+		TokenIndex index = getTokenIndex();
+		
+		if (index == null) {
+			return null;
+		}
+		
+		return region != null ? new TokenIterator(index, region.getOffset(), region.getLength()) : new TokenIterator(index);
+	}
+	
+	/**
+	 * The tokens are indexed once per parse tree, and not for every region which is highlighted.
+	 * This reads the locations through the displacement, such that highlighting does not have to copy the tree.
+	 */
+	private synchronized TokenIndex getTokenIndex() {
+		if (parseTree == null) {
+			return null;
+		}
+		
+		if (tokenTree != parseTree) {
+			tokens = TokenIndex.build(false, parseTree, displacement);
+			tokenTree = parseTree;
+		}
+		
+		return tokens;
 	}
 	
 	
@@ -129,6 +168,11 @@ public class ParseController implements IParseController, IMessageHandlerProvide
 		ISourceLocation location = getSourceLocation();
 		
 		initParseJob(handler, location);
+		
+		if (project != null && location != null && IRascalResources.RASCAL_EXT.equals(path.getFileExtension()) && RascalPreferences.isRascalCompilerEnabled()) {
+			// have the summaries ready before the first hover
+			IDEServicesModelProvider.getInstance().prefetch(project.getRawProject(), location);
+		}
 	}
 	
 	public ISourceLocation getSourceLocation() {
@@ -165,6 +209,8 @@ public class ParseController implements IParseController, IMessageHandlerProvide
 
 		protected String input;
 		public ITree parseTree = null;
+		public Displacement displacement = Displacement.NONE;
+		private final IncrementalParser incremental = new IncrementalParser();
 
 		public ParseJob(String name, ISourceLocation uri, IMessageHandler handler) {
 			super(name);
@@ -190,8 +236,7 @@ public class ParseController implements IParseController, IMessageHandlerProvide
 		}
 		
 		private ITree parseModule(char[] input, ISourceLocation loc) {
-	        IActionExecutor<ITree> actions = new NoActionExecutor();    
-	        return new RascalParser().parse(Parser.START_MODULE, loc.getURI(), input, actions, new DefaultNodeFlattener<IConstructor, ITree, ISourceLocation>(), new UPTRNodeFactory(true));
+	        return ParserCache.parseModule(input, loc);
 	    }
 		
 		@Override
@@ -200,13 +245,26 @@ public class ParseController implements IParseController, IMessageHandlerProvide
 			clearMarkers();
 			rm.startJob("parsing", 500);
 			parseTree = null;
+			displacement = Displacement.NONE;
 			if (input == null || path == null || (path != null && !path.isAbsolute() && project == null)) {
 				// may happen when project is deleted before Eclipse was started
 				return null;
 			}
 			
+			if (monitor.isCanceled()) {
+				rm.endJob(false);
+				return Status.CANCEL_STATUS;
+			}
+			
 			try {
-			    parseTree = parseModule(input.toCharArray(), uri);
+			    parseTree = incremental.parse(input, uri);
+			    
+			    if (parseTree == null) {
+			        parseTree = parseModule(input.toCharArray(), uri);
+			    }
+			    
+			    incremental.update(input, parseTree);
+			    displacement = incremental.getDisplacement(parseTree);
 			}
 			catch (FactTypeUseException ftue) {
 				Activator.getInstance().logException("parsing rascal failed", ftue);
@@ -269,14 +327,34 @@ public class ParseController implements IParseController, IMessageHandlerProvide
 
 	}
 	
+	/**
+	 * Parses the given version of the document, unless a newer version comes in before the parse is done.
+	 * In that case null is returned, and neither the tree nor the messages of this version are published.
+	 */
 	@Override
 	public Object parse(String input, IProgressMonitor monitor) {
-		parseTree = null;
+		long version = scheduler.next();
+		
 		try {
-			job.initialize(input);
-			job.schedule();
+			if (!scheduler.debounce(version, monitor)) {
+				return null;
+			}
+			
+			// an abandoned parse of an older version may still be running
 			job.join();
-			parseTree = job.parseTree;
+			messages.clear();
+			job.initialize(input);
+			
+			if (!scheduler.run(job, version, monitor)) {
+				return null;
+			}
+			
+			publish(job.parseTree, job.displacement);
+			
+			for (Runnable message : messages) {
+				message.run();
+			}
+			
 			return parseTree;
 		} catch (InterruptedException e) {
 			Activator.getInstance().logException("parser interrupted", e);
@@ -285,11 +363,34 @@ public class ParseController implements IParseController, IMessageHandlerProvide
 		return null;
 	}
 	
+	private synchronized void publish(ITree tree, Displacement displacement) {
+		this.parseTree = tree;
+		this.displacement = displacement;
+		this.currentAst = null;
+	}
+	
+	/**
+	 * @return the latencies of the parses of this document which were published
+	 */
+	public LatencyHistogram getParseLatency() {
+		return scheduler.getLatency();
+	}
+	
+	/**
+	 * @return the number of parses of this document which were abandoned because the document changed again
+	 */
+	public long getSupersededParses() {
+		return scheduler.getSuperseded();
+	}
+	
+	/**
+	 * Parse errors are only reported to the message handler after the parse turned out to be of the latest version of the document.
+	 */
 	protected void setParseError(int offset, int length, int beginLine, int beginColumn, int endLine, int endColumn, String message){
 		if(offset >= 0){
-			handler.handleSimpleMessage(message, offset, offset + ((length == 0) ? 0 : length - 1), beginColumn, endColumn, beginLine, endLine);
+			messages.add(() -> handler.handleSimpleMessage(message, offset, offset + ((length == 0) ? 0 : length - 1), beginColumn, endColumn, beginLine, endLine));
 		}else{
-			handler.handleSimpleMessage(message, 0, 0, 0, 0, 1, 1);
+			messages.add(() -> handler.handleSimpleMessage(message, 0, 0, 0, 0, 1, 1));
 		}
 	}
 
@@ -0,0 +1,126 @@
+package org.rascalmpl.eclipse.editor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.IJobChangeListener;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.rascalmpl.eclipse.preferences.RascalPreferences;
+import org.rascalmpl.eclipse.util.LatencyHistogram;
+
+/**
+ * Decides for a single document which parse requests are worth running. Every request gets a new version
+ * number; a request waits for a short delay first, such that a burst of keystrokes leads to a single parse, and
+ * it is abandoned as soon as a newer version arrives or the client cancels it. The results of an abandoned parse
+ * are dropped, so only trees and messages of the latest version of the document are published.
+ *
+ * The Rascal parser can not be interrupted half-way, so a parse which has already started runs to completion in
+ * the background; clients should join the parse job before they prepare it for the next version.
+ */
+public class ParseScheduler {
+    private static final long POLL_MS = 10;
+
+    private final AtomicLong latest = new AtomicLong(0);
+    private final AtomicLong superseded = new AtomicLong(0);
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * @return the version number of a new parse request, which makes all earlier requests stale
+     */
+    public long next() {
+        return latest.incrementAndGet();
+    }
+
+    public boolean isLatest(long version) {
+        return latest.get() == version;
+    }
+
+    /**
+     * Waits for the configured delay, to give the user the chance to type some more.
+     *
+     * @return false if the request became stale during the delay
+     */
+    public boolean debounce(long version, IProgressMonitor monitor) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + RascalPreferences.getParseDelay();
+
+        while (System.currentTimeMillis() < deadline) {
+            if (isStale(version, monitor)) {
+                superseded.incrementAndGet();
+                return false;
+            }
+
+            Thread.sleep(Math.min(POLL_MS, Math.max(1, deadline - System.currentTimeMillis())));
+        }
+
+        return !isStale(version, monitor);
+    }
+
+    /**
+     * Schedules the parse job for the given version and waits for it to finish. If the request becomes stale in
+     * the mean time, the job is canceled and we stop waiting for it.
+     *
+     * @return true iff the job finished and its result is for the latest version of the document
+     */
+    public boolean run(Job job, long version, IProgressMonitor monitor) throws InterruptedException {
+        if (isStale(version, monitor)) {
+            superseded.incrementAndGet();
+            return false;
+        }
+
+        CountDownLatch done = new CountDownLatch(1);
+        IJobChangeListener listener = new JobChangeAdapter() {
+            @Override
+            public void done(IJobChangeEvent event) {
+                done.countDown();
+            }
+        };
+
+        long start = System.nanoTime();
+        job.addJobChangeListener(listener);
+
+        try {
+            job.schedule();
+
+            while (!done.await(POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (isStale(version, monitor)) {
+                    job.cancel();
+                    superseded.incrementAndGet();
+                    return false;
+                }
+            }
+
+            if (isLatest(version)) {
+                latency.record(System.nanoTime() - start);
+                return true;
+            }
+
+            superseded.incrementAndGet();
+            return false;
+        }
+        finally {
+            job.removeJobChangeListener(listener);
+        }
+    }
+
+    private boolean isStale(long version, IProgressMonitor monitor) {
+        return !isLatest(version) || (monitor != null && monitor.isCanceled());
+    }
+
+    /**
+     * @return the time between scheduling and finishing the parses which were published
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return the number of parse requests which were abandoned because a newer version came in
+     */
+    public long getSuperseded() {
+        return superseded.get();
+    }
+}
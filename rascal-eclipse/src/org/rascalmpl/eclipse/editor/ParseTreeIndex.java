@@ -0,0 +1,217 @@
+package org.rascalmpl.eclipse.editor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import org.rascalmpl.values.uptr.ITree;
+import org.rascalmpl.values.uptr.TreeAdapter;
+
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IValue;
+
+/**
+ * An interval tree over the source locations of the nodes of a parse tree. Finding the deepest node at an offset
+ * costs logarithmic time in the number of nodes plus the nesting depth at that offset, where
+ * {@link TreeAdapter#locateLexical(ITree, int)} and {@link TreeAdapter#locateAnnotatedTree(ITree, String, int)}
+ * walk down from the root on every hover, click or hyperlink probe.
+ *
+ * The intervals are kept in an array sorted by start offset, which doubles as an implicit balanced binary search
+ * tree; every node of that search tree knows the largest end offset in its subtree, such that whole subtrees of
+ * intervals which end before the offset can be skipped.
+ *
+ * The index of the current tree of an editor is kept by the {@link NodeLocator} of its parse controller, and only
+ * built on the first lookup, such that typing does not pay for it and closing the editor releases it.
+ */
+public class ParseTreeIndex {
+
+    private final ITree tree;
+    private final ITree[] nodes;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] depths;
+    /** whether {@link TreeAdapter#locateLexical(ITree, int)} would visit the node on its way down */
+    private final boolean[] lexicalPath;
+    private final int[] maxEnds;
+
+    private ParseTreeIndex(ITree tree, ITree[] nodes, int[] starts, int[] ends, int[] depths, boolean[] lexicalPath) {
+        this.tree = tree;
+        this.nodes = nodes;
+        this.starts = starts;
+        this.ends = ends;
+        this.depths = depths;
+        this.lexicalPath = lexicalPath;
+        this.maxEnds = new int[nodes.length];
+        augment(0, nodes.length);
+    }
+
+    public static ParseTreeIndex build(ITree tree) {
+        Collector c = new Collector();
+        c.visit(tree, 0, true);
+        int size = c.size;
+
+        // the start offset in the high bits and the visiting order in the low bits, such that parents stay
+        // before their children when they start at the same offset
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = ((long) c.starts[i] << 32) | i;
+        }
+
+        Arrays.sort(order);
+
+        ITree[] nodes = new ITree[size];
+        int[] starts = new int[size];
+        int[] ends = new int[size];
+        int[] depths = new int[size];
+        boolean[] lexicalPath = new boolean[size];
+
+        for (int i = 0; i < size; i++) {
+            int j = (int) order[i];
+            nodes[i] = c.nodes[j];
+            starts[i] = c.starts[j];
+            ends[i] = c.ends[j];
+            depths[i] = c.depths[j];
+            lexicalPath[i] = c.lexicalPath[j];
+        }
+
+        return new ParseTreeIndex(tree, nodes, starts, ends, depths, lexicalPath);
+    }
+
+    private int augment(int low, int high) {
+        if (low >= high) {
+            return Integer.MIN_VALUE;
+        }
+
+        int mid = (low + high) >>> 1;
+        int max = Math.max(ends[mid], Math.max(augment(low, mid), augment(mid + 1, high)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    public ITree getTree() {
+        return tree;
+    }
+
+    /**
+     * Same as {@link TreeAdapter#locateLexical(ITree, int)}: the lexical at the offset, or else the deepest
+     * node on the way to it.
+     */
+    public ITree locateLexical(int offset) {
+        ITree result = deepest(offset, i -> lexicalPath[i]);
+
+        if (result == null && nodes.length > 0) {
+            // the root also claims the offset right after its end, as a cursor at the end of the file
+            ISourceLocation l = TreeAdapter.getLocation(tree);
+
+            if (l != null && l.getOffset() <= offset && offset <= l.getOffset() + l.getLength()) {
+                return tree;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Same as {@link TreeAdapter#locateAnnotatedTree(ITree, String, int)}: the deepest node at the offset which
+     * has the given annotation.
+     */
+    public ITree locateAnnotatedTree(String label, int offset) {
+        return deepest(offset, i -> nodes[i].asAnnotatable().getAnnotation(label) != null);
+    }
+
+    /**
+     * @return the deepest node which contains the offset and satisfies the filter, or null
+     */
+    private ITree deepest(int offset, IntPredicate filter) {
+        int[] best = { -1 };
+        search(0, nodes.length, offset, filter, best);
+        return best[0] != -1 ? nodes[best[0]] : null;
+    }
+
+    private void search(int low, int high, int offset, IntPredicate filter, int[] best) {
+        if (low >= high) {
+            return;
+        }
+
+        int mid = (low + high) >>> 1;
+
+        if (maxEnds[mid] <= offset) {
+            // everything in this subtree ends before the offset
+            return;
+        }
+
+        search(low, mid, offset, filter, best);
+
+        if (starts[mid] <= offset) {
+            if (offset < ends[mid] && (best[0] == -1 || depths[mid] > depths[best[0]]) && filter.test(mid)) {
+                best[0] = mid;
+            }
+
+            search(mid + 1, high, offset, filter, best);
+        }
+    }
+
+    private static class Collector {
+        ITree[] nodes = new ITree[1024];
+        int[] starts = new int[1024];
+        int[] ends = new int[1024];
+        int[] depths = new int[1024];
+        boolean[] lexicalPath = new boolean[1024];
+        int size = 0;
+
+        private void add(ITree tree, int start, int end, int depth, boolean onLexicalPath) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                depths = Arrays.copyOf(depths, size * 2);
+                lexicalPath = Arrays.copyOf(lexicalPath, size * 2);
+            }
+
+            nodes[size] = tree;
+            starts[size] = start;
+            ends[size] = end;
+            depths[size] = depth;
+            lexicalPath[size] = onLexicalPath;
+            size++;
+        }
+
+        void visit(ITree tree, int depth, boolean onLexicalPath) {
+            if (!TreeAdapter.isAppl(tree)) {
+                // characters and cycles have no positions, and locate does not look inside ambiguities
+                return;
+            }
+
+            ISourceLocation l = TreeAdapter.getLocation(tree);
+
+            if (l == null || !l.hasOffsetLength()) {
+                return;
+            }
+
+            add(tree, l.getOffset(), l.getOffset() + l.getLength(), depth, onLexicalPath);
+
+            Set<IValue> astArgs = onLexicalPath && !TreeAdapter.isLexical(tree) ? getASTArgs(tree) : Collections.emptySet();
+
+            for (IValue arg : TreeAdapter.getArgs(tree)) {
+                visit((ITree) arg, depth + 1, astArgs.contains(arg));
+            }
+        }
+
+        private static Set<IValue> getASTArgs(ITree tree) {
+            Set<IValue> result = Collections.newSetFromMap(new IdentityHashMap<>());
+
+            try {
+                for (IValue arg : TreeAdapter.getASTArgs(tree)) {
+                    result.add(arg);
+                }
+            }
+            catch (Throwable e) {
+                // not a context-free node, so locateLexical would not go down here either
+            }
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.rascalmpl.eclipse.editor;
+
+import java.net.URI;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.rascalmpl.eclipse.terms.TermLanguageRegistry;
+import org.rascalmpl.interpreter.NullRascalMonitor;
+import org.rascalmpl.interpreter.result.ICallableValue;
+import org.rascalmpl.library.lang.rascal.syntax.RascalParser;
+import org.rascalmpl.parser.Parser;
+import org.rascalmpl.parser.gtd.result.action.IActionExecutor;
+import org.rascalmpl.parser.gtd.result.out.DefaultNodeFlattener;
+import org.rascalmpl.parser.uptr.UPTRNodeFactory;
+import org.rascalmpl.parser.uptr.action.NoActionExecutor;
+import org.rascalmpl.uri.URIUtil;
+import org.rascalmpl.values.ValueFactoryFactory;
+import org.rascalmpl.values.uptr.ITree;
+
+import io.usethesource.vallang.IConstructor;
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IValue;
+import io.usethesource.vallang.IValueFactory;
+import io.usethesource.vallang.type.Type;
+import io.usethesource.vallang.type.TypeFactory;
+
+/**
+ * Keeps the stateless parts of the Rascal parser pipeline (action executor and node factory) around for
+ * all editors, and warms up the generated Rascal parser in the background, such that the first keystroke
+ * in a Rascal editor does not pay for class loading and JIT compilation of the parser.
+ *
+ * A generated parser itself keeps state during a parse, so every parse still needs its own instance; after
+ * the warm-up that is cheap.
+ *
+ * The parsers of DSL editors are Rascal functions, and the evaluator which owns them generates and caches the
+ * actual parser class on their first call. We make that first call in the background when the language is
+ * registered, and again when it is registered anew after its grammar module was reloaded. The parser itself
+ * stays with the registry; the warm-up only calls it.
+ */
+public class ParserCache {
+    private static final IActionExecutor<ITree> actions = new NoActionExecutor();
+    private static final UPTRNodeFactory factory = new UPTRNodeFactory(true);
+    private static final URI WARM_UP_URI = URI.create("unknown:///WarmUp.rsc");
+    private static final String WARM_UP_MODULE =
+        "module WarmUp\n"
+        + "import List;\n"
+        + "data D = d(int x, str y = \"\");\n"
+        + "int f(int x) = x + 1;\n"
+        + "list[int] g(list[int] xs) {\n"
+        + "  return [f(x) | x <- xs, x > 0];\n"
+        + "}\n";
+    private static volatile boolean warm = false;
+
+    private ParserCache() { }
+
+    public static ITree parseModule(char[] input, ISourceLocation loc) {
+        return parse(Parser.START_MODULE, loc.getURI(), input);
+    }
+
+    public static ITree parse(String nonterminal, URI uri, char[] input) {
+        return new RascalParser().parse(nonterminal, uri, input, actions, new DefaultNodeFlattener<IConstructor, ITree, ISourceLocation>(), factory);
+    }
+
+    /**
+     * Parses a small module a few times in a background job, once per session.
+     */
+    public static void warmUp() {
+        if (warm) {
+            return;
+        }
+
+        warm = true;
+
+        Job job = new Job("Warming up Rascal parser") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                char[] input = WARM_UP_MODULE.toCharArray();
+
+                for (int i = 0; i < 10 && !monitor.isCanceled(); i++) {
+                    parse(Parser.START_MODULE, WARM_UP_URI, input);
+                }
+
+                return Status.OK_STATUS;
+            }
+        };
+
+        job.setSystem(true);
+        job.setPriority(Job.DECORATE);
+        job.schedule();
+    }
+
+    /**
+     * Calls the parser of a DSL once in a background job, such that the evaluator generates its parser
+     * before the first editor needs it.
+     */
+    public static void warmUp(String language, ICallableValue parser) {
+        Job job = new Job("Warming up parser for " + language) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                if (TermLanguageRegistry.getInstance().getParser(language) != parser) {
+                    // the language was reloaded or removed in the mean time
+                    return Status.OK_STATUS;
+                }
+
+                IValueFactory vf = ValueFactoryFactory.getValueFactory();
+                TypeFactory tf = TypeFactory.getInstance();
+
+                try {
+                    synchronized (parser.getEval()) {
+                        parser.call(new NullRascalMonitor(), new Type[] { tf.stringType(), tf.sourceLocationType() }, new IValue[] { vf.string(""), URIUtil.rootLocation("unknown") }, null);
+                    }
+                }
+                catch (Throwable e) {
+                    // the empty string is usually not a sentence of the language, but by now the parser was generated
+                }
+
+                return Status.OK_STATUS;
+            }
+        };
+
+        job.setSystem(true);
+        job.setPriority(Job.DECORATE);
+        job.schedule();
+    }
+}
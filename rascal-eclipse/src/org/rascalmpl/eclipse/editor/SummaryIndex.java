@@ -0,0 +1,211 @@
+package org.rascalmpl.eclipse.editor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.rascalmpl.values.ValueFactoryFactory;
+
+import io.usethesource.vallang.IConstructor;
+import io.usethesource.vallang.IMap;
+import io.usethesource.vallang.ISet;
+import io.usethesource.vallang.ISetWriter;
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IString;
+import io.usethesource.vallang.ITuple;
+import io.usethesource.vallang.IValue;
+import io.usethesource.vallang.IValueFactory;
+import io.usethesource.vallang.IWithKeywordParameters;
+import io.usethesource.vallang.type.Type;
+
+/**
+ * The summary of a module, with its use/def relation indexed for the questions the IDE services ask: which uses
+ * are at this offset (hyperlinks), what are the definitions of this use (hover, jump-to-definition), and what are the
+ * uses of this definition (find references). The index is computed once, when the summary is cached, such that
+ * answering these questions does not depend on the size of the module anymore.
+ */
+public class SummaryIndex {
+    private static final IValueFactory VF = ValueFactoryFactory.getValueFactory();
+    private static final ISet EMPTY = VF.set();
+
+    private final IConstructor summary;
+    private final IMap locationTypes;
+    private final IMap synopses;
+    private final IMap docLocs;
+    /** the names which the module declares, for completion in the modules which import it */
+    private final List<String> vocabulary;
+
+    /** the use/def tuples, sorted by the offset of their use */
+    private final ITuple[] useDefs;
+    private final int[] starts;
+    /** the largest end offset of the uses up to and including each position */
+    private final int[] maxEnds;
+
+    private final Map<ISourceLocation, ISet> defsOfUse;
+    private final Map<ISourceLocation, List<ISourceLocation>> usesOfDef;
+
+    private SummaryIndex(IConstructor summary) {
+        this.summary = summary;
+
+        IWithKeywordParameters<? extends IConstructor> kws = summary.asWithKeywordParameters();
+        this.locationTypes = getMap(kws, "locationTypes");
+        this.synopses = getMap(kws, "synopses");
+        this.docLocs = getMap(kws, "docLocs");
+
+        IValue names = kws.getParameter("vocabulary");
+        List<String> words = new ArrayList<>();
+
+        if (names instanceof ISet) {
+            for (IValue name : (ISet) names) {
+                if (name instanceof IString) {
+                    words.add(((IString) name).getValue());
+                }
+            }
+        }
+
+        this.vocabulary = Collections.unmodifiableList(words);
+
+        IValue rel = kws.getParameter("useDef");
+        ISet useDef = rel instanceof ISet && isUseDef(((ISet) rel).getElementType()) ? (ISet) rel : EMPTY;
+
+        List<ITuple> tuples = new ArrayList<>(useDef.size());
+        Map<ISourceLocation, ISetWriter> defs = new HashMap<>();
+        Map<ISourceLocation, List<ISourceLocation>> uses = new HashMap<>();
+
+        for (IValue v : useDef) {
+            ITuple t = (ITuple) v;
+            ISourceLocation use = (ISourceLocation) t.get(0);
+            ISourceLocation def = (ISourceLocation) t.get(1);
+
+            if (use.hasOffsetLength()) {
+                tuples.add(t);
+            }
+
+            defs.computeIfAbsent(use, k -> VF.setWriter()).insert(def);
+            uses.computeIfAbsent(def, k -> new ArrayList<>()).add(use);
+        }
+
+        tuples.sort((a, b) -> Integer.compare(((ISourceLocation) a.get(0)).getOffset(), ((ISourceLocation) b.get(0)).getOffset()));
+
+        this.useDefs = tuples.toArray(new ITuple[tuples.size()]);
+        this.starts = new int[useDefs.length];
+        this.maxEnds = new int[useDefs.length];
+
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < useDefs.length; i++) {
+            ISourceLocation use = (ISourceLocation) useDefs[i].get(0);
+            starts[i] = use.getOffset();
+            max = Math.max(max, use.getOffset() + use.getLength());
+            maxEnds[i] = max;
+        }
+
+        this.defsOfUse = new HashMap<>(defs.size());
+        for (Map.Entry<ISourceLocation, ISetWriter> e : defs.entrySet()) {
+            defsOfUse.put(e.getKey(), e.getValue().done());
+        }
+
+        this.usesOfDef = uses;
+    }
+
+    public static SummaryIndex of(IConstructor summary) {
+        return new SummaryIndex(summary);
+    }
+
+    /**
+     * @return whether the type is that of the elements of a rel[loc,loc] or a rel[loc,loc,str]
+     */
+    private static boolean isUseDef(Type elementType) {
+        return elementType.isTuple()
+            && elementType.getArity() >= 2
+            && elementType.getFieldType(0).isSourceLocation()
+            && elementType.getFieldType(1).isSourceLocation();
+    }
+
+    private static IMap getMap(IWithKeywordParameters<? extends IConstructor> kws, String field) {
+        IValue val = kws.getParameter(field);
+        return val instanceof IMap ? (IMap) val : VF.mapWriter().done();
+    }
+
+    public IConstructor getSummary() {
+        return summary;
+    }
+
+    public IString getType(ISourceLocation occ) {
+        return (IString) locationTypes.get(occ);
+    }
+
+    public IString getSynopsis(ISourceLocation def) {
+        return (IString) synopses.get(def);
+    }
+
+    public ISourceLocation getDocLoc(ISourceLocation def) {
+        return (ISourceLocation) docLocs.get(def);
+    }
+
+    /**
+     * @return the names in the vocabulary of the summary, which are those the module declares
+     */
+    public List<String> getVocabulary() {
+        return vocabulary;
+    }
+
+    /**
+     * @return the definitions of exactly the given use
+     */
+    public ISet getDefs(ISourceLocation use) {
+        return defsOfUse.getOrDefault(use, EMPTY);
+    }
+
+    /**
+     * @return the uses of the given definition in this module
+     */
+    public List<ISourceLocation> getUses(ISourceLocation def) {
+        return Collections.unmodifiableList(usesOfDef.getOrDefault(def, Collections.emptyList()));
+    }
+
+    /**
+     * @return all definitions which are used in this module
+     */
+    public Iterable<ISourceLocation> getUsedDefs() {
+        return Collections.unmodifiableSet(usesOfDef.keySet());
+    }
+
+    /**
+     * @return the use/def tuples of which the use contains the given offset, ordered by the offset of the use
+     */
+    public List<ITuple> getUseDefsAt(int offset) {
+        int low = 0;
+        int high = starts.length;
+
+        // find the first use which ends after the offset
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (maxEnds[mid] > offset) {
+                high = mid;
+            }
+            else {
+                low = mid + 1;
+            }
+        }
+
+        List<ITuple> result = new ArrayList<>(2);
+
+        for (int i = low; i < starts.length && starts[i] <= offset; i++) {
+            ISourceLocation use = (ISourceLocation) useDefs[i].get(0);
+
+            if (offset < use.getOffset() + use.getLength()) {
+                result.add(useDefs[i]);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SummaryIndex [uses=" + useDefs.length + ", defs=" + usesOfDef.size() + "]";
+    }
+}
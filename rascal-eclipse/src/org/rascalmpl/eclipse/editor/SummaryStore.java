@@ -0,0 +1,211 @@
+package org.rascalmpl.eclipse.editor;
+
+import static org.rascalmpl.values.uptr.RascalValueFactory.TYPE_STORE_SUPPLIER;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.eclipse.builder.ModuleSignature;
+import org.rascalmpl.eclipse.util.ProjectConfig;
+import org.rascalmpl.uri.URIResolverRegistry;
+import org.rascalmpl.values.ValueFactoryFactory;
+
+import io.usethesource.vallang.IConstructor;
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IValue;
+import io.usethesource.vallang.io.binary.stream.IValueInputStream;
+import io.usethesource.vallang.io.binary.stream.IValueOutputStream;
+import io.usethesource.vallang.io.binary.stream.IValueOutputStream.CompressionRate;
+
+/**
+ * Stores the summaries which the IDE services compute for the modules of a project in the bin folder of that
+ * project, such that they survive restarts of Eclipse and do not have to be recomputed by the compiler kernel.
+ *
+ * A stored summary is keyed by the name of its module and a hash of both the source text of the module and its
+ * compiled signature; the latter changes when the types of imported declarations change. Any edit which is saved
+ * and built therefore leads to a new key, and the old summary of the module is removed when the new one is stored.
+ *
+ * Summaries are written directly to the file system in vallang's binary format, and memory mapped when read.
+ * A clean build of the project removes the whole store.
+ */
+public class SummaryStore {
+    public static final String FOLDER = "summaries";
+    private static final String EXTENSION = ".summary";
+
+    private SummaryStore() { }
+
+    /**
+     * @param file the result of {@link #locate(ISourceLocation, String)}
+     * @return the stored summary in the file, or null if there is no up-to-date summary
+     */
+    public static IConstructor read(File file, String moduleName) {
+        if (file == null || !file.exists()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            IValueInputStream in = new IValueInputStream(channel, ValueFactoryFactory.getValueFactory(), TYPE_STORE_SUPPLIER)) {
+            IValue result = in.read();
+            return result instanceof IConstructor ? (IConstructor) result : null;
+        }
+        catch (IOException e) {
+            Activator.log("could not read stored summary of " + moduleName + ", recomputing it", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the summary of a module, replacing the summaries of earlier versions of that module.
+     *
+     * @param file the result of {@link #locate(ISourceLocation, String)}, computed before the summary was, such that
+     *             a summary of an older version of the module is never stored under the key of a newer one
+     */
+    public static void write(File file, String moduleName, IConstructor summary) {
+        if (file == null) {
+            return;
+        }
+
+        File folder = file.getParentFile();
+
+        if (!folder.exists() && !folder.mkdirs()) {
+            return;
+        }
+
+        deleteOtherVersions(folder, file, simpleName(moduleName));
+
+        try {
+            File tmp = File.createTempFile(file.getName(), ".tmp", folder);
+
+            try {
+                try (IValueOutputStream out = new IValueOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)), ValueFactoryFactory.getValueFactory(), CompressionRate.Normal)) {
+                    out.write(summary);
+                }
+
+                // concurrent readers either see the complete summary or none at all
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                tmp.delete();
+            }
+        }
+        catch (IOException e) {
+            Activator.log("could not store summary of " + moduleName, e);
+        }
+    }
+
+    /**
+     * Removes all stored summaries of the project.
+     */
+    public static void delete(IProject project, IProgressMonitor monitor) throws CoreException {
+        IFolder folder = project.getFolder(ProjectConfig.BIN_FOLDER).getFolder(FOLDER);
+        IPath location = folder.getLocation();
+
+        if (location != null) {
+            delete(location.toFile());
+            folder.refreshLocal(IResource.DEPTH_INFINITE, monitor);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+
+    private static void deleteOtherVersions(File folder, File current, String simpleName) {
+        File[] versions = folder.listFiles((dir, name) -> name.startsWith(simpleName + ".") && name.endsWith(EXTENSION));
+
+        if (versions != null) {
+            for (File version : versions) {
+                if (!version.equals(current)) {
+                    version.delete();
+                }
+            }
+        }
+    }
+
+    private static String simpleName(String moduleName) {
+        int i = moduleName.lastIndexOf("::");
+        return i == -1 ? moduleName : moduleName.substring(i + 2);
+    }
+
+    /**
+     * @return the file in which the summary of the current version of the module is stored, or null if the module
+     *         is not part of an open project or has not been compiled yet
+     */
+    public static File locate(ISourceLocation occ, String moduleName) {
+        if (!"project".equals(occ.getScheme()) || moduleName == null) {
+            return null;
+        }
+
+        IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(occ.getAuthority());
+
+        if (!project.isOpen()) {
+            return null;
+        }
+
+        IPath bin = project.getFolder(ProjectConfig.BIN_FOLDER).getLocation();
+
+        if (bin == null) {
+            return null;
+        }
+
+        String hash = hash(occ, bin, moduleName);
+
+        if (hash == null) {
+            return null;
+        }
+
+        return new File(bin.append(FOLDER).append(moduleName.replaceAll("::", "/")).toOSString() + "." + hash + EXTENSION);
+    }
+
+    private static String hash(ISourceLocation occ, IPath bin, String moduleName) {
+        String signature = ModuleSignature.hash(bin, moduleName);
+
+        if (signature == null) {
+            // not compiled, so the kernel can not summarize it either
+            return null;
+        }
+
+        try (InputStream in = URIResolverRegistry.getInstance().getInputStream(occ.top())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] buf = new byte[8192];
+            int read;
+
+            while ((read = in.read(buf)) != -1) {
+                digest.update(buf, 0, read);
+            }
+
+            digest.update(signature.getBytes());
+            return new BigInteger(1, digest.digest()).toString(16);
+        }
+        catch (IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package org.rascalmpl.eclipse.editor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.rascalmpl.eclipse.editor.IncrementalParser.Chain;
+import org.rascalmpl.eclipse.editor.IncrementalParser.Displacement;
+import org.rascalmpl.values.uptr.ITree;
+import org.rascalmpl.values.uptr.ProductionAdapter;
+import org.rascalmpl.values.uptr.TreeAdapter;
+import org.rascalmpl.values.uptr.visitors.TreeVisitor;
+
+import io.usethesource.vallang.IConstructor;
+import io.usethesource.vallang.IList;
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IString;
+import io.usethesource.vallang.IValue;
+
+/**
+ * All lexical tokens of a parse tree, sorted by offset. The index is computed once per parse tree and stored in
+ * primitive arrays, such that highlighting a small damaged region only has to find the tokens overlapping it
+ * (with a binary search) and allocate a {@link Token} for those.
+ */
+public class TokenIndex {
+    private static final TokenIndex EMPTY = new TokenIndex(new int[0], new int[0], new int[0], new String[0]);
+
+    private final int[] offsets;
+    private final int[] lengths;
+    private final int[] categories;
+    private final String[] names;
+    /** the largest end offset of all tokens up to and including each position, for finding overlapping tokens */
+    private final int[] maxEnds;
+
+    private TokenIndex(int[] offsets, int[] lengths, int[] categories, String[] names) {
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.categories = categories;
+        this.names = names;
+        this.maxEnds = new int[offsets.length];
+
+        int max = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            max = Math.max(max, offsets[i] + lengths[i]);
+            maxEnds[i] = max;
+        }
+    }
+
+    public static TokenIndex build(boolean showAmb, IConstructor parseTree) {
+        return build(showAmb, parseTree, Displacement.NONE);
+    }
+
+    /**
+     * Indexes a tree of the {@link IncrementalParser}, of which not all source locations have been moved yet.
+     */
+    static TokenIndex build(boolean showAmb, IConstructor parseTree, Displacement displacement) {
+        if (parseTree == null) {
+            return EMPTY;
+        }
+
+        LexicalCollector collector = new LexicalCollector(showAmb, displacement);
+        parseTree.accept(collector);
+        return collector.done();
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    public int getOffset(int i) {
+        return offsets[i];
+    }
+
+    public int getLength(int i) {
+        return lengths[i];
+    }
+
+    public String getCategory(int i) {
+        return names[categories[i]];
+    }
+
+    public Token getToken(int i) {
+        return new Token(getCategory(i), offsets[i], lengths[i]);
+    }
+
+    /**
+     * @return the position of the first token which ends after the given offset, or {@link #size()} if there is none
+     */
+    public int firstEndingAfter(int offset) {
+        int low = 0;
+        int high = offsets.length;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (maxEnds[mid] > offset) {
+                high = mid;
+            }
+            else {
+                low = mid + 1;
+            }
+        }
+
+        return low;
+    }
+
+    private static class LexicalCollector extends TreeVisitor<RuntimeException> {
+        private final boolean showAmb;
+        private final Displacement displacement;
+        /** the shifts which apply to the locations in the current subtree */
+        private Chain chain;
+        private final Map<String, Integer> categoryIds = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private int[] offsets = new int[1024];
+        private int[] lengths = new int[1024];
+        private int[] categories = new int[1024];
+        private int size = 0;
+        private boolean sorted = true;
+        private int location;
+
+        public LexicalCollector(boolean showAmb, Displacement displacement) {
+            super();
+
+            this.showAmb = showAmb;
+            this.displacement = displacement;
+            this.location = 0;
+        }
+
+        private void add(String category, int offset, int length) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+                categories = Arrays.copyOf(categories, size * 2);
+            }
+
+            if (size > 0 && offset < offsets[size - 1]) {
+                sorted = false;
+            }
+
+            Integer id = categoryIds.get(category);
+            if (id == null) {
+                id = names.size();
+                names.add(category);
+                categoryIds.put(category, id);
+            }
+
+            offsets[size] = offset;
+            lengths[size] = length;
+            categories[size] = id;
+            size++;
+        }
+
+        public TokenIndex done() {
+            int[] o = Arrays.copyOf(offsets, size);
+            int[] l = Arrays.copyOf(lengths, size);
+            int[] c = Arrays.copyOf(categories, size);
+
+            if (!sorted) {
+                // concrete syntax fragments can make the visit jump back; this is rare, so boxing here is fine
+                Integer[] order = new Integer[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = i;
+                }
+
+                Arrays.sort(order, (a, b) -> Integer.compare(offsets[a], offsets[b]));
+
+                for (int i = 0; i < size; i++) {
+                    o[i] = offsets[order[i]];
+                    l[i] = lengths[order[i]];
+                    c[i] = categories[order[i]];
+                }
+            }
+
+            return new TokenIndex(o, l, c, names.toArray(new String[names.size()]));
+        }
+
+        public ITree visitTreeAmb(ITree arg) {
+            if (showAmb) {
+                int offset = location;
+                ISourceLocation ambLoc = Chain.apply(chain, TreeAdapter.getLocation(arg));
+                int length = ambLoc != null ? ambLoc.getLength() : TreeAdapter.yield(arg).length();
+
+                location += length;
+                add(TreeAdapter.META_AMBIGUITY, offset, length);
+            }
+            else {
+                TreeAdapter.getAlternatives(arg).iterator().next().accept(this);
+            }
+            return arg;
+        }
+
+        public ITree visitTreeAppl(ITree arg) {
+            IValue catAnno = arg.asAnnotatable().getAnnotation("category");
+            String category = null;
+
+            if (catAnno != null) {
+                category = ((IString) catAnno).getValue();
+            }
+
+            IConstructor prod = TreeAdapter.getProduction(arg);
+            if (category == null && ProductionAdapter.isDefault(prod)) {
+                category = ProductionAdapter.getCategory(prod);
+            }
+
+            // It's not so nice to link the sort name to the token color constant ...
+            if (TreeAdapter.NONTERMINAL_LABEL.equals(ProductionAdapter.getSortName(prod))) {
+                category = TreeAdapter.NONTERMINAL_LABEL;
+            }
+
+            // short cut, if we have source locations and a category we found a long token
+            ISourceLocation loc = Chain.apply(chain, TreeAdapter.getLocation(arg));
+
+            // Always sync location with locs because of concrete syntax stuff in Rascal.
+            if (loc != null) {
+                location = loc.getOffset();
+            }
+
+            if (category != null && loc != null) {
+                add(category, location, loc.getLength());
+                location += loc.getLength();
+                return arg;
+            }
+
+            // now we go down in the tree to find more tokens
+            int offset = location;
+
+            IList args = TreeAdapter.getArgs(arg);
+            Chain outer = chain;
+
+            for (int i = 0; i < args.length(); i++) {
+                chain = displacement.child(arg, i, outer);
+                args.get(i).accept(this);
+            }
+
+            chain = outer;
+
+            if (ProductionAdapter.isSkipped(prod)) {
+                category = TreeAdapter.META_SKIPPED;
+            }
+
+            if (ProductionAdapter.isDefault(prod) && (TreeAdapter.isLiteral(arg) || TreeAdapter.isCILiteral(arg))) {
+                if (category == null) {
+                    category = TreeAdapter.META_KEYWORD;
+
+                    for (IValue child : TreeAdapter.getArgs(arg)) {
+                        int c = TreeAdapter.getCharacter((ITree) child);
+                        if (c != '-' && !Character.isJavaIdentifierPart(c)) {
+                            category = null;
+                        }
+                    }
+
+                    if (category == null) {
+                        category = TreeAdapter.NORMAL;
+                    }
+                }
+            }
+
+            if (category != null) {
+                add(category, offset, loc != null ? loc.getLength() : location - offset);
+            }
+
+            return arg;
+        }
+
+        public ITree visitTreeChar(ITree arg) {
+            ++location;
+
+            return arg;
+        }
+
+        public ITree visitTreeCycle(ITree arg) {
+            return arg;
+        }
+    }
+}
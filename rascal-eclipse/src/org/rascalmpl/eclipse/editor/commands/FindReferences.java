@@ -0,0 +1,63 @@
+package org.rascalmpl.eclipse.editor.commands;
+
+import java.util.List;
+
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.window.Window;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.dialogs.ElementListSelectionDialog;
+import org.rascalmpl.eclipse.builder.ReferenceIndex;
+import org.rascalmpl.eclipse.editor.EditorUtil;
+import org.rascalmpl.uri.ProjectURIResolver;
+
+import io.usethesource.impulse.editor.UniversalEditor;
+import io.usethesource.vallang.ISourceLocation;
+
+public class FindReferences extends AbstractEditorAction {
+	private static final String TITLE = "Find References";
+
+	public FindReferences(UniversalEditor editor) {
+		super(editor, TITLE);
+	}
+
+	@Override
+	public void run() {
+		ISelection selection = editor.getSelectionProvider().getSelection();
+
+		if (file == null || !(selection instanceof ITextSelection)) {
+			return;
+		}
+
+		ReferenceIndex index = ReferenceIndex.getInstance();
+		index.load(project);
+
+		ISourceLocation loc = ProjectURIResolver.constructProjectURI(file.getFullPath());
+		List<ISourceLocation> references = index.findReferencesAt(loc, ((ITextSelection) selection).getOffset());
+		Shell shell = editor.getSite().getShell();
+
+		if (references.isEmpty()) {
+			MessageDialog.openInformation(shell, TITLE, index.isUpToDate() ? "No references found." : "No references found yet, the reference index is still being updated.");
+			return;
+		}
+
+		ElementListSelectionDialog dialog = new ElementListSelectionDialog(shell, new LabelProvider() {
+			@Override
+			public String getText(Object element) {
+				ISourceLocation use = (ISourceLocation) element;
+				return use.getAuthority() + use.getPath() + (use.hasLineColumn() ? ":" + use.getBeginLine() + ":" + use.getBeginColumn() : "");
+			}
+		});
+
+		dialog.setTitle(TITLE);
+		dialog.setMessage(references.size() + " references, select one to open it:");
+		dialog.setMultipleSelection(false);
+		dialog.setElements(references.toArray());
+
+		if (dialog.open() == Window.OK && dialog.getFirstResult() != null) {
+			EditorUtil.openAndSelectURI((ISourceLocation) dialog.getFirstResult());
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package org.rascalmpl.eclipse.editor.commands;
+
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.rascalmpl.eclipse.editor.ParseController;
+import org.rascalmpl.eclipse.util.LatencyHistogram;
+
+import io.usethesource.impulse.editor.UniversalEditor;
+
+public class ShowParseLatency extends AbstractEditorAction {
+	private static final String TITLE = "Parse latency";
+
+	public ShowParseLatency(UniversalEditor editor) {
+		super(editor, "Show parse latency");
+	}
+
+	@Override
+	public void run() {
+		ParseController controller = (ParseController) editor.getParseController();
+		LatencyHistogram latency = controller.getParseLatency();
+
+		MessageDialog.openInformation(editor.getSite().getShell(), TITLE,
+			"Time from scheduling a parse of this document to its parse tree:\n" + latency
+			+ "\n\nParses abandoned for a newer change: " + controller.getSupersededParses());
+	}
+}
@@ -0,0 +1,472 @@
+package org.rascalmpl.eclipse.editor.proposer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
+import org.rascalmpl.eclipse.editor.SummaryIndex;
+
+import io.usethesource.impulse.editor.SourceProposal;
+import io.usethesource.vallang.ISourceLocation;
+
+/**
+ * The symbols of a symbol tree which can be proposed, and the names which the modules it imports declare, indexed for
+ * completion. The names are kept in sorted arrays, such that the symbols which start with a prefix, or of which the
+ * camel case humps start with it, are found with a binary search instead of a walk over the whole tree. Substring and
+ * fuzzy matches, which are proposed after those, must contain every letter of the prefix, so only the names which
+ * contain its rarest letter are checked for them.
+ *
+ * Instead of filtering the symbol tree for every request, every symbol knows the range of its innermost enclosing
+ * scope, and it is visible if the offset of the request is in that range. Proposals are ranked by how well they
+ * match, then by the depth of their scope (local names first, imported names last), and then by how often they were
+ * chosen before.
+ */
+public class CompletionIndex {
+	private static final int PREFIX_CASE = 0;
+	private static final int PREFIX = 1;
+	private static final int CAMEL_CASE = 2;
+	private static final int SUBSTRING = 3;
+	private static final int FUZZY = 4;
+
+	private static final int MIN_FUZZY_LENGTH = 3;
+
+	/** the depth of the names of imported modules, which is below that of the symbols of the module itself */
+	private static final int IMPORTED_DEPTH = -1;
+	private static final int MAX_DEPTH = (1 << 8) - 1;
+	private static final int MAX_CHOSEN = (1 << 20) - 1;
+
+	/** how often proposals for a name were chosen in this session */
+	private static final Map<String, Integer> chosen = new ConcurrentHashMap<String, Integer>();
+
+	private final ISymbol tree;
+	private final Map<String, SummaryIndex> imported;
+	private final List<ISymbol> symbols = new ArrayList<ISymbol>();
+	private final List<int[]> ranges = new ArrayList<int[]>();
+	private int[] depths = new int[16];
+
+	private String[] lowerNames;
+	private String[] initials;
+	private int[] byName;
+	private int[] byInitials;
+	/** the position of every symbol in {@link #byName} */
+	private int[] nameRanks;
+	/** for every ASCII character, the symbols of which the lower case name contains it, in ascending order */
+	private int[][] byCharacter;
+	private int moduleEnd = Integer.MAX_VALUE;
+
+	private CompletionIndex(ISymbol tree, Map<String, SummaryIndex> imported) {
+		this.tree = tree;
+		this.imported = imported;
+	}
+
+	public static CompletionIndex build(ISymbol tree) {
+		return build(tree, Collections.<String, SummaryIndex>emptyMap());
+	}
+
+	/**
+	 * @param imported the summaries of the modules which the module of the tree imports, by module name
+	 */
+	public static CompletionIndex build(ISymbol tree, Map<String, SummaryIndex> imported) {
+		CompletionIndex index = new CompletionIndex(tree, imported);
+
+		if (tree != null) {
+			tree.accept(index.new Collector());
+		}
+
+		index.addImported();
+		index.sort();
+		return index;
+	}
+
+	/**
+	 * @return whether this index was built for the same symbol tree and summaries of imported modules
+	 */
+	public boolean isFor(ISymbol tree, Map<String, SummaryIndex> imported) {
+		if (tree != this.tree || imported.size() != this.imported.size()) {
+			return false;
+		}
+
+		for (Map.Entry<String, SummaryIndex> entry : imported.entrySet()) {
+			if (this.imported.get(entry.getKey()) != entry.getValue()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public ISymbol getTree() {
+		return tree;
+	}
+
+	private void add(ISymbol symbol, int[] range, int depth) {
+		if (symbols.size() == depths.length) {
+			depths = Arrays.copyOf(depths, depths.length * 2);
+		}
+
+		depths[symbols.size()] = depth;
+		symbols.add(symbol);
+		ranges.add(range);
+	}
+
+	/**
+	 * Adds the names which the imported modules declare, except those which the module declares itself.
+	 */
+	private void addImported() {
+		Set<String> names = new HashSet<String>();
+
+		for (ISymbol symbol : symbols) {
+			names.add(symbol.getName());
+		}
+
+		for (Map.Entry<String, SummaryIndex> entry : imported.entrySet()) {
+			for (String name : entry.getValue().getVocabulary()) {
+				if (!name.isEmpty() && names.add(name)) {
+					Symbol symbol = new Symbol(name, Symbol.symbol_type_void, null);
+					symbol.setLabel(name + " - " + entry.getKey());
+					add(symbol, null, IMPORTED_DEPTH);
+				}
+			}
+		}
+	}
+
+	private void sort() {
+		int size = symbols.size();
+		lowerNames = new String[size];
+		initials = new String[size];
+		int[] counts = new int[128];
+
+		for (int i = 0; i < size; i++) {
+			String name = symbols.get(i).getName();
+			lowerNames[i] = name.toLowerCase();
+			initials[i] = initials(name);
+
+			for (char c : distinctAscii(lowerNames[i])) {
+				counts[c]++;
+			}
+		}
+
+		byName = sortedIndices(lowerNames);
+		byInitials = sortedIndices(initials);
+		nameRanks = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			nameRanks[byName[i]] = i;
+		}
+
+		byCharacter = new int[counts.length][];
+
+		for (int c = 0; c < counts.length; c++) {
+			byCharacter[c] = new int[counts[c]];
+			counts[c] = 0;
+		}
+
+		for (int i = 0; i < size; i++) {
+			for (char c : distinctAscii(lowerNames[i])) {
+				byCharacter[c][counts[c]++] = i;
+			}
+		}
+	}
+
+	private static char[] distinctAscii(String name) {
+		StringBuilder b = new StringBuilder(name.length());
+
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+
+			if (c < 128 && b.indexOf(String.valueOf(c)) == -1) {
+				b.append(c);
+			}
+		}
+
+		return b.toString().toCharArray();
+	}
+
+	/**
+	 * @return the indices of the keys, ordered by their keys
+	 */
+	private static int[] sortedIndices(String[] keys) {
+		int[] order = new int[keys.length];
+
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+
+		mergeSort(order, new int[order.length], 0, order.length, keys);
+		return order;
+	}
+
+	private static void mergeSort(int[] order, int[] buffer, int from, int to, String[] keys) {
+		if (to - from < 2) {
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+		mergeSort(order, buffer, from, mid, keys);
+		mergeSort(order, buffer, mid, to, keys);
+		System.arraycopy(order, from, buffer, from, to - from);
+
+		for (int i = from, j = mid, k = from; k < to; k++) {
+			if (j >= to || (i < mid && keys[buffer[i]].compareTo(keys[buffer[j]]) <= 0)) {
+				order[k] = buffer[i++];
+			}
+			else {
+				order[k] = buffer[j++];
+			}
+		}
+	}
+
+	/**
+	 * @return the lower case first letters of the humps of a camel case or snake case name
+	 */
+	private static String initials(String name) {
+		StringBuilder b = new StringBuilder();
+
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			boolean start = i == 0 || Character.isUpperCase(c) && !Character.isUpperCase(name.charAt(i - 1)) || (name.charAt(i - 1) == '_' || name.charAt(i - 1) == '-') && c != '_' && c != '-';
+
+			if (start) {
+				b.append(Character.toLowerCase(c));
+			}
+		}
+
+		return b.toString();
+	}
+
+	/**
+	 * @param filterScope whether to propose only the symbols which are visible at the offset
+	 * @return the proposals for the symbols which match the prefix, best first
+	 */
+	public List<ICompletionProposal> propose(Prefix prefix, int offset, boolean filterScope) {
+		String text = prefix.getText();
+		String lower = text.toLowerCase();
+		Matches matches = new Matches(symbols.size());
+
+		for (int i = lowerBound(byName, lowerNames, lower); i < byName.length && lowerNames[byName[i]].startsWith(lower); i++) {
+			int s = byName[i];
+			matches.add(s, symbols.get(s).getName().startsWith(text) ? PREFIX_CASE : PREFIX);
+		}
+
+		if (!lower.isEmpty()) {
+			for (int i = lowerBound(byInitials, initials, lower); i < byInitials.length && initials[byInitials[i]].startsWith(lower); i++) {
+				matches.add(byInitials[i], CAMEL_CASE);
+			}
+
+			for (int s : candidates(lower)) {
+				if (!matches.contains(s)) {
+					if (lowerNames[s].contains(lower)) {
+						matches.add(s, SUBSTRING);
+					}
+					else if (lower.length() >= MIN_FUZZY_LENGTH && isSubsequence(lower, lowerNames[s])) {
+						matches.add(s, FUZZY);
+					}
+				}
+			}
+		}
+
+		long[] keys = new long[matches.size];
+		int count = 0;
+
+		for (int i = 0; i < matches.size; i++) {
+			int s = matches.found[i];
+
+			if (!filterScope || isVisible(s, offset)) {
+				keys[count++] = rank(s, matches.tier(s));
+			}
+		}
+
+		Arrays.sort(keys, 0, count);
+
+		List<ICompletionProposal> proposals = new ArrayList<ICompletionProposal>(count);
+		for (int i = 0; i < count; i++) {
+			ISymbol symbol = symbols.get(byName[(int) keys[i]]);
+			String type = symbol.getType();
+			String name = symbol.getName();
+			boolean call = type.equals(Symbol.symbol_type_function) || type.equals(Symbol.symbol_type_constructor);
+
+			proposals.add(new RankedProposal(symbol.getLabel(), call ? name + "()" : name, prefix, name));
+		}
+
+		return proposals;
+	}
+
+	/**
+	 * @return the symbols of which the name contains the rarest letter of the text, which are the only ones that can
+	 *         contain the text or have it as a subsequence
+	 */
+	private int[] candidates(String lower) {
+		int[] result = null;
+
+		for (int i = 0; i < lower.length(); i++) {
+			char c = lower.charAt(i);
+
+			if (c < byCharacter.length && (result == null || byCharacter[c].length < result.length)) {
+				result = byCharacter[c];
+			}
+		}
+
+		return result != null ? result : byName;
+	}
+
+	/**
+	 * @return a key which orders proposals by their tier, then by the depth of their scope (deepest first), then by
+	 *         how often they were chosen (most often first), and then by name, and of which the lowest 32 bits are
+	 *         the position of the symbol in {@link #byName}
+	 */
+	private long rank(int symbol, int tier) {
+		long depth = MAX_DEPTH - Math.min(depths[symbol] - IMPORTED_DEPTH, MAX_DEPTH);
+		long times = MAX_CHOSEN - Math.min(chosen.getOrDefault(symbols.get(symbol).getName(), 0), MAX_CHOSEN);
+		return (long) tier << 60 | depth << 52 | times << 32 | nameRanks[symbol];
+	}
+
+	private boolean isVisible(int symbol, int offset) {
+		if (offset > moduleEnd) {
+			// in case of parse errors and the request is "outside of the file", everything is visible for convenience
+			return true;
+		}
+
+		int[] range = ranges.get(symbol);
+		return range == null || (range[0] <= offset && offset < range[1]);
+	}
+
+	private static int lowerBound(int[] order, String[] keys, String key) {
+		int low = 0;
+		int high = order.length;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (keys[order[mid]].compareTo(key) < 0) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	private static boolean isSubsequence(String needle, String haystack) {
+		int j = 0;
+
+		for (int i = 0; i < haystack.length() && j < needle.length(); i++) {
+			if (haystack.charAt(i) == needle.charAt(j)) {
+				j++;
+			}
+		}
+
+		return j == needle.length();
+	}
+
+	/**
+	 * The symbols which match a prefix, in the order they were found, with the best tier they matched.
+	 */
+	private static class Matches {
+		/** the best tier of every symbol plus one, such that zero means that it does not match */
+		private final int[] tiers;
+		private int[] found = new int[16];
+		private int size = 0;
+
+		Matches(int symbols) {
+			tiers = new int[symbols];
+		}
+
+		boolean contains(int symbol) {
+			return tiers[symbol] != 0;
+		}
+
+		int tier(int symbol) {
+			return tiers[symbol] - 1;
+		}
+
+		void add(int symbol, int tier) {
+			if (tiers[symbol] == 0) {
+				if (size == found.length) {
+					found = Arrays.copyOf(found, size * 2);
+				}
+
+				found[size++] = symbol;
+				tiers[symbol] = tier + 1;
+			}
+			else {
+				tiers[symbol] = Math.min(tiers[symbol], tier + 1);
+			}
+		}
+	}
+
+	/**
+	 * Collects the symbols which can be proposed, with the range of their innermost enclosing scope below the module.
+	 */
+	private class Collector extends SymbolVisitor<Boolean> {
+		private int[] range = null;
+		private int depth = 0;
+
+		private void add(ISymbol symbol) {
+			if (!symbol.getName().isEmpty() && !symbol.getType().equals(Symbol.symbol_type_module)) {
+				CompletionIndex.this.add(symbol, range, depth);
+			}
+		}
+
+		@Override
+		public Boolean visitScope(Scope scope) {
+			ISymbol scopeSymbol = scope.getScopeSymbol();
+			ISourceLocation location = scope.getLocation();
+			boolean module = scopeSymbol != null && scopeSymbol.getType().equals(Symbol.symbol_type_module);
+
+			if (scopeSymbol != null) {
+				add(scopeSymbol);
+			}
+
+			if (module && location != null) {
+				moduleEnd = location.getOffset() + location.getLength();
+			}
+
+			int[] outer = range;
+			int outerDepth = depth;
+
+			if (!module) {
+				// the symbols in a scope without a location are never visible, as in a filtered tree
+				range = location != null ? new int[] { location.getOffset(), location.getOffset() + location.getLength() } : new int[] { 0, 0 };
+				depth++;
+			}
+
+			for (ISymbol child : scope.getSymbols()) {
+				child.accept(this);
+			}
+
+			range = outer;
+			depth = outerDepth;
+			return true;
+		}
+
+		@Override
+		public Boolean visitSymbol(Symbol symbol) {
+			add(symbol);
+			return true;
+		}
+	}
+
+	private static class RankedProposal extends SourceProposal {
+		private final String name;
+
+		public RankedProposal(String label, String newText, Prefix prefix, String name) {
+			super(label, newText, prefix.getText(), prefix.getOffset());
+			this.name = name;
+		}
+
+		@Override
+		public void apply(IDocument document) {
+			chosen.merge(name, 1, Integer::sum);
+			super.apply(document);
+		}
+	}
+}
@@ -1,31 +1,34 @@
 package org.rascalmpl.eclipse.editor.proposer;
 
+import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 
 public class Prefix {
 	public static Prefix getPrefix(IDocument document, int offset, int length, String allowedChars) {
-		if (length > 0) {
-			return new Prefix(document.get().substring(offset, offset + length), offset);
-		}
+		// only look at the characters around the offset, copying the whole document for every request is expensive
+		try {
+			if (length > 0) {
+				return new Prefix(document.get(offset, length), offset);
+			}
 
-		String prefix = "";
-		String content = document.get();
-		int prefixOffset = offset;
+			int begin = offset;
+			int end = offset;
 
-		if (!allowedChars.isEmpty()) {
-			if (offset > 0) {
-				for (int cur = offset - 1; cur >= 0 && allowedChars.indexOf(content.charAt(cur)) != -1; cur--) {
-					prefix = content.charAt(cur) + prefix;
+			if (!allowedChars.isEmpty()) {
+				while (begin > 0 && allowedChars.indexOf(document.getChar(begin - 1)) != -1) {
+					begin--;
+				}
+
+				while (end < document.getLength() && allowedChars.indexOf(document.getChar(end)) != -1) {
+					end++;
 				}
 			}
-	
-			for (int cur = offset; cur != content.length() && allowedChars.indexOf(content.charAt(cur)) != -1; cur++) {
-				prefix += content.charAt(cur);
-				prefixOffset = cur + 1;
-			}
-		}
 
-		return new Prefix(prefix, prefixOffset);
+			return new Prefix(document.get(begin, end - begin), end);
+		}
+		catch (BadLocationException e) {
+			return new Prefix("", offset);
+		}
 	}
 	
 	private String text = "";
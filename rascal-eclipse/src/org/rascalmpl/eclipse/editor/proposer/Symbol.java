@@ -52,6 +52,16 @@ public class Symbol implements ISymbol {
 		this.label = name;		
 	}
 
+	/**
+	 * @return a copy of this symbol, with the same label and attributes, at another location
+	 */
+	public Symbol relocate(ISourceLocation location) {
+		Symbol copy = new Symbol(name, type, location);
+		copy.label = label;
+		copy.attributes.putAll(attributes);
+		return copy;
+	}
+
 	@Override
 	public <T> T accept(SymbolVisitor<T> visitor) {
 		return visitor.visitSymbol(this);
@@ -0,0 +1,214 @@
+package org.rascalmpl.eclipse.editor.proposer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.rascalmpl.ast.AbstractAST;
+import org.rascalmpl.parser.ASTBuilder;
+import org.rascalmpl.values.ValueFactoryFactory;
+import org.rascalmpl.values.uptr.ITree;
+import org.rascalmpl.values.uptr.TreeAdapter;
+
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IValue;
+import io.usethesource.vallang.IValueFactory;
+
+/**
+ * Maintains the symbol tree of a module for the content proposer, one top-level declaration at a time. The symbols of
+ * a declaration are cached by its source text, so after an edit only the declarations which changed are converted
+ * to an AST and visited again; the symbols of declarations which merely moved are copied with shifted locations.
+ */
+public class SymbolTreeCache {
+	private static final IValueFactory VF = ValueFactoryFactory.getValueFactory();
+
+	private final SymbolVisitor<ISymbol> labeler;
+	private Map<String, Declaration> declarations = new HashMap<String, Declaration>();
+	private ITree lastTree;
+	private long lastStamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	private ISymbol symbolTree;
+
+	private static class Declaration {
+		final List<ISymbol> symbols;
+		final int offset;
+		final int beginLine;
+		final int beginColumn;
+
+		Declaration(List<ISymbol> symbols, ISourceLocation location) {
+			this.symbols = symbols;
+			this.offset = location.getOffset();
+			this.beginLine = location.hasLineColumn() ? location.getBeginLine() : 0;
+			this.beginColumn = location.hasLineColumn() ? location.getBeginColumn() : 0;
+		}
+	}
+
+	/**
+	 * @param labeler computes the labels of the symbols of new declarations
+	 */
+	public SymbolTreeCache(SymbolVisitor<ISymbol> labeler) {
+		this.labeler = labeler;
+	}
+
+	/**
+	 * @return the last symbol tree that was computed, or null if there is none
+	 */
+	public ISymbol getCached() {
+		return symbolTree;
+	}
+
+	/**
+	 * @return the symbol tree of the given parse tree of the module, which is the current parse tree of the document
+	 */
+	public ISymbol get(IDocument document, ITree tree) {
+		long stamp = document instanceof IDocumentExtension4 ? ((IDocumentExtension4) document).getModificationStamp() : IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+
+		if (tree == lastTree || (stamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP && stamp == lastStamp && symbolTree != null)) {
+			return symbolTree;
+		}
+
+		ISymbol result = build(tree);
+
+		if (result != null) {
+			symbolTree = result;
+			lastTree = tree;
+			lastStamp = stamp;
+		}
+
+		return result;
+	}
+
+	private ISymbol build(ITree tree) {
+		ITree top = TreeAdapter.getStartTop(tree);
+		ISourceLocation location = TreeAdapter.getLocation(top);
+		ITree name = TreeAdapter.getArg(TreeAdapter.getArg(top, "header"), "name");
+
+		if (location == null || name == null) {
+			return null;
+		}
+
+		Scope module = new Scope(new Symbol(TreeAdapter.yield(name), Symbol.symbol_type_module, location));
+		module.getScopeSymbol().accept(labeler);
+
+		Map<String, Declaration> current = new HashMap<String, Declaration>();
+
+		for (IValue arg : TreeAdapter.getListASTArgs(TreeAdapter.getArg(TreeAdapter.getArg(top, "body"), "toplevels"))) {
+			ITree toplevel = (ITree) arg;
+			ISourceLocation l = TreeAdapter.getLocation(toplevel);
+
+			if (l == null) {
+				continue;
+			}
+
+			String text = TreeAdapter.yield(toplevel);
+			Declaration decl = current.get(text);
+
+			if (decl == null) {
+				// a declaration can occur more than once, for example when it was just copied
+				decl = declarations.get(text);
+
+				if (decl == null || decl.offset != l.getOffset()) {
+					decl = decl == null ? create(toplevel, l) : relocate(decl, l);
+				}
+
+				current.put(text, decl);
+			}
+			else if (decl.offset != l.getOffset()) {
+				decl = relocate(decl, l);
+			}
+
+			module.addSymbols(decl.symbols);
+		}
+
+		declarations = current;
+		return module;
+	}
+
+	private Declaration create(ITree toplevel, ISourceLocation location) {
+		List<ISymbol> symbols;
+
+		try {
+			AbstractAST ast = new ASTBuilder().buildValue(toplevel);
+			symbols = ast.accept(new SymbolTreeCreator());
+		}
+		catch (Throwable e) {
+			// for example an ambiguity; we will not propose anything from this declaration until it is fixed
+			symbols = null;
+		}
+
+		if (symbols == null) {
+			symbols = Collections.emptyList();
+		}
+
+		for (ISymbol symbol : symbols) {
+			symbol.accept(labeler);
+		}
+
+		return new Declaration(symbols, location);
+	}
+
+	private static Declaration relocate(Declaration decl, ISourceLocation location) {
+		Relocator relocator = new Relocator(decl, location);
+		List<ISymbol> symbols = new ArrayList<ISymbol>(decl.symbols.size());
+
+		for (ISymbol symbol : decl.symbols) {
+			symbols.add(symbol.accept(relocator));
+		}
+
+		return new Declaration(symbols, location);
+	}
+
+	/**
+	 * Copies the symbols of a declaration which moved to another position; the lines of all locations in it shift
+	 * by the same amount, and the columns only on the first line of the declaration.
+	 */
+	private static class Relocator extends SymbolVisitor<ISymbol> {
+		private final int offsetDelta;
+		private final int lineDelta;
+		private final int columnDelta;
+		private final int firstLine;
+
+		Relocator(Declaration from, ISourceLocation to) {
+			this.offsetDelta = to.getOffset() - from.offset;
+			this.lineDelta = to.hasLineColumn() ? to.getBeginLine() - from.beginLine : 0;
+			this.columnDelta = to.hasLineColumn() ? to.getBeginColumn() - from.beginColumn : 0;
+			this.firstLine = from.beginLine;
+		}
+
+		private ISourceLocation shift(ISourceLocation loc) {
+			if (loc == null || !loc.hasOffsetLength()) {
+				return loc;
+			}
+
+			if (!loc.hasLineColumn()) {
+				return VF.sourceLocation(loc, loc.getOffset() + offsetDelta, loc.getLength());
+			}
+
+			int beginColumn = loc.getBeginLine() == firstLine ? loc.getBeginColumn() + columnDelta : loc.getBeginColumn();
+			int endColumn = loc.getEndLine() == firstLine ? loc.getEndColumn() + columnDelta : loc.getEndColumn();
+
+			return VF.sourceLocation(loc, loc.getOffset() + offsetDelta, loc.getLength(), loc.getBeginLine() + lineDelta, loc.getEndLine() + lineDelta, beginColumn, endColumn);
+		}
+
+		@Override
+		public ISymbol visitScope(Scope scope) {
+			ISymbol scopeSymbol = scope.getScopeSymbol() != null ? scope.getScopeSymbol().accept(this) : null;
+			Scope copy = new Scope(scopeSymbol, shift(scope.getLocation()));
+			copy.setLabel(scope.getLabel());
+
+			for (ISymbol child : scope.getSymbols()) {
+				copy.addSymbol(child.accept(this));
+			}
+
+			return copy;
+		}
+
+		@Override
+		public ISymbol visitSymbol(Symbol symbol) {
+			return symbol.relocate(shift(symbol.getLocation()));
+		}
+	}
+}
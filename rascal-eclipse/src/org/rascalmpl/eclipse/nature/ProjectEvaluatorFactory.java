@@ -43,6 +43,7 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.wiring.BundleWire;
 import org.osgi.framework.wiring.BundleWiring;
 import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.eclipse.terms.TermLanguageRegistry;
 import org.rascalmpl.eclipse.util.RascalEclipseManifest;
 import org.rascalmpl.interpreter.Evaluator;
 import org.rascalmpl.interpreter.env.GlobalEnvironment;
@@ -260,8 +261,13 @@ public class ProjectEvaluatorFactory {
       // TODO: support true dependencies
       configureRascalLibraryPlugins(bundleEval);
       
-      // then run the main of the current one
-      runLibraryPluginMain(bundleEval, bundle);
+      // then run the main of the current one, and remember how to do that again for evaluator replicas
+      String version = bundle.getSymbolicName() + "@" + bundle.getVersion() + "@" + bundle.getLastModified();
+      TermLanguageRegistry.getInstance().runRegistration(version, () -> runLibraryPluginMain(bundleEval, bundle), () -> {
+        Evaluator replica = getBundleEvaluator(bundle);
+        configureRascalLibraryPlugins(replica);
+        runLibraryPluginMain(replica, bundle);
+      });
     } 
   }
 	
@@ -25,6 +25,9 @@ public class TreeModelBuilder extends org.rascalmpl.eclipse.terms.TreeModelBuild
 	        return;
 	    }
 	    INode model = IDEServicesModelProvider.getInstance().getOutline((IConstructor) root);
-	    convertModel(model);
+	    
+	    if (model != null) {
+	        convertModel(model);
+	    }
 	}
 }
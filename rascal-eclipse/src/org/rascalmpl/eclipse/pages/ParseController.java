@@ -216,20 +216,4 @@ public class ParseController extends org.rascalmpl.eclipse.editor.ParseControlle
 		this.job = new ParseJob("Rascal parser", location, handler);
 	}
 	
-	@Override
-	public Object parse(String input, IProgressMonitor monitor) {
-		parseTree = null;
-		try {
-			job.initialize(input);
-			job.schedule();
-			job.join();
-			parseTree = job.parseTree;
-			return parseTree;
-		} catch (InterruptedException e) {
-			Activator.getInstance().logException("parser interrupted", e);
-		}
-		
-		return null;
-	}
-	
 }
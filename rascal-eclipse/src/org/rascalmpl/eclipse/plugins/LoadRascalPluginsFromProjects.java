@@ -11,13 +11,21 @@
 *******************************************************************************/
 package org.rascalmpl.eclipse.plugins;
 
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.IRascalResources;
 import org.rascalmpl.eclipse.nature.ProjectEvaluatorFactory;
 import org.rascalmpl.eclipse.preferences.RascalPreferences;
+import org.rascalmpl.eclipse.terms.TermLanguageRegistry;
+import org.rascalmpl.eclipse.util.ProjectConfig;
 import org.rascalmpl.eclipse.util.RascalEclipseManifest;
 import org.rascalmpl.interpreter.Evaluator;
 import org.rascalmpl.interpreter.NullRascalMonitor;
@@ -25,9 +33,14 @@ import org.rascalmpl.interpreter.control_exceptions.Throw;
 import org.rascalmpl.interpreter.staticErrors.ModuleImport;
 import org.rascalmpl.interpreter.staticErrors.StaticError;
 import org.rascalmpl.interpreter.utils.ReadEvalPrintDialogMessages;
+import org.rascalmpl.library.util.PathConfig;
 import org.rascalmpl.parser.gtd.exception.ParseError;
+import org.rascalmpl.uri.URIResolverRegistry;
+import org.rascalmpl.values.ValueFactoryFactory;
 
 import io.usethesource.impulse.language.ILanguageRegistrar;
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IValue;
 import io.usethesource.vallang.io.StandardTextWriter;
 
 public class LoadRascalPluginsFromProjects implements ILanguageRegistrar {
@@ -63,13 +76,81 @@ public class LoadRascalPluginsFromProjects implements ILanguageRegistrar {
 		}
 	}
 	
+	/**
+	 * @return a hash of the names and time stamps of the Rascal modules of the project and the projects it refers to,
+	 *         and of the other roots of its path config, which changes whenever the code of its plugin may have
+	 *         changed, or null if the project could not be visited
+	 */
+	private static String sourceVersion(IProject project) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			PathConfig pcfg = new ProjectConfig(ValueFactoryFactory.getValueFactory()).getPathConfig(project);
+			
+			digestModules(project, digest);
+			
+			for (IProject ref : project.getReferencedProjects()) {
+				if (ref.isOpen()) {
+					digestModules(ref, digest);
+				}
+			}
+			
+			for (IValue root : pcfg.getSrcs().concat(pcfg.getLibs())) {
+				digestRoot((ISourceLocation) root, digest);
+			}
+			
+			return new BigInteger(1, digest.digest()).toString(16);
+		}
+		catch (CoreException | IOException | NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+	
+	private static void digestModules(IProject project, MessageDigest digest) throws CoreException {
+		project.accept(resource -> {
+			if (resource.getType() == IResource.FILE && IRascalResources.RASCAL_EXT.equals(resource.getFileExtension())) {
+				digest.update(resource.getFullPath().toString().getBytes());
+				digest.update(Long.toString(resource.getLocalTimeStamp()).getBytes());
+			}
+			return true;
+		});
+	}
+	
+	/**
+	 * The folders of projects are covered by their modules; libraries and the roots outside of the workspace, like the
+	 * standard library, only change as a whole.
+	 */
+	private static void digestRoot(ISourceLocation root, MessageDigest digest) {
+		URIResolverRegistry reg = URIResolverRegistry.getInstance();
+		
+		try {
+			if ("project".equals(root.getScheme()) && reg.isDirectory(root)) {
+				return;
+			}
+			
+			digest.update(root.toString().getBytes());
+			digest.update(Long.toString(reg.lastModified(root)).getBytes());
+		}
+		catch (IOException e) {
+			// a root which does not exist does not contribute any code
+		}
+	}
+	
 	private static void runPluginMain(final IProject project, String mainModule, String mainFunction) {
 		Evaluator eval = ProjectEvaluatorFactory.getInstance().getEvaluator(project); 
 		
 		try {
+			// the replay creates evaluator replicas of the languages for the term language builder
+			Runnable replay = () -> {
+				Evaluator replica = ProjectEvaluatorFactory.getInstance().createProjectEvaluator(project, eval.getStdErr(), eval.getStdOut());
+				replica.doImport(null, mainModule);
+				replica.call(new NullRascalMonitor(), mainFunction);
+			};
+			
 			synchronized(eval){
-				eval.doImport(null, mainModule);
-				eval.call(new NullRascalMonitor(), mainFunction);
+				TermLanguageRegistry.getInstance().runRegistration(sourceVersion(project), () -> {
+					eval.doImport(null, mainModule);
+					eval.call(new NullRascalMonitor(), mainFunction);
+				}, replay);
 			}
 		}
 		catch (ModuleImport e) {
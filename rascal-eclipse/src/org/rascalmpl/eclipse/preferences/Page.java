@@ -4,6 +4,8 @@ import static org.rascalmpl.eclipse.preferences.RascalPreferences.enableRascalCo
 import static org.rascalmpl.eclipse.preferences.RascalPreferences.bootstrapRascalProject;
 import static org.rascalmpl.eclipse.preferences.RascalPreferences.loadInterpretedLanguagesFromProjects;
 import static org.rascalmpl.eclipse.preferences.RascalPreferences.loadInterpretedLanguagesFromBundles;
+import static org.rascalmpl.eclipse.preferences.RascalPreferences.parseDelay;
+import static org.rascalmpl.eclipse.preferences.RascalPreferences.termBuilderThreads;
 
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.TabFolder;
@@ -16,6 +18,7 @@ import io.usethesource.impulse.preferences.PreferencesTab;
 import io.usethesource.impulse.preferences.TabbedPreferencesPage;
 import io.usethesource.impulse.preferences.fields.BooleanFieldEditor;
 import io.usethesource.impulse.preferences.fields.FieldEditor;
+import io.usethesource.impulse.preferences.fields.IntegerFieldEditor;
 
 public class Page extends TabbedPreferencesPage {
 	private static class Tab extends ConfigurationPreferencesTab {
@@ -70,11 +73,35 @@ public class Page extends TabbedPreferencesPage {
                     false, false,
                     true);
 			
+			@SuppressWarnings("deprecation")
+			IntegerFieldEditor parseDelayField = fPrefUtils.makeNewIntegerField(
+					page, this, fPrefService,
+					IPreferencesService.INSTANCE_LEVEL, parseDelay, "Delay in milliseconds before a Rascal editor parses after an edit",
+					"A longer delay parses less often while typing; a shorter one shows parse errors and highlighting sooner.",
+					parent,
+					true, true,
+					false, "0",
+					false, "0",
+					true);
+			
+			@SuppressWarnings("deprecation")
+			IntegerFieldEditor termBuilderThreadsField = fPrefUtils.makeNewIntegerField(
+					page, this, fPrefService,
+					IPreferencesService.INSTANCE_LEVEL, termBuilderThreads, "Number of files the builders of DSLs may build at the same time",
+					"With more than one, every file is built in an evaluator of its own, which costs memory for every extra thread.",
+					parent,
+					true, true,
+					false, "1",
+					false, "1",
+					true);
+			
 			return new FieldEditor[] {
 					enableStaticFieldEditor,
 					enableBootstrap,
 					loadInterpretedLanguages1,
-					loadInterpretedLanguages2
+					loadInterpretedLanguages2,
+					parseDelayField,
+					termBuilderThreadsField
 			};
 		}
 	}
@@ -9,6 +9,10 @@ public class RascalPreferences {
   public static final String bootstrapRascalProject = "bootstrapRascalProject";
   public static final String loadInterpretedLanguagesFromProjects = "loadInterpretedLanguagesFromProjects";
   public static final String loadInterpretedLanguagesFromBundles = "loadInterpretedLanguagesFromBundles";
+  public static final String parseDelay = "parseDelay";
+  public static final int DEFAULT_PARSE_DELAY = 150;
+  public static final String termBuilderThreads = "termBuilderThreads";
+  public static final int DEFAULT_TERM_BUILDER_THREADS = 1;
   
   private static IPreferencesService service = Activator.getInstance().getPreferencesService();
 
@@ -27,4 +31,21 @@ public class RascalPreferences {
   public static boolean loadInterpretedLanguagesFromProjects() {
       return service.getBooleanPreference(IPreferencesService.INSTANCE_LEVEL, loadInterpretedLanguagesFromProjects);
   }
+  
+  /**
+   * @return the number of milliseconds an editor waits after an edit before it parses the document
+   */
+  public static int getParseDelay() {
+      int delay = service.getIntPreference(IPreferencesService.INSTANCE_LEVEL, parseDelay);
+      return delay >= 0 ? delay : DEFAULT_PARSE_DELAY;
+  }
+  
+  /**
+   * @return the number of files the builders of term languages may build at the same time, each with an evaluator
+   *         of its own; 1 means that files are built one by one, in the registered evaluator of the language
+   */
+  public static int getTermBuilderThreads() {
+      int threads = service.getIntPreference(IPreferencesService.INSTANCE_LEVEL, termBuilderThreads);
+      return threads >= 1 ? threads : DEFAULT_TERM_BUILDER_THREADS;
+  }
 }
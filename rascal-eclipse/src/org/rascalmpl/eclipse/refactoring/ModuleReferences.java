@@ -0,0 +1,116 @@
+package org.rascalmpl.eclipse.refactoring;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.CompositeChange;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.TextFileChange;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.rascalmpl.eclipse.builder.ReferenceIndex;
+import org.rascalmpl.uri.ProjectURIResolver;
+
+import io.usethesource.vallang.ISourceLocation;
+
+/**
+ * Updates the references to a module in other modules when it gets a new name, using the workspace-wide
+ * {@link ReferenceIndex} to find the modules which refer to it instead of parsing every module.
+ */
+class ModuleReferences {
+	private ModuleReferences() { }
+
+	/**
+	 * Loads the references of the project of the module, if this did not happen yet.
+	 */
+	static void prepare(IFile module) {
+		ReferenceIndex.getInstance().load(module.getProject());
+	}
+
+	static RefactoringStatus checkConditions() {
+		if (!ReferenceIndex.getInstance().isUpToDate()) {
+			return RefactoringStatus.createWarningStatus("The Rascal reference index is still being updated, some references to the module may not be renamed.");
+		}
+
+		return new RefactoringStatus();
+	}
+
+	/**
+	 * @return a change which renames the module in its own file and in all files which use its name
+	 */
+	static Change createChange(String label, TextFileChange own, IFile module, String moduleName, String newModuleName, IProgressMonitor pm) throws CoreException {
+		Map<IFile, Set<ISourceLocation>> uses = collectUses(module);
+
+		if (uses.isEmpty()) {
+			return own;
+		}
+
+		CompositeChange result = new CompositeChange(label);
+		result.add(own);
+
+		for (Map.Entry<IFile, Set<ISourceLocation>> entry : uses.entrySet()) {
+			TextFileChange change = new TextFileChange(label, entry.getKey());
+			String content = change.getCurrentContent(pm);
+			MultiTextEdit edits = new MultiTextEdit();
+
+			for (ISourceLocation use : entry.getValue()) {
+				int offset = use.getOffset();
+				int end = offset + use.getLength();
+
+				if (end > content.length()) {
+					// the index is older than the file
+					continue;
+				}
+
+				String name = content.substring(offset, end);
+
+				if (name.equals(moduleName) || name.startsWith(moduleName + "::")) {
+					edits.addChild(new ReplaceEdit(offset, moduleName.length(), newModuleName));
+				}
+			}
+
+			if (edits.hasChildren()) {
+				change.setEdit(edits);
+				result.add(change);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return the uses of the definitions in the module, in the workspace files other than the module itself,
+	 *         sorted by offset per file
+	 */
+	private static Map<IFile, Set<ISourceLocation>> collectUses(IFile module) {
+		ISourceLocation moduleLoc = ProjectURIResolver.constructProjectURI(module.getFullPath());
+		ProjectURIResolver resolver = new ProjectURIResolver();
+		Map<IFile, Set<ISourceLocation>> result = new LinkedHashMap<>();
+
+		for (ISourceLocation use : ReferenceIndex.getInstance().findReferencesInto(moduleLoc)) {
+			if (!"project".equals(use.getScheme()) || !use.hasOffsetLength() || use.top().equals(moduleLoc)) {
+				continue;
+			}
+
+			try {
+				IFile file = resolver.resolveFile(use);
+
+				if (file.exists()) {
+					result.computeIfAbsent(file, f -> new TreeSet<>((a, b) -> Integer.compare(a.getOffset(), b.getOffset()))).add(use);
+				}
+			}
+			catch (IOException e) {
+				// not in the workspace, so we can not change it anyway
+			}
+		}
+
+		return result;
+	}
+}
@@ -5,7 +5,6 @@ import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
-import org.eclipse.core.runtime.Status;
 import org.eclipse.ltk.core.refactoring.Change;
 import org.eclipse.ltk.core.refactoring.NullChange;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
@@ -30,6 +29,7 @@ public class MoveParticipant extends
 	protected boolean initialize(Object element) {
 		if (element instanceof IFile) {
 			file = (IFile) element;
+			ModuleReferences.prepare(file);
 			return true;
 		}
 		
@@ -44,7 +44,7 @@ public class MoveParticipant extends
 	@Override
 	public RefactoringStatus checkConditions(IProgressMonitor pm,
 			CheckConditionsContext context) throws OperationCanceledException {
-		return RefactoringStatus.create(Status.OK_STATUS);
+		return ModuleReferences.checkConditions();
 	}
 
 	@Override
@@ -81,7 +81,7 @@ public class MoveParticipant extends
 				}
 				
 
-				return change;
+				return ModuleReferences.createChange("Move Rascal Module", change, file, moduleName, newModuleName, pm);
 			}
 		} 
 		catch (CoreException e) {
@@ -5,7 +5,6 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
-import org.eclipse.core.runtime.Status;
 import org.eclipse.ltk.core.refactoring.Change;
 import org.eclipse.ltk.core.refactoring.NullChange;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
@@ -26,6 +25,7 @@ public class RenameParticipant extends org.eclipse.ltk.core.refactoring.particip
 	protected boolean initialize(Object element) {
 		if (element instanceof IFile) {
 			file = (IFile) element;
+			ModuleReferences.prepare(file);
 			return true;
 		}
 		return false;
@@ -39,7 +39,7 @@ public class RenameParticipant extends org.eclipse.ltk.core.refactoring.particip
 	@Override
 	public RefactoringStatus checkConditions(IProgressMonitor pm,
 			CheckConditionsContext context) throws OperationCanceledException {
-		return RefactoringStatus.create(Status.OK_STATUS);
+		return ModuleReferences.checkConditions();
 	}
 
 	@Override
@@ -66,7 +66,7 @@ public class RenameParticipant extends org.eclipse.ltk.core.refactoring.particip
 				change.setEdit(m);
 			}
 
-			return change;
+			return ModuleReferences.createChange("Rename Rascal Module", change, file, moduleName, newModuleName, pm);
 		} 
 		catch (CoreException e) {
 			Activator.getInstance().logException("error during renaming", e);
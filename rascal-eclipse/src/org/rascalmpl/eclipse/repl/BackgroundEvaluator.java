@@ -0,0 +1,245 @@
+package org.rascalmpl.eclipse.repl;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.eclipse.nature.ProjectEvaluatorFactory;
+import org.rascalmpl.eclipse.nature.RascalMonitor;
+import org.rascalmpl.eclipse.nature.WarningsToPrintWriter;
+import org.rascalmpl.interpreter.Evaluator;
+import org.rascalmpl.interpreter.control_exceptions.InterruptException;
+import org.rascalmpl.interpreter.env.Environment;
+import org.rascalmpl.interpreter.result.Result;
+import org.rascalmpl.interpreter.result.ResultFactory;
+import org.rascalmpl.interpreter.utils.ReadEvalPrintDialogMessages;
+import org.rascalmpl.uri.URIUtil;
+
+import io.usethesource.vallang.IValue;
+import io.usethesource.vallang.io.StandardTextWriter;
+
+/**
+ * Evaluates statements of a console in the background, such that the user can keep using the console, and the
+ * evaluator of the console is not locked, while a long analysis runs.
+ *
+ * A statement which is sent to the background with {@link #BACKGROUND} runs in a job with an evaluator of its own,
+ * which imports the same modules as the console and gets copies of the values of its variables. Functions which
+ * were declared in the console itself are not available there. When the job is done, its result is stored in a new
+ * variable of the console. Jobs show their progress in the progress view, and can be canceled there or with
+ * {@link #CANCEL}.
+ */
+public class BackgroundEvaluator {
+    public static final String BACKGROUND = ":bg";
+    public static final String CANCEL = ":cancel";
+    private static final String VARIABLE_PREFIX = "bg";
+
+    private final IProject project;
+    private final Evaluator eval;
+    private final AtomicInteger counter = new AtomicInteger(0);
+    private final Map<Integer, EvaluationJob> running = new ConcurrentHashMap<>();
+
+    public BackgroundEvaluator(IProject project, Evaluator eval) {
+        this.project = project;
+        this.eval = eval;
+    }
+
+    /**
+     * @return the statement which should be run in the background, or null if the command is not a background command
+     */
+    public static String getBackgroundStatement(String command) {
+        String trimmed = command.trim();
+
+        if (trimmed.startsWith(BACKGROUND) && (trimmed.length() == BACKGROUND.length() || Character.isWhitespace(trimmed.charAt(BACKGROUND.length())))) {
+            return trimmed.substring(BACKGROUND.length()).trim();
+        }
+
+        return null;
+    }
+
+    public static boolean isCancel(String command) {
+        String trimmed = command.trim();
+        return trimmed.equals(CANCEL) || trimmed.startsWith(CANCEL + " ");
+    }
+
+    /**
+     * Starts a job which evaluates the statement in an evaluator of its own. Must be called by the thread of the
+     * console, because it copies the state of the console.
+     */
+    public void submit(String statement) {
+        PrintWriter out = eval.getStdOut();
+
+        if (statement.isEmpty()) {
+            out.println("usage: " + BACKGROUND + " <statement>");
+            out.flush();
+            return;
+        }
+
+        List<String> imports;
+        Map<String, Result<IValue>> variables = new TreeMap<>();
+
+        synchronized (eval) {
+            Environment shell = eval.getCurrentEnvt();
+            imports = new ArrayList<>(shell.getImports());
+
+            for (String name : shell.getFrameVariables()) {
+                Result<IValue> variable = shell.getFrameVariable(name);
+
+                // closures of the console would run in the evaluator of the console
+                if (variable != null && variable.getValue() != null && !variable.getType().isFunction()) {
+                    variables.put(name, variable);
+                }
+            }
+        }
+
+        int id = counter.incrementAndGet();
+        EvaluationJob job = new EvaluationJob(id, statement, imports, variables);
+        running.put(id, job);
+        job.addJobChangeListener(new JobChangeAdapter() {
+            @Override
+            public void done(IJobChangeEvent event) {
+                // also called for a job which was canceled before it ran
+                running.remove(id, job);
+            }
+        });
+        job.schedule();
+
+        out.println("[" + BACKGROUND + " " + id + "] started, the result will be stored in " + VARIABLE_PREFIX + id + "; type " + CANCEL + " " + id + " to stop it");
+        out.flush();
+    }
+
+    /**
+     * Cancels the job with the number in the command, or all jobs if there is no number.
+     */
+    public void cancel(String command) {
+        String arg = command.trim().substring(CANCEL.length()).trim();
+        PrintWriter out = eval.getStdOut();
+
+        if (arg.isEmpty()) {
+            cancelAll();
+            return;
+        }
+
+        try {
+            EvaluationJob job = running.get(Integer.parseInt(arg));
+
+            if (job != null) {
+                job.cancel();
+            }
+            else {
+                out.println("no background evaluation " + arg + " is running");
+            }
+        }
+        catch (NumberFormatException e) {
+            out.println("usage: " + CANCEL + " [<number>]");
+        }
+
+        out.flush();
+    }
+
+    public void cancelAll() {
+        for (EvaluationJob job : running.values()) {
+            job.cancel();
+        }
+    }
+
+    private class EvaluationJob extends Job {
+        private final int id;
+        private final String statement;
+        private final List<String> imports;
+        private final Map<String, Result<IValue>> variables;
+        private volatile Evaluator fork;
+
+        public EvaluationJob(int id, String statement, List<String> imports, Map<String, Result<IValue>> variables) {
+            super("Rascal console: " + statement);
+            this.id = id;
+            this.statement = statement;
+            this.imports = imports;
+            this.variables = variables;
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            PrintWriter out = eval.getStdOut();
+            PrintWriter err = eval.getStdErr();
+            String label = "[" + BACKGROUND + " " + id + "] ";
+            long start = System.currentTimeMillis();
+
+            try {
+                RascalMonitor rm = new RascalMonitor(monitor, new WarningsToPrintWriter(err));
+                fork = ProjectEvaluatorFactory.getInstance().createProjectEvaluator(project, err, out);
+
+                if (monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+
+                for (String module : imports) {
+                    fork.doImport(rm, module);
+                }
+
+                Environment shell = fork.getCurrentEnvt();
+                for (Map.Entry<String, Result<IValue>> variable : variables.entrySet()) {
+                    shell.storeVariable(variable.getKey(), ResultFactory.makeResult(variable.getValue().getType(), variable.getValue().getValue(), fork));
+                }
+
+                Result<IValue> result = fork.eval(rm, statement, URIUtil.rootLocation("prompt"));
+                long seconds = (System.currentTimeMillis() - start) / 1000;
+
+                if (result == null || result.getValue() == null) {
+                    out.println(label + "done in " + seconds + "s: ok");
+                }
+                else {
+                    String name = VARIABLE_PREFIX + id;
+
+                    synchronized (eval) {
+                        eval.getCurrentEnvt().storeVariable(name, ResultFactory.makeResult(result.getType(), result.getValue(), eval));
+                    }
+
+                    out.println(label + "done in " + seconds + "s, the result of type " + result.getType() + " is stored in " + name);
+                }
+
+                return Status.OK_STATUS;
+            }
+            catch (InterruptException e) {
+                out.println(label + "canceled");
+                return Status.CANCEL_STATUS;
+            }
+            catch (RuntimeException e) {
+                err.println(label + "failed");
+                ReadEvalPrintDialogMessages.parseOrStaticOrThrowMessage(err, e, new StandardTextWriter(true));
+                err.println();
+                return Status.OK_STATUS;
+            }
+            catch (Throwable e) {
+                Activator.log("background evaluation of " + statement + " failed", e);
+                return Status.OK_STATUS;
+            }
+            finally {
+                fork = null;
+                out.flush();
+                err.flush();
+            }
+        }
+
+        @Override
+        protected void canceling() {
+            Evaluator current = fork;
+
+            if (current != null) {
+                // nobody else uses this evaluator, so this only interrupts our statement
+                current.__setInterrupt(true);
+            }
+        }
+    }
+}
@@ -2,19 +2,52 @@ package org.rascalmpl.eclipse.repl;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * The input of a REPL, which the terminal writes to at the other side of a {@link REPLPipedOutputStream}.
+ *
+ * The bytes are kept in a ring buffer with a single reader (the REPL) and a single writer at a time; bytes are
+ * copied in bulk, and a reader which finds the buffer empty parks until the writer made progress. The writer is
+ * the UI thread of the terminal, so it never waits: what does not fit in the ring, say a large paste, is queued
+ * in chunks until the reader emptied the ring. A closed pipe still returns the bytes which were written before it
+ * was closed.
+ */
 public class REPLPipedInputStream extends InputStream {
+  private static final int DEFAULT_CAPACITY = 64 * 1024;
+  private static final int SPINS = 64;
 
-  private final ConcurrentLinkedQueue<Byte> queue;
+  private final byte[] buffer;
+  private final int mask;
+  /** the number of bytes read so far, only changed by the reader */
+  private final AtomicLong head = new AtomicLong(0);
+  /** the number of bytes written so far, only changed by the writer */
+  private final AtomicLong tail = new AtomicLong(0);
+  private final Object writeLock = new Object();
+  /** the bytes which did not fit in the ring, guarded by the write lock */
+  private final ArrayDeque<byte[]> overflow = new ArrayDeque<>();
+  /** the number of bytes of the first overflow chunk which were moved to the ring already */
+  private int overflowOffset = 0;
+  private volatile boolean overflowing;
+  private final byte[] singleRead = new byte[1];
+  private final byte[] singleWrite = new byte[1];
+  private volatile Thread waitingReader;
   private volatile boolean closed;
-  private final Semaphore newData = new Semaphore(0);
 
   public REPLPipedInputStream() {
-    this.queue = new ConcurrentLinkedQueue<Byte>();
-    this.closed = false;
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity the size of the buffer, which is rounded up to a power of two
+   */
+  public REPLPipedInputStream(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    this.buffer = new byte[size];
+    this.mask = size - 1;
   }
 
   @Override
@@ -32,53 +65,134 @@ public class REPLPipedInputStream extends InputStream {
     } else if (len == 0) {
       return 0;
     }
+
     // we have to at least read one (so block until we can)
-    int atLeastOne = read();
-    if (atLeastOne == -1) {
-      return -1;
+    long h = head.get();
+    long available;
+    int spins = 0;
+    while ((available = tail.get() - h) == 0) {
+      if (overflowing) {
+        refill();
+        continue;
+      }
+      if (closed || Thread.interrupted()) {
+        return -1;
+      }
+      if (spins++ < SPINS) {
+        // a writer which writes byte by byte is usually just about to write the next one
+        Thread.yield();
+        continue;
+      }
+      waitingReader = Thread.currentThread();
+      // check again, the writer may have written before it could see that we are waiting
+      if (tail.get() == h && !overflowing && !closed) {
+        LockSupport.park(this);
+      }
+      waitingReader = null;
     }
-    int index = off;
-    b[index++] = (byte) atLeastOne;
 
     // now consume the rest of the available bytes
-    Byte current;
-    while ((current = queue.poll()) != null && (index < off + len)) {
-      b[index++] = current;
+    int n = (int) Math.min(len, available);
+    int pos = (int) (h & mask);
+    int first = Math.min(n, buffer.length - pos);
+    System.arraycopy(buffer, pos, b, off, first);
+    System.arraycopy(buffer, 0, b, off + first, n - first);
+    head.set(h + n);
+    return n;
+  }
+
+  /**
+   * Moves queued bytes to the ring, which the reader only does when it found the ring empty.
+   */
+  private void refill() {
+    synchronized (writeLock) {
+      long t = tail.get();
+      int free = (int) (buffer.length - (t - head.get()));
+
+      while (free > 0 && !overflow.isEmpty()) {
+        byte[] chunk = overflow.peek();
+        int n = Math.min(free, chunk.length - overflowOffset);
+        copyIn(t, chunk, overflowOffset, n);
+        t += n;
+        free -= n;
+        overflowOffset += n;
+
+        if (overflowOffset == chunk.length) {
+          overflow.poll();
+          overflowOffset = 0;
+        }
+      }
+
+      tail.set(t);
+      overflowing = !overflow.isEmpty();
     }
-    return index - off;
+  }
+
+  private void copyIn(long t, byte[] b, int off, int n) {
+    int pos = (int) (t & mask);
+    int first = Math.min(n, buffer.length - pos);
+    System.arraycopy(b, off, buffer, pos, first);
+    System.arraycopy(b, off + first, buffer, 0, n - first);
   }
 
   @Override
   public int read() throws IOException {
-    Byte result = null;
-    while ((result = queue.poll()) == null) {
-      try {
-        newData.tryAcquire(10, TimeUnit.MILLISECONDS);
-      }
-      catch (InterruptedException e) {
-        return -1;
-      }
-      if (closed) {
-        return -1;
-      }
+    if (read(singleRead, 0, 1) == -1) {
+      return -1;
     }
-    return (result & 0xFF);
+    return (singleRead[0] & 0xFF);
+  }
+
+  @Override
+  public int available() throws IOException {
+    return (int) (tail.get() - head.get());
   }
 
   @Override
   public void close() throws IOException {
     closed = true;
+    wakeUp(waitingReader);
+  }
+
+  private static void wakeUp(Thread waiting) {
+    if (waiting != null) {
+      LockSupport.unpark(waiting);
+    }
   }
 
+  /**
+   * Never blocks; bytes written after the pipe was closed are dropped.
+   */
   public void write(byte[] b, int off, int len) {
-    for (int i = off; i < off + len; i++) {
-      queue.add(b[i]); 
+    synchronized (writeLock) {
+      if (closed || len == 0) {
+        return;
+      }
+
+      if (overflow.isEmpty()) {
+        long t = tail.get();
+        int n = (int) Math.min(len, buffer.length - (t - head.get()));
+        copyIn(t, b, off, n);
+        tail.set(t + n);
+        off += n;
+        len -= n;
+      }
+
+      if (len > 0) {
+        // the bytes after the ones which are queued already have to wait for those
+        overflow.add(Arrays.copyOfRange(b, off, off + len));
+        overflowing = true;
+      }
     }
-    newData.release();
+
+    wakeUp(waitingReader);
   }
+
   public void write(byte b) {
-    queue.add(b); 
-    newData.release();
+    synchronized (writeLock) {
+      singleWrite[0] = b;
+      write(singleWrite, 0, 1);
+    }
   }
 
 }
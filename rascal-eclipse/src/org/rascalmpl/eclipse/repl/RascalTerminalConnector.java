@@ -53,6 +53,7 @@ import jline.Terminal;
 @SuppressWarnings("restriction")
 public class RascalTerminalConnector extends SizedTerminalConnector {
     private BaseREPL shell;
+    private BackgroundEvaluator background;
     private REPLPipedInputStream stdIn;
     private OutputStream stdInUI;
     protected String project;
@@ -168,6 +169,9 @@ public class RascalTerminalConnector extends SizedTerminalConnector {
     protected void doDisconnect() {
         try {
             super.doDisconnect();
+            if (background != null) {
+                background.cancelAll();
+            }
             if (shell != null) {
                 try {
                     stdIn.close();
@@ -242,6 +246,7 @@ public class RascalTerminalConnector extends SizedTerminalConnector {
         return new RascalInterpreterREPL(stdIn, control.getRemoteToTerminalOutputStream(), true, true, false, getHistoryFile()) {
             private AbstractInterpreterEventTrigger eventTrigger;
             private DebugHandler debugHandler;
+            private StreamingResultPrinter printer;
             
             @Override
             protected Evaluator constructEvaluator(Writer stdout, Writer stderr) {
@@ -250,6 +255,8 @@ public class RascalTerminalConnector extends SizedTerminalConnector {
                     ipr = null;
                 }
                 Evaluator eval = ProjectEvaluatorFactory.getInstance().createProjectEvaluator(ipr, stderr, stdout);
+                printer = new StreamingResultPrinter(eval.getStdOut());
+                background = new BackgroundEvaluator(ipr, eval);
                 
                 // TODO: this is a workaround to get access to a launch, but we'd rather
                 // just get it from the terminal's properties
@@ -277,9 +284,38 @@ public class RascalTerminalConnector extends SizedTerminalConnector {
                 return eval;
             }
             
+            @Override
+            public boolean isStatementComplete(String command) {
+                String backgroundStatement = BackgroundEvaluator.getBackgroundStatement(command);
+                
+                if (backgroundStatement != null) {
+                    return backgroundStatement.isEmpty() || super.isStatementComplete(backgroundStatement);
+                }
+                
+                return StreamingResultPrinter.MORE.equals(command.trim()) || BackgroundEvaluator.isCancel(command) || super.isStatementComplete(command);
+            }
+            
             @Override
             public IRascalResult evalStatement(String statement, String lastLine)
                     throws InterruptedException {
+                if (StreamingResultPrinter.MORE.equals(statement.trim())) {
+                    printer.printMore();
+                    return null;
+                }
+                
+                String backgroundStatement = BackgroundEvaluator.getBackgroundStatement(statement);
+                if (backgroundStatement != null) {
+                    background.submit(backgroundStatement);
+                    return null;
+                }
+                
+                if (BackgroundEvaluator.isCancel(statement)) {
+                    background.cancel(statement);
+                    return null;
+                }
+                
+                printer.discard();
+                
                 try {
                     if (debug()) {
                         synchronized(eval) {
@@ -297,7 +333,15 @@ public class RascalTerminalConnector extends SizedTerminalConnector {
                     job.schedule();
                     job.join();
                  
-                    return super.evalStatement(statement, lastLine);
+                    IRascalResult result = super.evalStatement(statement, lastLine);
+                    
+                    if (printer.isLarge(result)) {
+                        // printing all of it at once would freeze the terminal
+                        printer.print(result);
+                        return null;
+                    }
+                    
+                    return result;
                 }
                 finally {
                     if (debug() && !":quit".equals(statement.trim())) {
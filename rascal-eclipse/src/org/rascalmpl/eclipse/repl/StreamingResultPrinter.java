@@ -0,0 +1,256 @@
+package org.rascalmpl.eclipse.repl;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Iterator;
+
+import org.rascalmpl.interpreter.result.IRascalResult;
+import org.rascalmpl.interpreter.utils.LimitedResultWriter.IOLimitReachedException;
+import org.rascalmpl.repl.LimitedWriter;
+import org.rascalmpl.values.uptr.RascalValueFactory;
+import org.rascalmpl.values.uptr.TreeAdapter;
+
+import io.usethesource.vallang.IConstructor;
+import io.usethesource.vallang.IList;
+import io.usethesource.vallang.IMap;
+import io.usethesource.vallang.ISet;
+import io.usethesource.vallang.IValue;
+import io.usethesource.vallang.io.StandardTextWriter;
+import io.usethesource.vallang.type.Type;
+
+/**
+ * Prints large results of the REPL, such as big relations and parse trees, to the terminal piece by piece.
+ *
+ * Of a collection only the first page of elements is printed; the next page is printed when the user types
+ * {@link #MORE}. Every element and the yield of a tree are cut off at a maximum length, and the output is flushed in
+ * small chunks, such that the terminal can render it while it is being printed instead of receiving all of it at once.
+ */
+public class StreamingResultPrinter {
+    public static final String MORE = ":more";
+
+    private static final int PAGE_SIZE = 100;
+    private static final int ELEMENT_CHAR_LIMIT = 1000;
+    private static final int TREE_CHAR_LIMIT = 4000;
+    /** trees with a shorter yield are printed as usual */
+    private static final int LARGE_TREE_YIELD = 1000;
+    private static final int CHUNK_CHARS = 4096;
+
+    private final PrintWriter out;
+    private final StandardTextWriter printer = new StandardTextWriter(false);
+
+    /** the elements of the last collection which have not been printed yet, or null */
+    private Iterator<IValue> rest;
+    private IMap restMap;
+    private int remaining;
+    private String close;
+
+    public StreamingResultPrinter(PrintWriter out) {
+        this.out = out;
+    }
+
+    /**
+     * @return true iff the result is too large to print in one go, and should be printed by this printer
+     */
+    public boolean isLarge(IRascalResult result) {
+        if (result == null || result.getValue() == null) {
+            return false;
+        }
+
+        IValue value = result.getValue();
+
+        if (value instanceof ISet) {
+            return ((ISet) value).size() > PAGE_SIZE;
+        }
+        else if (value instanceof IList) {
+            return ((IList) value).length() > PAGE_SIZE;
+        }
+        else if (value instanceof IMap) {
+            return ((IMap) value).size() > PAGE_SIZE;
+        }
+
+        Type type = result.getType();
+        return type.isAbstractData() && type.isSubtypeOf(RascalValueFactory.Tree) && hasLongYield((IConstructor) value);
+    }
+
+    /**
+     * Unparses the tree only up to the threshold, so deciding this does not cost more than printing a small tree.
+     */
+    private static boolean hasLongYield(IConstructor tree) {
+        try {
+            TreeAdapter.yield(tree, true, new LimitedWriter(new StringWriter(), LARGE_TREE_YIELD));
+            return false;
+        }
+        catch (IOLimitReachedException e) {
+            return true;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Prints the result, or the first page of its elements.
+     */
+    public void print(IRascalResult result) {
+        discard();
+
+        IValue value = result.getValue();
+        ChunkedWriter chunked = new ChunkedWriter(out);
+
+        try {
+            chunked.write(result.getType().toString());
+            chunked.write(": ");
+
+            if (value instanceof ISet) {
+                open("{", "}", ((ISet) value).iterator(), ((ISet) value).size(), chunked);
+            }
+            else if (value instanceof IList) {
+                open("[", "]", ((IList) value).iterator(), ((IList) value).length(), chunked);
+            }
+            else if (value instanceof IMap) {
+                restMap = (IMap) value;
+                open("(", ")", restMap.iterator(), restMap.size(), chunked);
+            }
+            else {
+                printTree((IConstructor) value, chunked);
+            }
+        }
+        catch (IOException e) {
+            discard();
+        }
+        finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * Prints the next page of elements of the last result.
+     */
+    public void printMore() {
+        if (rest == null) {
+            out.println("there is nothing more to print");
+            out.flush();
+            return;
+        }
+
+        try {
+            printPage(new ChunkedWriter(out));
+        }
+        catch (IOException e) {
+            discard();
+        }
+        finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * Forgets the elements of the last result which have not been printed yet.
+     */
+    public void discard() {
+        rest = null;
+        restMap = null;
+        remaining = 0;
+        close = null;
+    }
+
+    private void open(String open, String close, Iterator<IValue> elements, int size, ChunkedWriter chunked) throws IOException {
+        chunked.write(open);
+        chunked.write("\n");
+
+        this.rest = elements;
+        this.remaining = size;
+        this.close = close;
+
+        printPage(chunked);
+    }
+
+    private void printPage(ChunkedWriter chunked) throws IOException {
+        for (int i = 0; i < PAGE_SIZE && rest.hasNext(); i++) {
+            IValue element = rest.next();
+            remaining--;
+
+            chunked.write("  ");
+            printLimited(element, ELEMENT_CHAR_LIMIT, chunked);
+
+            if (restMap != null) {
+                chunked.write(": ");
+                printLimited(restMap.get(element), ELEMENT_CHAR_LIMIT, chunked);
+            }
+
+            chunked.write(rest.hasNext() ? ",\n" : "\n");
+        }
+
+        if (rest.hasNext()) {
+            chunked.write("  ... " + remaining + " more, type " + MORE + " to print the next " + Math.min(PAGE_SIZE, remaining) + "\n");
+        }
+        else {
+            chunked.write(close);
+            chunked.write("\n");
+            discard();
+        }
+    }
+
+    private void printTree(IConstructor tree, ChunkedWriter chunked) throws IOException {
+        // we first unparse the tree
+        chunked.write("`");
+        try {
+            TreeAdapter.yield(tree, true, new LimitedWriter(chunked, TREE_CHAR_LIMIT));
+        }
+        catch (IOLimitReachedException e) {
+            chunked.write("...");
+        }
+        chunked.write("`\n");
+
+        // write parse tree out one a single line for reference
+        chunked.write("Tree: ");
+        printLimited(tree, TREE_CHAR_LIMIT, chunked);
+        chunked.write("\n");
+    }
+
+    private void printLimited(IValue value, int limit, ChunkedWriter chunked) throws IOException {
+        try {
+            printer.write(value, new LimitedWriter(chunked, limit));
+        }
+        catch (IOLimitReachedException e) {
+            chunked.write("...");
+        }
+    }
+
+    /**
+     * Flushes the output every few kilobytes, and gives the terminal the chance to render it.
+     */
+    private static class ChunkedWriter extends Writer {
+        private final Writer out;
+        private int written = 0;
+
+        ChunkedWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            written += len;
+
+            if (written >= CHUNK_CHARS) {
+                flush();
+                written = 0;
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the terminal stays open
+            flush();
+        }
+    }
+}
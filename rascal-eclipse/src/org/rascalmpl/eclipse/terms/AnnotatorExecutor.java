@@ -14,9 +14,16 @@
 package org.rascalmpl.eclipse.terms;
  
 import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.editor.MessagesToAnnotations;
+import org.rascalmpl.interpreter.IEvaluatorContext;
+import org.rascalmpl.interpreter.control_exceptions.InterruptException;
 import org.rascalmpl.interpreter.control_exceptions.Throw;
 import org.rascalmpl.interpreter.result.ICallableValue;
 import org.rascalmpl.interpreter.staticErrors.StaticError;
@@ -25,6 +32,7 @@ import org.rascalmpl.interpreter.utils.ReadEvalPrintDialogMessages;
 import org.rascalmpl.parser.gtd.exception.ParseError;
 import io.usethesource.vallang.IConstructor;
 import io.usethesource.vallang.IList;
+import io.usethesource.vallang.ISourceLocation;
 import io.usethesource.vallang.IValue;
 import io.usethesource.vallang.io.StandardTextWriter;
 import io.usethesource.vallang.type.Type;
@@ -40,13 +48,59 @@ import io.usethesource.impulse.parser.IMessageHandler;
  * After proper annotations have been added, features such as documentation tooltips
  * and hyperlinking uses to definitions start working.
  * 
+ * The annotated trees are memoized by the text and the location of the tree they were computed
+ * from, such that the same contents are not annotated again, for example after an undo, after
+ * reopening a file or when the tree is published again. An annotator function annotates a whole
+ * tree, and the annotations of one declaration may depend on all others, so the annotations of
+ * unchanged parts of a changed tree are not reused.
+ * 
  * Note that this class only works for languages that have been registered using the
  * API in SourceEditor.rsc
  */
 public class AnnotatorExecutor {
+	private static final int MEMO_SIZE = 32;
 	private final MessagesToAnnotations marker = new MessagesToAnnotations();
+	private final Map<MemoKey, ITree> memo = Collections.synchronizedMap(new LinkedHashMap<MemoKey, ITree>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<MemoKey, ITree> eldest) {
+			return size() > MEMO_SIZE;
+		}
+	});
+	/** the trees which are being annotated right now, by the evaluator which is annotating them */
+	private final Map<IEvaluatorContext, ITree> running = new HashMap<IEvaluatorContext, ITree>();
 	
-	public synchronized ITree annotate(ICallableValue func, ITree parseTree, IMessageHandler handler) {
+	public ITree annotate(ICallableValue func, ITree parseTree, IMessageHandler handler) {
+		ITree newTree = annotate(func, parseTree);
+		
+		if (newTree != null) {
+			report(newTree, handler);
+		}
+		
+		return newTree;
+	}
+	
+	/**
+	 * @return the annotated tree if the tree was annotated before by the same function, or null
+	 */
+	public ITree lookup(ICallableValue func, ITree parseTree) {
+		return memo.get(new MemoKey(func, parseTree));
+	}
+	
+	/**
+	 * Runs the annotator on the tree, unless the result is memoized.
+	 * 
+	 * @return the annotated tree, or null if the annotator failed or was canceled
+	 */
+	public ITree annotate(ICallableValue func, ITree parseTree) {
+		MemoKey key = new MemoKey(func, parseTree);
+		ITree memoized = memo.get(key);
+		
+		if (memoized != null) {
+			return memoized;
+		}
+		
 		try {
 			ITree top = parseTree;
 			boolean start = false;
@@ -61,9 +115,24 @@ public class AnnotatorExecutor {
 			
 			Type type = RascalTypeFactory.getInstance().nonTerminalType(tree);
 			ITree newTree;
-			synchronized(func.getEval()){
-				func.getEval().__setInterrupt(false);
-				newTree = (ITree) func.call(new Type[] {type}, new IValue[] {tree}, null).getValue();
+			IEvaluatorContext eval = func.getEval();
+			synchronized(eval){
+				eval.__setInterrupt(false);
+				
+				synchronized (running) {
+					running.put(eval, parseTree);
+				}
+				
+				try {
+					newTree = (ITree) func.call(new Type[] {type}, new IValue[] {tree}, null).getValue();
+				}
+				finally {
+					synchronized (running) {
+						running.remove(eval);
+						// a cancel may have come in just after the call returned
+						eval.__setInterrupt(false);
+					}
+				}
 			}
 			
 			if (newTree != null) {
@@ -71,13 +140,16 @@ public class AnnotatorExecutor {
 					IList newArgs = TreeAdapter.getArgs(top).put(1, newTree);
 					newTree = (ITree) top.set("args", newArgs).asAnnotatable().setAnnotation("loc", top.asAnnotatable().getAnnotation("loc"));
 				}
-				marker.process(newTree, handler);
+				memo.put(key, newTree);
 				return newTree;
 			}
 			else {
 				Activator.getInstance().logException("annotator returned null", new RuntimeException());
 			}
 		}
+		catch (InterruptException e) {
+			// canceled because a newer tree came in
+		}
 		catch (RuntimeException e) {
 			if (e instanceof ParseError || e instanceof StaticError || e instanceof Throw) {
 				PrintWriter stdErr = func.getEval().getStdErr();
@@ -95,4 +167,54 @@ public class AnnotatorExecutor {
 		
 		return null;
 	}
+	
+	/**
+	 * Interrupts the annotator if it is annotating the given tree right now.
+	 */
+	public void cancel(ICallableValue func, ITree parseTree) {
+		synchronized (running) {
+			if (running.get(func.getEval()) == parseTree) {
+				func.getEval().__setInterrupt(true);
+			}
+		}
+	}
+	
+	/**
+	 * Reports the messages which the annotator added to the tree.
+	 */
+	public void report(ITree annotated, IMessageHandler handler) {
+		marker.process(annotated, handler);
+	}
+	
+	/**
+	 * The parser of a language produces the same tree for the same text, so the text identifies the tree. The
+	 * location is part of the key, since the annotations contain locations; equality of trees ignores those, and
+	 * hashing the yield is much cheaper than hashing the tree.
+	 */
+	private static final class MemoKey {
+		private final ICallableValue func;
+		private final ISourceLocation loc;
+		private final String text;
+		
+		public MemoKey(ICallableValue func, ITree tree) {
+			this.func = func;
+			this.loc = TreeAdapter.getLocation(tree);
+			this.text = TreeAdapter.yield(tree);
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof MemoKey) {
+				MemoKey other = (MemoKey) obj;
+				return func == other.func && Objects.equals(loc, other.loc) && text.equals(other.text);
+			}
+			
+			return false;
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * (31 * System.identityHashCode(func) + Objects.hashCode(loc)) + text.hashCode();
+		}
+	}
 }
@@ -0,0 +1,215 @@
+package org.rascalmpl.eclipse.terms;
+
+import static org.rascalmpl.values.uptr.RascalValueFactory.TYPE_STORE_SUPPLIER;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.eclipse.util.ProjectConfig;
+import org.rascalmpl.values.ValueFactoryFactory;
+
+import io.usethesource.vallang.ISet;
+import io.usethesource.vallang.IValue;
+import io.usethesource.vallang.io.binary.stream.IValueInputStream;
+import io.usethesource.vallang.io.binary.stream.IValueOutputStream;
+import io.usethesource.vallang.io.binary.stream.IValueOutputStream.CompressionRate;
+
+/**
+ * Stores the messages which the builders of a term language produced for a file in the bin folder of its project,
+ * such that building the same file again, also after a clean or in a later session, replays them as markers
+ * without parsing the file or running any Rascal code.
+ *
+ * The messages are keyed by a hash of the contents of the file, the version of the registration of its language
+ * and the builders of the language. A different key for the same file replaces the messages stored before.
+ * The messages are written with java.io, such that parallel builders do not need a scheduling rule; the caller
+ * {@link #refresh}es the folders afterwards, on a thread which may lock them.
+ */
+public class BuildCache {
+	public static final String FOLDER = "termcache";
+	private static final String EXTENSION = ".messages";
+
+	private BuildCache() { }
+
+	/**
+	 * @return the complete contents of the file
+	 */
+	public static byte[] contents(IFile file) throws IOException, CoreException {
+		try (InputStream in = file.getContents()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[8192];
+			int read;
+
+			while ((read = in.read(buf)) != -1) {
+				out.write(buf, 0, read);
+			}
+
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * @param version the version of the registration of the language of the file
+	 * @return the key of the messages of the builders for a file with the given contents, or null if there is none
+	 */
+	public static String key(byte[] contents, String version, ISet builders) {
+		List<String> identities = new ArrayList<String>(builders.size());
+
+		for (IValue builder : builders) {
+			identities.add(builder.toString());
+		}
+
+		// the order of a set is not the same in every session
+		Collections.sort(identities);
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update(contents);
+			digest.update(version.getBytes());
+
+			for (String identity : identities) {
+				digest.update(identity.getBytes());
+			}
+
+			return new BigInteger(1, digest.digest()).toString(16);
+		}
+		catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the stored messages of the builders for the file, or null if there are none for this key
+	 */
+	public static ISet read(IFile file, String key) {
+		File stored = locate(file, key);
+
+		if (stored == null || !stored.exists()) {
+			return null;
+		}
+
+		try (FileChannel channel = FileChannel.open(stored.toPath(), StandardOpenOption.READ);
+			IValueInputStream in = new IValueInputStream(channel, ValueFactoryFactory.getValueFactory(), TYPE_STORE_SUPPLIER)) {
+			IValue result = in.read();
+			return result instanceof ISet ? (ISet) result : null;
+		}
+		catch (IOException e) {
+			Activator.log("could not read stored messages of " + file + ", building it again", e);
+			stored.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the messages of the builders for the file, replacing the messages stored for its earlier contents.
+	 */
+	public static void write(IFile file, String key, ISet messages) {
+		File stored = locate(file, key);
+
+		if (stored == null) {
+			return;
+		}
+
+		File folder = stored.getParentFile();
+
+		if (!folder.exists() && !folder.mkdirs()) {
+			return;
+		}
+
+		deleteOtherVersions(folder, stored, file.getName());
+
+		try {
+			File tmp = File.createTempFile(stored.getName(), ".tmp", folder);
+
+			try {
+				try (IValueOutputStream out = new IValueOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)), ValueFactoryFactory.getValueFactory(), CompressionRate.Normal)) {
+					out.write(messages);
+				}
+
+				// a parallel build of the same file either sees all messages or none at all
+				Files.move(tmp.toPath(), stored.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			finally {
+				tmp.delete();
+			}
+		}
+		catch (IOException e) {
+			Activator.log("could not store messages of " + file, e);
+		}
+	}
+
+	/**
+	 * Makes the workspace see the messages which were stored for the given files.
+	 */
+	public static void refresh(Collection<IFile> files, IProgressMonitor monitor) {
+		Set<IFolder> folders = new LinkedHashSet<IFolder>();
+
+		for (IFile file : files) {
+			IPath parent = file.getProjectRelativePath().removeLastSegments(1);
+			IFolder cache = file.getProject().getFolder(ProjectConfig.BIN_FOLDER).getFolder(FOLDER);
+			folders.add(parent.isEmpty() ? cache : cache.getFolder(parent));
+		}
+
+		for (IFolder folder : folders) {
+			try {
+				folder.refreshLocal(IResource.DEPTH_ONE, monitor);
+			}
+			catch (CoreException e) {
+				Activator.log("could not refresh " + folder, e);
+			}
+		}
+	}
+
+	private static void deleteOtherVersions(File folder, File current, String fileName) {
+		String prefix = fileName + ".";
+		File[] versions = folder.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(EXTENSION) && name.indexOf('.', prefix.length()) == name.length() - EXTENSION.length());
+
+		if (versions != null) {
+			for (File version : versions) {
+				if (!version.equals(current)) {
+					version.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the file in which the messages for the given key are stored, or null if the file has no bin folder
+	 */
+	private static File locate(IFile file, String key) {
+		if (key == null || !file.getProject().isOpen()) {
+			return null;
+		}
+
+		IPath bin = file.getProject().getFolder(ProjectConfig.BIN_FOLDER).getLocation();
+
+		if (bin == null) {
+			return null;
+		}
+
+		return new File(bin.append(FOLDER).append(file.getProjectRelativePath()).toOSString() + "." + key + EXTENSION);
+	}
+}
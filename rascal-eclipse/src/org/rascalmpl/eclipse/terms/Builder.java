@@ -12,18 +12,21 @@
  *******************************************************************************/
 package org.rascalmpl.eclipse.terms;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.Collections;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.IRascalResources;
 import org.rascalmpl.eclipse.editor.MessagesToMarkers;
 import org.rascalmpl.eclipse.nature.RascalMonitor;
 import org.rascalmpl.eclipse.nature.WarningsToErrorLog;
+import org.rascalmpl.eclipse.preferences.RascalPreferences;
 import org.rascalmpl.interpreter.IEvaluatorContext;
 import org.rascalmpl.interpreter.control_exceptions.MatchFailed;
 import org.rascalmpl.interpreter.control_exceptions.Throw;
@@ -48,8 +51,6 @@ import io.usethesource.impulse.builder.BuilderBase;
 import io.usethesource.impulse.builder.MarkerCreator;
 import io.usethesource.impulse.builder.MarkerCreatorWithBatching;
 import io.usethesource.impulse.language.Language;
-import io.usethesource.impulse.model.ISourceProject;
-import io.usethesource.impulse.model.ModelFactory;
 import io.usethesource.impulse.parser.IMessageHandler;
 import io.usethesource.impulse.runtime.PluginBase;
 
@@ -80,30 +81,78 @@ public class Builder extends BuilderBase {
 		return resource.getFullPath().lastSegment().equals("bin");
 	}
 
+	/**
+	 * Receives the outcome of building a single file: the messages of its builders, or an error which stopped them.
+	 */
+	interface Messages {
+		void report(ISourceLocation loc, ISet messages) throws CoreException;
+		
+		void error(String message, ISourceLocation at);
+	}
+
 	@Override
 	protected void compile(IFile file, IProgressMonitor monitor) {
-		InputStream contents = null;
-		String input = null;
+		if (RascalPreferences.getTermBuilderThreads() > 1) {
+			ParallelBuilder.getInstance().enqueue(file);
+			return;
+		}
+		
 		IMessageHandler handler = new MarkerCreator(file, MARKER_ID);
 		Language lang = registry.getLanguage(file.getFileExtension());
 		ISet builders = registry.getBuilders(lang);
-		IEvaluatorContext evalForErrors = null;
-		if (builders == null || builders.size() == 0) {
+		ICallableValue parser = registry.getParser(lang);
+		if (builders == null || builders.size() == 0 || parser == null) {
 			return;
 		}
 		
+		build(file, lang, parser, builders, monitor, new Messages() {
+			@Override
+			public void report(ISourceLocation loc, ISet messages) throws CoreException {
+				messagesToMarkers.process(loc, messages, handler);
+				handler.endMessages();
+				
+				// TODO: this MarkerCreatorWithBatching should just implement endMessages() correctly.
+				if (handler instanceof MarkerCreatorWithBatching) {
+					((MarkerCreatorWithBatching) handler).flush(monitor);
+				}
+			}
+			
+			@Override
+			public void error(String message, ISourceLocation at) {
+				handler.handleSimpleMessage(message, at.getOffset(), at.getOffset() + at.getLength(), at.getBeginColumn(), at.getEndColumn(), at.getBeginLine(), at.getEndLine());
+			}
+		});
+		
+		BuildCache.refresh(Collections.singleton(file), monitor);
+	}
+
+	/**
+	 * Parses the file and runs the builders on it, or replays their messages from the {@link BuildCache}. Both the
+	 * sequential builder and the {@link ParallelBuilder} build files with this, with the registered parser and
+	 * builders of the language or with those of a replica.
+	 */
+	static void build(IFile file, Language lang, ICallableValue parser, ISet builders, IProgressMonitor monitor, Messages sink) {
+		IEvaluatorContext eval = parser.getEval();
+		IValueFactory VF = eval.getValueFactory();
+		ISourceLocation loc = ProjectURIResolver.constructProjectURI(file.getProject(), file.getProjectRelativePath());
+		String input = null;
+		
 		try {
-			ICallableValue parser = registry.getParser(lang);
-			evalForErrors = parser.getEval();
 			RascalMonitor rmonitor = new RascalMonitor(monitor, warnings);
-			IValueFactory VF = parser.getEval().getValueFactory();
-			ISourceProject project = ModelFactory.open(file.getProject());
-			ISourceLocation loc = ProjectURIResolver.constructProjectURI(project.getRawProject(), file.getProjectRelativePath());
-			contents = file.getContents();
-			input = new String(InputConverter.toChar(contents, Charset.forName(file.getCharset())));
+			byte[] contents = BuildCache.contents(file);
+			String key = BuildCache.key(contents, registry.getVersion(lang.getName()), builders);
+			ISet cached = BuildCache.read(file, key);
+			
+			if (cached != null) {
+				sink.report(loc, cached);
+				return;
+			}
+			
+			input = new String(InputConverter.toChar(new ByteArrayInputStream(contents), Charset.forName(file.getCharset())));
+			boolean complete = true;
 
 			IConstructor tree;
-			synchronized (parser.getEval()) {
+			synchronized (eval) {
 				tree = (IConstructor) parser.call(rmonitor, new Type[] {TF.stringType(), TF.sourceLocationType()}, new IValue[] { VF.string(input), loc}, null).getValue();
 			}
 
@@ -125,6 +174,7 @@ public class Builder extends BuilderBase {
 						builder.getEval().getStdErr().write("builder function can not handle tree of type:" + type + "\n");
 						builder.getEval().getStdErr().write(e.toString() + "\n");
 						builder.getEval().getStdErr().flush();
+						complete = false;
 					}
 				}
 				
@@ -133,71 +183,46 @@ public class Builder extends BuilderBase {
 				}
 			}
 			
-			messagesToMarkers.process(loc, messages.done(), handler);
-			handler.endMessages();
+			ISet built = messages.done();
 			
-			// TODO: this MarkerCreatorWithBatching should just implement endMessages() correctly.
-			if (handler instanceof MarkerCreatorWithBatching) {
-				((MarkerCreatorWithBatching) handler).flush(monitor);
+			if (complete) {
+				BuildCache.write(file, key, built);
 			}
+			
+			sink.report(loc, built);
 		}
 		catch (ParseError pe){
 			int offset = pe.getOffset();
-			if(offset == input.length()) --offset;
+			if(input != null && offset == input.length() && offset > 0) --offset;
 			
-			handler.handleSimpleMessage("parse error", offset, offset + pe.getLength(), pe.getBeginColumn(), pe.getEndColumn(), pe.getBeginLine() + 1, pe.getEndLine() + 1);
+			sink.error("parse error", VF.sourceLocation(loc, offset, pe.getLength(), pe.getBeginLine() + 1, pe.getEndLine() + 1, pe.getBeginColumn(), pe.getEndColumn()));
 		} 
 		catch (Throw e) {
 			IValue exc = e.getException();
 			
-			if (exc.getType() == RuntimeExceptionFactory.Exception) {
-				if (((IConstructor) exc).getConstructorType() == RuntimeExceptionFactory.ParseError) {
-					ISourceLocation loc = (ISourceLocation) ((IConstructor) e.getException()).get(0);
-					handler.handleSimpleMessage("builder error: " + loc, loc.getOffset(), loc.getOffset() + loc.getLength(), loc.getBeginColumn(), loc.getEndColumn(), loc.getBeginLine(), loc.getEndLine());
-				}
-				else if (evalForErrors != null) {
-				    ReadEvalPrintDialogMessages.throwMessage(evalForErrors.getStdErr(), e, new StandardTextWriter());
-				    evalForErrors.getStdErr().println();
-					evalForErrors.getStdErr().flush();
-				}
-				else {
-					Activator.getInstance().logException(e.getMessage(), e);
-				}
+			if (exc.getType() == RuntimeExceptionFactory.Exception && ((IConstructor) exc).getConstructorType() == RuntimeExceptionFactory.ParseError) {
+				ISourceLocation at = (ISourceLocation) ((IConstructor) exc).get(0);
+				sink.error("builder error: " + at, at);
 			}
 			else {
-				if (evalForErrors != null) {
-				    ReadEvalPrintDialogMessages.throwMessage(evalForErrors.getStdErr(), e, new StandardTextWriter());
-				    evalForErrors.getStdErr().println();
-					evalForErrors.getStdErr().flush();
-				}
-				else {
-					Activator.getInstance().logException(exc.toString(), e);
+				// also for values which are thrown which are not an Exception
+				synchronized (eval) {
+				    ReadEvalPrintDialogMessages.throwMessage(eval.getStdErr(), e, new StandardTextWriter());
+				    eval.getStdErr().println();
+					eval.getStdErr().flush();
 				}
 			}
 		}
 		catch (IOException e) {
-			String error = "could not read file in builder: " + file;
-			if (evalForErrors != null) {
-				evalForErrors.getStdErr().write(error + "\n");
-				evalForErrors.getStdErr().write(e.toString() + "\n");
-				evalForErrors.getStdErr().flush();
+			synchronized (eval) {
+				eval.getStdErr().write("could not read file in builder: " + file + "\n");
+				eval.getStdErr().write(e.toString() + "\n");
+				eval.getStdErr().flush();
 			}
-			else 
-				Activator.getInstance().logException("could not read file in builder: " + file, e);
-			return;
 		}
 		catch (Throwable e) {
 			Activator.getInstance().logException("exception in builder for: " + file, e);
 		}
-		finally {
-			if (contents != null) {
-				try {
-					contents.close();
-				} catch (IOException e) {
-					Activator.getInstance().logException("exception in builder for: " + file, e);
-				}
-			}
-		}
 	}
 
 	@Override
@@ -8,6 +8,7 @@ import org.eclipse.jface.text.DocumentRewriteSession;
 import org.eclipse.jface.text.DocumentRewriteSessionType;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.Region;
 import org.eclipse.ui.IEditorPart;
 import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.IWorkbenchWindow;
@@ -33,8 +34,34 @@ import io.usethesource.impulse.services.IEditorService;
  * does not reach a fixpoint.
  */
 public class EditorUpdater implements IEditorService {
+	private UniversalEditor editor;
+	private TermParseController annotated;
+	private final Runnable redraw = () -> new RedrawJob().schedule();
+	
 	public EditorUpdater() {
 	}
+	
+	/**
+	 * Recolors the editor after the annotations of the current tree came in, since those replace the
+	 * tree after the parse which the editor already drew.
+	 */
+	class RedrawJob extends UIJob {
+		public RedrawJob() {
+			super("redrawing annotations");
+			setSystem(true);
+		}
+		
+		@Override
+		public IStatus runInUIThread(IProgressMonitor monitor) {
+			IDocument doc = editor != null ? editor.getParseController().getDocument() : null;
+			
+			if (doc != null) {
+				editor.updateColoring(new Region(0, doc.getLength()));
+			}
+			
+			return Status.OK_STATUS;
+		}
+	}
 
 	class Job extends UIJob {
 
@@ -104,6 +131,15 @@ public class EditorUpdater implements IEditorService {
 
 	@Override
 	public void update(IParseController parseController, IProgressMonitor monitor) {
+		if (parseController instanceof TermParseController && parseController != annotated) {
+			if (annotated != null) {
+				annotated.removeAnnotationListener(redraw);
+			}
+			
+			annotated = (TermParseController) parseController;
+			annotated.addAnnotationListener(redraw);
+		}
+		
 		try {
 			Job job = new Job(parseController);
 			job.schedule();
@@ -124,9 +160,8 @@ public class EditorUpdater implements IEditorService {
 
 
 	@Override
-	public void setEditor(UniversalEditor arg0) {
-		// TODO Auto-generated method stub
-		
+	public void setEditor(UniversalEditor editor) {
+		this.editor = editor;
 	}
 
 }
@@ -0,0 +1,198 @@
+package org.rascalmpl.eclipse.terms;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.eclipse.IRascalResources;
+import org.rascalmpl.eclipse.builder.MarkerSink;
+import org.rascalmpl.eclipse.editor.MessagesToMarkers;
+import org.rascalmpl.eclipse.preferences.RascalPreferences;
+import org.rascalmpl.eclipse.terms.TermLanguageRegistry.Replica;
+
+import io.usethesource.impulse.language.Language;
+import io.usethesource.vallang.ISet;
+import io.usethesource.vallang.ISourceLocation;
+
+/**
+ * Runs the builders of term languages on several files at the same time, when the term builder is configured to
+ * use more than one thread. Every file is parsed and built in an evaluator replica of its language which no other
+ * file uses at that moment, so files of the same language do not wait for each other on a single interpreter.
+ *
+ * The {@link Builder} hands its files to this job and returns; the messages of all files of a batch are merged and
+ * turned into markers in a single workspace operation when the batch is done.
+ */
+public class ParallelBuilder extends Job {
+	private final TermLanguageRegistry registry = TermLanguageRegistry.getInstance();
+	private final Set<IFile> queue = new LinkedHashSet<IFile>();
+
+	private static class InstanceHolder {
+		static final ParallelBuilder sInstance = new ParallelBuilder();
+	}
+
+	public static ParallelBuilder getInstance() {
+		return InstanceHolder.sInstance;
+	}
+
+	private ParallelBuilder() {
+		super("Building term language files");
+	}
+
+	/**
+	 * Builds the file in the background, together with the other files which are queued at the same time.
+	 */
+	public void enqueue(IFile file) {
+		synchronized (queue) {
+			queue.add(file);
+		}
+
+		schedule();
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		List<IFile> batch;
+
+		while (!(batch = takeBatch()).isEmpty()) {
+			if (monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
+			}
+
+			build(batch, monitor);
+		}
+
+		return Status.OK_STATUS;
+	}
+
+	private List<IFile> takeBatch() {
+		synchronized (queue) {
+			List<IFile> batch = new ArrayList<IFile>(queue);
+			queue.clear();
+			return batch;
+		}
+	}
+
+	private void build(List<IFile> batch, IProgressMonitor monitor) {
+		int threads = Math.min(RascalPreferences.getTermBuilderThreads(), batch.size());
+		MarkerSink sink = new MarkerSink(IRascalResources.ID_TERM_MARKER, new MessagesToMarkers());
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "Term language builder");
+			t.setDaemon(true);
+			return t;
+		});
+		CompletionService<Void> done = new ExecutorCompletionService<Void>(executor);
+		AtomicBoolean canceled = new AtomicBoolean(false);
+
+		monitor.beginTask("Building term language files", batch.size());
+
+		try {
+			for (IFile file : batch) {
+				done.submit(() -> build(file, threads, sink, canceled), null);
+			}
+
+			// only this thread reports progress to the monitor of the job, the builders get a monitor of their own
+			for (int finished = 0; finished < batch.size(); ) {
+				Future<Void> future = done.poll(100, TimeUnit.MILLISECONDS);
+
+				if (monitor.isCanceled()) {
+					canceled.set(true);
+				}
+
+				if (future != null) {
+					future.get();
+					monitor.worked(1);
+					finished++;
+				}
+			}
+
+			sink.flush(monitor);
+			BuildCache.refresh(batch, monitor);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (Throwable e) {
+			Activator.log("exception in parallel term language builder", e);
+		}
+		finally {
+			executor.shutdownNow();
+			monitor.done();
+		}
+	}
+
+	private void build(IFile file, int threads, MarkerSink sink, AtomicBoolean canceled) {
+		Language lang = registry.getLanguage(file.getFileExtension());
+
+		if (canceled.get() || lang == null || !file.exists()) {
+			return;
+		}
+
+		Replica replica;
+
+		try {
+			replica = registry.getReplicas().acquire(lang.getName(), threads);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		if (replica == null) {
+			return;
+		}
+
+		try {
+			ISet builders = replica.getBuilders();
+
+			if (builders.size() == 0) {
+				return;
+			}
+
+			synchronized (sink) {
+				sink.expect(file);
+			}
+
+			IProgressMonitor monitor = new NullProgressMonitor() {
+				@Override
+				public boolean isCanceled() {
+					return canceled.get();
+				}
+			};
+
+			Builder.build(file, lang, replica.getParser(), builders, monitor, new Builder.Messages() {
+				@Override
+				public void report(ISourceLocation loc, ISet messages) {
+					synchronized (sink) {
+						sink.add(file, loc, messages);
+					}
+				}
+
+				@Override
+				public void error(String message, ISourceLocation at) {
+					synchronized (sink) {
+						sink.add(file, message, IMarker.SEVERITY_ERROR, at);
+					}
+				}
+			});
+		}
+		finally {
+			registry.getReplicas().release(replica);
+		}
+	}
+}
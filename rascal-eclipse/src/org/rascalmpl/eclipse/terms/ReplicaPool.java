@@ -0,0 +1,91 @@
+package org.rascalmpl.eclipse.terms;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.rascalmpl.eclipse.terms.TermLanguageRegistry.Replica;
+
+/**
+ * Leases the evaluator replicas of term languages to threads which want to run the parser or builders of a
+ * language without waiting for other threads that use the same language. The registered language itself is the first
+ * replica; more are created on demand, up to a maximum, by replaying the registration of the language.
+ *
+ * The replicas of a language are dropped when the language is registered again or cleared; new leases then get
+ * replicas of the new registration.
+ */
+public class ReplicaPool {
+	private final TermLanguageRegistry registry;
+	private final Map<String, LanguagePool> pools = new ConcurrentHashMap<String, LanguagePool>();
+
+	private static class LanguagePool {
+		final BlockingQueue<Replica> idle = new LinkedBlockingQueue<Replica>();
+		final AtomicInteger created = new AtomicInteger(0);
+		volatile boolean replicable = true;
+	}
+
+	ReplicaPool(TermLanguageRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Waits for an idle replica of the language if there are already as many as allowed.
+	 *
+	 * @return a replica for the exclusive use of the caller until it is released, or null if the language is not
+	 *         registered
+	 */
+	public Replica acquire(String lang, int max) throws InterruptedException {
+		LanguagePool pool = pools.computeIfAbsent(lang, l -> new LanguagePool());
+		Replica replica = pool.idle.poll();
+
+		if (replica != null) {
+			return replica;
+		}
+
+		int created = pool.created.get();
+		int limit = pool.replicable ? Math.max(1, max) : 1;
+
+		if (created < limit && pool.created.compareAndSet(created, created + 1)) {
+			replica = created == 0 ? registry.getRegistered(lang) : registry.createReplica(lang);
+
+			if (replica != null) {
+				replica.owner = pool;
+				return replica;
+			}
+
+			pool.created.decrementAndGet();
+
+			if (created == 0) {
+				return null;
+			}
+
+			// this language was registered from the console, for example, so there is only the registered one
+			pool.replicable = false;
+		}
+
+		while ((replica = pool.idle.poll(100, TimeUnit.MILLISECONDS)) == null) {
+			if (pool.created.get() == 0) {
+				// the language was cleared before its registered replica could be created
+				return null;
+			}
+		}
+
+		return replica;
+	}
+
+	public void release(Replica replica) {
+		// a replica of a pool which was dropped in the mean time still goes back, to the threads waiting on that pool
+		((LanguagePool) replica.owner).idle.add(replica);
+	}
+
+	public void invalidate(String lang) {
+		pools.remove(lang);
+	}
+
+	public void invalidateAll() {
+		pools.clear();
+	}
+}
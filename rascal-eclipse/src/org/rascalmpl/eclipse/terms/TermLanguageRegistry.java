@@ -15,11 +15,16 @@ package org.rascalmpl.eclipse.terms;
 
 import static org.rascalmpl.eclipse.IRascalResources.ID_RASCAL_ECLIPSE_PLUGIN;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.eclipse.editor.ParserCache;
 import org.rascalmpl.interpreter.IEvaluatorContext;
 import org.rascalmpl.interpreter.result.ICallableValue;
 import org.rascalmpl.values.ValueFactoryFactory;
@@ -34,17 +39,104 @@ import io.usethesource.vallang.ISet;
 import io.usethesource.vallang.ISetWriter;
 import io.usethesource.vallang.ISourceLocation;
 import io.usethesource.vallang.IValue;
-import io.usethesource.vallang.IValueFactory;
 import io.usethesource.vallang.type.TypeFactory;
 
+/**
+ * Keeps the term languages which are registered by Rascal plugins, and their contributions to the IDE.
+ *
+ * The registry is read by parse jobs, builders and the UI at the same time. All lookups go to an immutable snapshot
+ * of the registry, without locking, and every change publishes a new snapshot with a higher version; all
+ * registrations of a single run of a plugin are published together, so a reader never sees a language without
+ * the contributions of its plugin.
+ */
 public class TermLanguageRegistry {
-	private final Map<String, Language> languages = new HashMap<String,Language>();
-	private final Map<String, IEvaluatorContext> evals = new HashMap<String, IEvaluatorContext>();
-	private final Map<String, ICallableValue> parsers = new HashMap<String,ICallableValue>();
-	private final Map<String, ICallableValue> analyses = new HashMap<String,ICallableValue>();
-	private final Map<String, ICallableValue> outliners = new HashMap<String,ICallableValue>();
-	private final Map<String, ISet> contributions = new HashMap<String, ISet>();
+	private volatile Snapshot snapshot = new Snapshot();
+	private final ThreadLocal<Batch> batch = new ThreadLocal<Batch>();
 	private final Map<String, ISet> nonRascalContributions = new ConcurrentHashMap<String, ISet>();
+	private final ThreadLocal<Runnable> origin = new ThreadLocal<Runnable>();
+	private final ThreadLocal<String> stamp = new ThreadLocal<String>();
+	private final ThreadLocal<Replica> capture = new ThreadLocal<Replica>();
+	private final ReplicaPool replicas = new ReplicaPool(this);
+	/** the versions handed out for languages which were not registered with a version, until they are registered */
+	private final Map<String, String> unknownVersions = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * The parser and contributions of a language, as registered by a run of the plugin of the language in an
+	 * evaluator of its own. Replicas can be used at the same time as the registered language.
+	 */
+	public static class Replica {
+		private final String language;
+		private ICallableValue parser;
+		private ISet contributions;
+		Object owner;
+
+		private Replica(String language, ICallableValue parser, ISet contributions) {
+			this.language = language;
+			this.parser = parser;
+			this.contributions = contributions;
+		}
+
+		public String getLanguage() {
+			return language;
+		}
+
+		public ICallableValue getParser() {
+			return parser;
+		}
+
+		public ISet getBuilders() {
+			return filter(contributions, "builder");
+		}
+	}
+
+	/**
+	 * The registered languages at one moment. The maps of a snapshot are only changed before it is published.
+	 */
+	private static class Snapshot {
+		final long version;
+		final Map<String, Language> languages;
+		final Map<String, IEvaluatorContext> evals;
+		final Map<String, ICallableValue> parsers;
+		final Map<String, ICallableValue> analyses;
+		final Map<String, ICallableValue> outliners;
+		final Map<String, ISet> contributions;
+		/** how to run the registration of a language again, in a fresh evaluator */
+		final Map<String, Runnable> origins;
+		/** identifies the code which registered a language, such that results of that code can be cached across sessions */
+		final Map<String, String> versions;
+
+		Snapshot() {
+			this.version = 0;
+			this.languages = new HashMap<String, Language>();
+			this.evals = new HashMap<String, IEvaluatorContext>();
+			this.parsers = new HashMap<String, ICallableValue>();
+			this.analyses = new HashMap<String, ICallableValue>();
+			this.outliners = new HashMap<String, ICallableValue>();
+			this.contributions = new HashMap<String, ISet>();
+			this.origins = new HashMap<String, Runnable>();
+			this.versions = new HashMap<String, String>();
+		}
+
+		Snapshot(Snapshot previous) {
+			this.version = previous.version + 1;
+			this.languages = new HashMap<String, Language>(previous.languages);
+			this.evals = new HashMap<String, IEvaluatorContext>(previous.evals);
+			this.parsers = new HashMap<String, ICallableValue>(previous.parsers);
+			this.analyses = new HashMap<String, ICallableValue>(previous.analyses);
+			this.outliners = new HashMap<String, ICallableValue>(previous.outliners);
+			this.contributions = new HashMap<String, ISet>(previous.contributions);
+			this.origins = new HashMap<String, Runnable>(previous.origins);
+			this.versions = new HashMap<String, String>(previous.versions);
+		}
+	}
+
+	/**
+	 * The changes made by a run of a plugin, and what to do after they are published.
+	 */
+	private static class Batch {
+		final List<Consumer<Snapshot>> changes = new ArrayList<Consumer<Snapshot>>();
+		final List<Runnable> effects = new ArrayList<Runnable>();
+	}
 
 	static private class InstanceKeeper {
 		public static TermLanguageRegistry sInstance = new TermLanguageRegistry();
@@ -56,62 +148,274 @@ public class TermLanguageRegistry {
 	
 	private TermLanguageRegistry() { }
 	
+	/**
+	 * @return a number which increases with every change to the registered languages
+	 */
+	public long getRegistryVersion() {
+		return snapshot.version;
+	}
+	
+	/**
+	 * Publishes a new snapshot with the change, or adds the change to the batch of the current registration.
+	 * 
+	 * @param effect what to do after the change is published
+	 */
+	private void publish(Consumer<Snapshot> change, Runnable effect) {
+		Batch current = batch.get();
+		
+		if (current != null) {
+			current.changes.add(change);
+			current.effects.add(effect);
+			return;
+		}
+		
+		Batch single = new Batch();
+		single.changes.add(change);
+		single.effects.add(effect);
+		commit(single);
+	}
+	
+	private void commit(Batch changes) {
+		if (changes.changes.isEmpty()) {
+			return;
+		}
+		
+		synchronized (this) {
+			Snapshot next = new Snapshot(snapshot);
+			
+			for (Consumer<Snapshot> change : changes.changes) {
+				change.accept(next);
+			}
+			
+			snapshot = next;
+		}
+		
+		for (Runnable effect : changes.effects) {
+			effect.run();
+		}
+	}
+	
 	public void clear() {
-		languages.clear();
-		evals.clear();
-		parsers.clear();
-		analyses.clear();
-		outliners.clear();
-		contributions.clear();
+		if (capture.get() != null) {
+			// replicating a plugin must not undo the registration of the language it replicates
+			return;
+		}
+		publish(s -> {
+			s.languages.clear();
+			s.evals.clear();
+			s.parsers.clear();
+			s.analyses.clear();
+			s.outliners.clear();
+			s.contributions.clear();
+			s.origins.clear();
+			s.versions.clear();
+		}, () -> {
+			unknownVersions.clear();
+			replicas.invalidateAll();
+		});
 	}
 	
 	public void clearNonRascal() {
+		if (capture.get() != null) {
+			return;
+		}
 		nonRascalContributions.clear();
 	}
 	
 	public void clear(String value) {
+		if (capture.get() != null) {
+			return;
+		}
 		Language lang = LanguageRegistry.findLanguage(value);
 		if (lang != null) {
 			LanguageRegistry.deregisterLanguage(lang);
 		}
-		languages.remove(value);
-		evals.remove(value);
-		parsers.remove(value);
-		analyses.remove(value);
-		outliners.remove(value);
-		contributions.remove(value);
+		publish(s -> {
+			s.languages.remove(value);
+			s.evals.remove(value);
+			s.parsers.remove(value);
+			s.analyses.remove(value);
+			s.outliners.remove(value);
+			s.contributions.remove(value);
+			s.origins.remove(value);
+			s.versions.remove(value);
+		}, () -> {
+			unknownVersions.remove(value);
+			replicas.invalidate(value);
+		});
 	}
 	
 	public void clearNonRascal(String value) {
+		if (capture.get() != null) {
+			return;
+		}
 		nonRascalContributions.remove(value);
 	}
 	
+	/**
+	 * Runs the registration of languages, for example the main function of a plugin, such that the languages it
+	 * registers can be replicated later by running the replay, which does the same in a fresh evaluator. What the
+	 * registration registers is published at once, when it is done.
+	 * 
+	 * @param version identifies the version of the code of the plugin, or is null if that is unknown
+	 */
+	public void runRegistration(String version, Runnable registration, Runnable replay) {
+		Batch outer = batch.get();
+		Batch changes = outer != null ? outer : new Batch();
+		origin.set(replay);
+		stamp.set(version);
+		batch.set(changes);
+		
+		try {
+			registration.run();
+		}
+		finally {
+			origin.remove();
+			stamp.remove();
+			
+			if (outer == null) {
+				batch.remove();
+				commit(changes);
+			}
+		}
+	}
+	
+	/**
+	 * @return a string which changes whenever the language is registered by a different version of its plugin, and
+	 *         is the same in every session in which the same version registers it
+	 */
+	public String getVersion(String lang) {
+		String version = snapshot.versions.get(lang);
+		return version != null ? version : unknownVersions.computeIfAbsent(lang, l -> UUID.randomUUID().toString());
+	}
+	
+	private String nextVersion(String lang) {
+		String version = stamp.get();
+		// without a known version of its plugin, the language is different from every earlier registration
+		return version != null ? lang + "@" + version : UUID.randomUUID().toString();
+	}
+	
 	public void registerLanguage(String name, String extension, ICallableValue parser, IEvaluatorContext ctx) {
+		Replica replica = capture.get();
+		
+		if (replica != null) {
+			if (replica.language.equals(name)) {
+				replica.parser = parser;
+			}
+			return;
+		}
+		
 		Language l = new Language(name, "", "demo editor for " + name, "Terms", "icons/rascal3D_2-32px.gif", "http://www.rascal-mpl.org",ID_RASCAL_ECLIPSE_PLUGIN,extension,"",null);
-		languages.put(extension, l);
-		evals.put(name, ctx);
-		parsers.put(name, parser);
-		LanguageRegistry.registerLanguage(l);
+		Runnable replay = origin.get();
+		String version = nextVersion(name);
+		
+		publish(s -> {
+			s.languages.put(extension, l);
+			s.evals.put(name, ctx);
+			s.parsers.put(name, parser);
+			
+			if (replay != null) {
+				s.origins.put(name, replay);
+			}
+			else {
+				s.origins.remove(name);
+			}
+			
+			s.versions.put(name, version);
+		}, () -> {
+			unknownVersions.remove(name);
+			LanguageRegistry.registerLanguage(l);
+			ParserCache.warmUp(name, parser);
+			replicas.invalidate(name);
+		});
 	}
 
 	public void registerAnnotator(String lang, ICallableValue function) {
-		analyses.put(lang, function);
+		if (capture.get() != null) {
+			return;
+		}
+		publish(s -> s.analyses.put(lang, function), () -> { });
 	}
 	
 	public void registerOutliner(String lang, ICallableValue builder) {
-		outliners.put(lang, builder);
+		if (capture.get() != null) {
+			return;
+		}
+		publish(s -> s.outliners.put(lang, builder), () -> { });
 	}
 	
 	public void registerContributions(String lang, ISet set) {
-		contributions.put(lang, set);
+		Replica replica = capture.get();
+		
+		if (replica != null) {
+			if (replica.language.equals(lang)) {
+				replica.contributions = set;
+			}
+			return;
+		}
+		
+		String version = nextVersion(lang);
+		
+		publish(s -> {
+			s.contributions.put(lang, set);
+			s.versions.put(lang, version);
+		}, () -> {
+			unknownVersions.remove(lang);
+			replicas.invalidate(lang);
+		});
 	}
 	
 	public void registerNonRascalContributions(String lang, ISet set) {
+		if (capture.get() != null) {
+			return;
+		}
 		nonRascalContributions.put(lang, set);
 	}
+	
+	public ReplicaPool getReplicas() {
+		return replicas;
+	}
+	
+	/**
+	 * @return the language as it is registered, to be used as the first replica of the language
+	 */
+	Replica getRegistered(String lang) {
+		Snapshot s = snapshot;
+		ICallableValue parser = s.parsers.get(lang);
+		return parser != null ? new Replica(lang, parser, getContributions(s, lang)) : null;
+	}
+	
+	/**
+	 * Replays the registration of the language in a fresh evaluator, capturing what it registers for the language
+	 * instead of registering it.
+	 * 
+	 * @return the replica, or null if the language was not registered in a way which can be replayed
+	 */
+	Replica createReplica(String lang) {
+		Runnable replay = snapshot.origins.get(lang);
+		
+		if (replay == null) {
+			return null;
+		}
+		
+		Replica replica = new Replica(lang, null, ValueFactoryFactory.getValueFactory().set());
+		capture.set(replica);
+		
+		try {
+			replay.run();
+		}
+		catch (Throwable e) {
+			Activator.log("could not replicate the " + lang + " language", e);
+		}
+		finally {
+			capture.remove();
+		}
+		
+		return replica.parser != null ? replica : null;
+	}
 
 	public Language getLanguage(String fileExtension) {
-		return languages.get(fileExtension);
+		return snapshot.languages.get(fileExtension);
 	}
 	
 	public Language getLanguage(ISourceLocation loc) {
@@ -139,24 +443,29 @@ public class TermLanguageRegistry {
 	}
 	
 	private IEvaluatorContext getEvaluator(String lang) {
-		return evals.get(lang);
+		return snapshot.evals.get(lang);
 	}
 	
 	public ICallableValue getParser(Language lang) {
 		if (lang == null) {
 			return null;
 		}
-		return  parsers.get(lang.getName());
+		return getParser(lang.getName());
+	}
+	
+	public ICallableValue getParser(String lang) {
+		return snapshot.parsers.get(lang);
 	}
 	
 	public ICallableValue getOutliner(Language lang) {
-		ICallableValue outliner = outliners.get(lang.getName());
+		Snapshot s = snapshot;
+		ICallableValue outliner = s.outliners.get(lang.getName());
 		
 		if (outliner != null) {
 			return outliner;
 		}
 		
-		ISet outliners = getContributions(lang, "outliner");
+		ISet outliners = filter(getContributions(s, lang.getName()), "outliner");
 
 		if (outliners.size() > 1) {
 			Activator.getInstance().logException("ignoring multiple outliners! for " + lang, new UnsupportedOperationException());
@@ -183,8 +492,12 @@ public class TermLanguageRegistry {
 	}
 	
 	private ISet getContributions(String lang) {
-		if (contributions.containsKey(lang))
-			return contributions.get(lang);
+		return getContributions(snapshot, lang);
+	}
+	
+	private static ISet getContributions(Snapshot s, String lang) {
+		if (s.contributions.containsKey(lang))
+			return s.contributions.get(lang);
 		else
 			return ValueFactoryFactory.getValueFactory().set(TypeFactory.getInstance().voidType());
 	}
@@ -198,10 +511,12 @@ public class TermLanguageRegistry {
 	}
 	
 	private ISet getContributions(String lang, String cons) {
-		IValueFactory vf = getEvaluator(lang).getValueFactory();
-			
-		ISetWriter result = vf.setWriter(); 
-		for (IValue contribution: getContributions(lang)) {
+		return filter(getContributions(lang), cons);
+	}
+	
+	private static ISet filter(ISet contributions, String cons) {
+		ISetWriter result = ValueFactoryFactory.getValueFactory().setWriter(); 
+		for (IValue contribution: contributions) {
 			IConstructor tree = (IConstructor) contribution;
 			if (tree.getName().equals(cons)) {
 				result.insert(tree);
@@ -217,13 +532,14 @@ public class TermLanguageRegistry {
 	
 	
 	public ICallableValue getAnnotator(Language lang) {
-		ICallableValue annotator = analyses.get(lang.getName());
+		Snapshot s = snapshot;
+		ICallableValue annotator = s.analyses.get(lang.getName());
 		
 		if (annotator != null) {
 			return annotator;
 		}
 		
-		ISet annotators = getContributions(lang, "annotator");
+		ISet annotators = filter(getContributions(s, lang.getName()), "annotator");
 
 		if (annotators.size() > 1) {
 			Activator.getInstance().logException("ignoring multiple annotator! for " + lang, new UnsupportedOperationException());
@@ -14,7 +14,10 @@
 *******************************************************************************/
 package org.rascalmpl.eclipse.terms;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IPath;
@@ -26,6 +29,7 @@ import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
 import org.rascalmpl.eclipse.Activator;
 import org.rascalmpl.eclipse.editor.NodeLocator;
+import org.rascalmpl.eclipse.editor.TokenIndex;
 import org.rascalmpl.eclipse.editor.TokenIterator;
 import org.rascalmpl.eclipse.nature.IWarningHandler;
 import org.rascalmpl.eclipse.nature.RascalMonitor;
@@ -61,6 +65,12 @@ public class TermParseController implements IParseController {
 	private Language language;
 	private IDocument document;
 	private ParseJob job;
+	private AnnotateJob annotation;
+	private IMessageHandler handler;
+	private TokenIndex tokens;
+	private IConstructor tokenTree;
+	private final List<Runnable> annotationListeners = new CopyOnWriteArrayList<>();
+	private final NodeLocator locator = new NodeLocator();
 	private final static IValueFactory VF = ValueFactoryFactory.getValueFactory(); 
 	private final static AnnotatorExecutor executor = new AnnotatorExecutor();
 	
@@ -72,6 +82,18 @@ public class TermParseController implements IParseController {
 		this.parseTree = parseTree;
 	}
 	
+	/**
+	 * The listener runs when the annotations of a tree come in after the tree itself was published, on the thread
+	 * of the annotator.
+	 */
+	public void addAnnotationListener(Runnable listener) {
+		annotationListeners.add(listener);
+	}
+	
+	public void removeAnnotationListener(Runnable listener) {
+		annotationListeners.remove(listener);
+	}
+	
 	public IAnnotationTypeInfo getAnnotationTypeInfo() {
 		return null;
 	}
@@ -89,7 +111,7 @@ public class TermParseController implements IParseController {
 	}
 
 	public ISourcePositionLocator getSourcePositionLocator() {
-		return new NodeLocator();
+		return locator;
 	}
 
 	
@@ -99,7 +121,26 @@ public class TermParseController implements IParseController {
 	}
 
 	public Iterator<Object> getTokenIterator(IRegion region) {
-		return new TokenIterator(true, parseTree);
+		IConstructor tree = parseTree;
+		
+		if (tree == null) {
+			return Collections.emptyIterator();
+		}
+		
+		TokenIndex index = getTokenIndex(tree);
+		return region != null ? new TokenIterator(index, region.getOffset(), region.getLength()) : new TokenIterator(index);
+	}
+	
+	/**
+	 * The tokens are indexed once per parse tree, and not for every region which is highlighted.
+	 */
+	private synchronized TokenIndex getTokenIndex(IConstructor tree) {
+		if (tokenTree != tree) {
+			tokens = TokenIndex.build(false, tree);
+			tokenTree = tree;
+		}
+		
+		return tokens;
 	}
 
 	@Override
@@ -121,6 +162,7 @@ public class TermParseController implements IParseController {
 			location = FileURIResolver.constructFileURI(path.toOSString());
 		}
 
+		this.handler = handler;
 		this.job = new ParseJob(language.getName() + " parser", location, handler);
 	}
 	
@@ -169,14 +211,6 @@ public class TermParseController implements IParseController {
 					synchronized (parser.getEval()) {
 						parseTree = (ITree) parser.call(rm, new Type[] {TF.stringType(), TF.sourceLocationType()}, new IValue[] { VF.string(input), loc}, null).getValue();
 					}
-					ICallableValue annotator = getAnnotator();
-					if (parseTree != null && annotator != null) {
-						rm.event("annotating", 5);
-						ITree newTree = executor.annotate(annotator, parseTree, handler);
-						if (newTree != null) {
-							parseTree = newTree;
-						}
-					}
 				}
 			}
 			catch (ParseError pe){
@@ -214,16 +248,96 @@ public class TermParseController implements IParseController {
 			return Status.OK_STATUS;
 		}
 
-		private ICallableValue getAnnotator() {
-			return TermLanguageRegistry.getInstance().getAnnotator(language);
-		}
-		
-
 		private ICallableValue getParser() {
 			return TermLanguageRegistry.getInstance().getParser(language);
 		}
 	}
 	
+	/**
+	 * Runs the annotator on a parse tree in the background, after the tree itself has been published, such that
+	 * highlighting and folding do not wait for it. The annotated tree replaces the parse tree when it is done, unless
+	 * a newer tree came in; the annotation of an older tree is canceled as soon as a newer tree comes in.
+	 */
+	private class AnnotateJob extends Job {
+		private final ICallableValue annotator;
+		private final ITree tree;
+
+		public AnnotateJob(ICallableValue annotator, ITree tree) {
+			super(language.getName() + " annotator");
+			this.annotator = annotator;
+			this.tree = tree;
+			setSystem(true);
+			setPriority(Job.DECORATE);
+		}
+		
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			if (monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
+			}
+			
+			ITree annotated = executor.annotate(annotator, tree);
+			
+			if (annotated == null || monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
+			}
+			
+			if (publishAnnotations(tree, annotated)) {
+				for (Runnable listener : annotationListeners) {
+					listener.run();
+				}
+			}
+			
+			return Status.OK_STATUS;
+		}
+		
+		@Override
+		protected void canceling() {
+			executor.cancel(annotator, tree);
+		}
+	}
+	
+	/**
+	 * @return true if the annotated tree replaced the current tree
+	 */
+	private synchronized boolean publishAnnotations(ITree tree, ITree annotated) {
+		if (parseTree != tree) {
+			// a newer tree came in in the mean time
+			return false;
+		}
+		
+		parseTree = annotated;
+		
+		handler.clearMessages();
+		executor.report(annotated, handler);
+		handler.endMessages();
+		return true;
+	}
+	
+	private void annotate(ITree tree) {
+		if (annotation != null) {
+			annotation.cancel();
+			annotation = null;
+		}
+		
+		ICallableValue annotator = TermLanguageRegistry.getInstance().getAnnotator(language);
+		
+		if (tree == null || annotator == null) {
+			return;
+		}
+		
+		ITree annotated = executor.lookup(annotator, tree);
+		
+		if (annotated != null) {
+			parseTree = annotated;
+			executor.report(annotated, handler);
+			return;
+		}
+		
+		annotation = new AnnotateJob(annotator, tree);
+		annotation.schedule();
+	}
+	
 	public synchronized Object parse(String input, IProgressMonitor monitor){
 		parseTree = null;
 		try {
@@ -231,6 +345,8 @@ public class TermParseController implements IParseController {
 			job.schedule();
 			job.join();
 			parseTree = job.parseTree;
+			annotate(job.parseTree);
+			
 			return parseTree;
 		} catch (InterruptedException e) {
 			Activator.getInstance().logException("parser interrupted", e);
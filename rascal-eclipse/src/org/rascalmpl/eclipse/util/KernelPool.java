@@ -0,0 +1,287 @@
+package org.rascalmpl.eclipse.util;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.osgi.framework.Bundle;
+import org.rascalmpl.eclipse.Activator;
+import org.rascalmpl.library.experiments.Compiler.RVM.Interpreter.java2rascal.Java2Rascal;
+import org.rascalmpl.library.lang.rascal.boot.IKernel;
+import org.rascalmpl.library.util.PathConfig;
+import org.rascalmpl.uri.URIUtil;
+import org.rascalmpl.values.ValueFactoryFactory;
+
+import io.usethesource.impulse.runtime.RuntimePlugin;
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IValueFactory;
+
+/**
+ * A bounded pool of Rascal compiler kernels. Starting a kernel means loading the compiled compiler from
+ * lib/rascal.jar, which takes seconds, so instead of creating one for every thread that needs one we keep a
+ * few warm instances around and hand them out one client at a time. A kernel is not thread-safe, so a leased
+ * kernel must only be used by the thread that leased it and be returned (closed) after use.
+ *
+ * Kernels which have not been used for a while are discarded, down to a minimal number of warm instances.
+ */
+public class KernelPool {
+    private static final int MAX_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int MIN_SIZE = 1;
+    private static final long IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private final LinkedBlockingDeque<Idle> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final AtomicInteger leased = new AtomicInteger(0);
+    private final AtomicInteger created = new AtomicInteger(0);
+    private final AtomicInteger evicted = new AtomicInteger(0);
+    private final AtomicLong creationTime = new AtomicLong(0);
+    private final AtomicLong waitTime = new AtomicLong(0);
+    private final AtomicLong leases = new AtomicLong(0);
+    private final ScheduledExecutorService evictor;
+
+    private static class InstanceHolder {
+        static KernelPool sInstance = new KernelPool();
+    }
+
+    public static KernelPool getInstance() {
+        return InstanceHolder.sInstance;
+    }
+
+    private static class Idle {
+        final IKernel kernel;
+        final long since = System.currentTimeMillis();
+
+        Idle(IKernel kernel) {
+            this.kernel = kernel;
+        }
+    }
+
+    /**
+     * A kernel which is exclusively used by a single client until it is closed.
+     */
+    public class Lease implements AutoCloseable {
+        private IKernel kernel;
+
+        private Lease(IKernel kernel) {
+            this.kernel = kernel;
+        }
+
+        public IKernel get() {
+            if (kernel == null) {
+                throw new IllegalStateException("kernel lease was already returned");
+            }
+
+            return kernel;
+        }
+
+        @Override
+        public void close() {
+            if (kernel != null) {
+                release(kernel);
+                kernel = null;
+            }
+        }
+    }
+
+    private KernelPool() {
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Rascal kernel pool eviction");
+            t.setDaemon(true);
+            return t;
+        });
+
+        evictor.scheduleWithFixedDelay(this::evictIdle, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Starts the minimal number of kernels in the background, such that the first client does not have to wait for it.
+     */
+    public void warmUp() {
+        new Job("Starting Rascal compiler kernel") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                while (size.get() < MIN_SIZE) {
+                    if (!reserve()) {
+                        break;
+                    }
+
+                    try {
+                        idle.offerFirst(new Idle(create()));
+                    }
+                    catch (IOException e) {
+                        size.decrementAndGet();
+                        return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "could not start Rascal kernel", e);
+                    }
+                }
+
+                return Status.OK_STATUS;
+            }
+        }.schedule();
+    }
+
+    /**
+     * Takes a kernel from the pool, creating a new one if there is no idle kernel and the pool is not
+     * yet full, or waiting for another client to return one otherwise.
+     */
+    public Lease lease() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+
+        try {
+            Idle available = idle.pollFirst();
+
+            if (available != null) {
+                return leased(available.kernel);
+            }
+
+            if (reserve()) {
+                try {
+                    return leased(create());
+                }
+                catch (IOException | RuntimeException e) {
+                    size.decrementAndGet();
+                    throw e;
+                }
+            }
+
+            return leased(idle.takeFirst().kernel);
+        }
+        finally {
+            waitTime.addAndGet(System.nanoTime() - start);
+            leases.incrementAndGet();
+        }
+    }
+
+    /**
+     * Starts a kernel which is not part of the pool, for a client which must never wait for a lease, such as the
+     * UI thread. The client is responsible for using it from one thread at a time.
+     */
+    public IKernel createDedicated() throws IOException {
+        return create();
+    }
+
+    private Lease leased(IKernel kernel) {
+        leased.incrementAndGet();
+        return new Lease(kernel);
+    }
+
+    private void release(IKernel kernel) {
+        leased.decrementAndGet();
+        // most recently used kernels go in front, such that the least recently used end up being evicted
+        idle.offerFirst(new Idle(kernel));
+    }
+
+    /**
+     * Claims room for one more kernel in the pool.
+     */
+    private boolean reserve() {
+        int current;
+
+        do {
+            current = size.get();
+
+            if (current >= MAX_SIZE) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+
+        return true;
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+
+        for (Iterator<Idle> it = idle.descendingIterator(); it.hasNext(); ) {
+            Idle candidate = it.next();
+
+            if (now - candidate.since > IDLE_TIMEOUT_MS && size.get() > MIN_SIZE && idle.removeLastOccurrence(candidate)) {
+                size.decrementAndGet();
+                evicted.incrementAndGet();
+            }
+        }
+    }
+
+    private IKernel create() throws IOException {
+        long start = System.nanoTime();
+
+        try {
+            PrintStream out = new PrintStream(RuntimePlugin.getInstance().getConsoleStream());
+            PrintStream err = new PrintStream(RuntimePlugin.getInstance().getConsoleStream());
+            IValueFactory vf = ValueFactoryFactory.getValueFactory();
+
+            Bundle rascalBundle = Activator.getInstance().getBundle();
+            URL entry = FileLocator.toFileURL(rascalBundle.getEntry("lib/rascal.jar"));
+            ISourceLocation rascalJarLoc = vf.sourceLocation(URIUtil.fromURL(entry));
+            PathConfig pcfg = new PathConfig()
+                    .addJavaCompilerPath(rascalJarLoc)
+                    .addClassloader(rascalJarLoc);
+
+            return Java2Rascal.Builder
+                    .bridge(vf, pcfg, IKernel.class)
+                    .stderr(err)
+                    .stdout(out)
+                    .build();
+        }
+        catch (URISyntaxException e) {
+            throw new IOException("could not locate lib/rascal.jar", e);
+        }
+        finally {
+            creationTime.addAndGet(System.nanoTime() - start);
+            created.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of kernels in the pool, both leased and idle
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    public int getLeased() {
+        return leased.get();
+    }
+
+    public int getCreated() {
+        return created.get();
+    }
+
+    public int getEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * @return the average time it took to start a kernel, in milliseconds
+     */
+    public long getAverageCreationTime() {
+        int n = created.get();
+        return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(creationTime.get() / n);
+    }
+
+    /**
+     * @return the average time clients waited for a lease, including kernel creation, in milliseconds
+     */
+    public long getAverageWaitTime() {
+        long n = leases.get();
+        return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitTime.get() / n);
+    }
+
+    @Override
+    public String toString() {
+        return "KernelPool [size=" + getSize() + ", leased=" + getLeased() + ", created=" + getCreated()
+            + ", evicted=" + getEvicted() + ", avgCreation=" + getAverageCreationTime() + "ms, avgWait="
+            + getAverageWaitTime() + "ms]";
+    }
+}
@@ -0,0 +1,90 @@
+package org.rascalmpl.eclipse.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A cheap, thread-safe histogram of durations with buckets of exponentially growing width: the first bucket
+ * counts durations below one millisecond, bucket i counts durations from 2^(i-1) up to 2^i milliseconds, and
+ * the last bucket counts everything longer than that. Percentiles are estimated by the upper bound of the bucket
+ * they fall in, which is precise enough to tell a snappy editor from a sluggish one.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 18; // the last bucket starts at 2^16ms, a little over a minute
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong total = new AtomicLong(0);
+    private final AtomicLong max = new AtomicLong(0);
+
+    public void record(long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = millis == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+
+        counts.incrementAndGet(bucket);
+        count.incrementAndGet();
+        total.addAndGet(millis);
+        max.accumulateAndGet(millis, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the average duration in milliseconds
+     */
+    public long getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / n;
+    }
+
+    /**
+     * @return the longest duration in milliseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile a number between 0 and 100
+     * @return an upper bound in milliseconds for the given percentile of the recorded durations
+     */
+    public long getPercentile(double percentile) {
+        long n = count.get();
+
+        if (n == 0) {
+            return 0;
+        }
+
+        long threshold = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += counts.get(i);
+
+            if (seen >= threshold) {
+                return Math.min(1L << i, getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + getCount() + ", mean=" + getMean() + "ms, p50=" + getPercentile(50) + "ms, p90="
+            + getPercentile(90) + "ms, p99=" + getPercentile(99) + "ms, max=" + getMax() + "ms";
+    }
+}
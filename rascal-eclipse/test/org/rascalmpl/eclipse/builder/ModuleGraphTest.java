@@ -0,0 +1,141 @@
+package org.rascalmpl.eclipse.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.rascalmpl.eclipse.builder.ModuleGraph.Component;
+
+public class ModuleGraphTest {
+    private final Map<String, Set<String>> imports = new HashMap<>();
+
+    private void imports(String module, String... imported) {
+        imports.put(module, new LinkedHashSet<>(Arrays.asList(imported)));
+    }
+
+    private ModuleGraph<String> graph(String... dirty) {
+        Map<String, String> modules = new HashMap<>();
+
+        for (String name : dirty) {
+            modules.put(name, name);
+        }
+
+        return new ModuleGraph<>(modules, imports);
+    }
+
+    private static Component<String> componentOf(ModuleGraph<String> graph, String name) {
+        for (Component<String> comp : graph.getComponents()) {
+            if (comp.getNames().contains(name)) {
+                return comp;
+            }
+        }
+
+        throw new AssertionError(name + " is not in the graph");
+    }
+
+    private static void assertOrdered(ModuleGraph<String> graph) {
+        List<Component<String>> components = graph.getComponents();
+
+        for (int i = 0; i < components.size(); i++) {
+            Component<String> comp = components.get(i);
+            assertEquals(i, comp.getIndex());
+
+            for (Component<String> dep : comp.getDependencies()) {
+                assertTrue(dep + " should come before " + comp, dep.getIndex() < i);
+            }
+        }
+    }
+
+    @Test
+    public void ordersAChain() {
+        imports("C", "B");
+        imports("B", "A");
+        ModuleGraph<String> graph = graph("A", "B", "C");
+
+        assertEquals(3, graph.size());
+        assertOrdered(graph);
+        assertEquals(Collections.singleton(componentOf(graph, "A")), componentOf(graph, "B").getDependencies());
+        assertEquals(Collections.singleton(componentOf(graph, "B")), componentOf(graph, "C").getDependencies());
+    }
+
+    @Test
+    public void groupsModulesWhichImportEachOther() {
+        imports("A", "B");
+        imports("B", "A");
+        imports("C", "A");
+        ModuleGraph<String> graph = graph("A", "B", "C");
+
+        assertEquals(2, graph.size());
+        assertOrdered(graph);
+        assertEquals(Arrays.asList("A", "B"), graph.getComponents().get(0).getNames());
+        assertEquals(Arrays.asList("A", "B"), graph.getComponents().get(0).getModules());
+        assertEquals(Collections.singleton(componentOf(graph, "A")), componentOf(graph, "C").getDependencies());
+    }
+
+    @Test
+    public void keepsIndependentModulesApart() {
+        imports("A");
+        imports("B", "Lib");
+        ModuleGraph<String> graph = graph("A", "B");
+
+        assertEquals(2, graph.size());
+        assertTrue(componentOf(graph, "A").getDependencies().isEmpty());
+        assertTrue(componentOf(graph, "B").getDependencies().isEmpty());
+    }
+
+    @Test
+    public void ordersViaModulesWhichAreNotCompiled() {
+        imports("C", "B");
+        imports("B", "A");
+        imports("A");
+        ModuleGraph<String> graph = graph("A", "C");
+
+        assertEquals(2, graph.size());
+        assertOrdered(graph);
+        assertEquals(Collections.singleton(componentOf(graph, "A")), componentOf(graph, "C").getDependencies());
+    }
+
+    @Test
+    public void groupsCyclesViaModulesWhichAreNotCompiled() {
+        imports("A", "B");
+        imports("B", "C");
+        imports("C", "A");
+        imports("D", "B");
+        ModuleGraph<String> graph = graph("A", "C", "D");
+
+        assertEquals(2, graph.size());
+        assertOrdered(graph);
+        assertEquals(Arrays.asList("A", "C"), componentOf(graph, "A").getNames());
+        assertEquals(Collections.singleton(componentOf(graph, "A")), componentOf(graph, "D").getDependencies());
+    }
+
+    @Test
+    public void ignoresCyclesBackToTheSameModule() {
+        imports("A", "B");
+        imports("B", "A");
+        ModuleGraph<String> graph = graph("A");
+
+        assertEquals(1, graph.size());
+        assertTrue(componentOf(graph, "A").getDependencies().isEmpty());
+    }
+
+    @Test
+    public void ordersDeterministically() {
+        imports("A");
+        imports("B");
+        imports("C");
+
+        List<Component<String>> components = graph("C", "A", "B").getComponents();
+        assertEquals(Arrays.asList("A"), components.get(0).getNames());
+        assertEquals(Arrays.asList("B"), components.get(1).getNames());
+        assertEquals(Arrays.asList("C"), components.get(2).getNames());
+    }
+}
@@ -0,0 +1,80 @@
+package org.rascalmpl.eclipse.builder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ModuleImportsTest {
+    private static final URI URI = java.net.URI.create("unknown:///A.rsc");
+
+    private static Set<String> names(String... names) {
+        return new LinkedHashSet<>(Arrays.asList(names));
+    }
+
+    @Test
+    public void findsImportsAndExtends() {
+        ModuleImports imports = ModuleImports.scan("module A\nimport B;\nextend C;\nimport lang::rascal::D;\n\nint x = 1;\n", URI);
+
+        assertEquals(names("B", "lang::rascal::D"), imports.getImports());
+        assertEquals(names("C"), imports.getExtends());
+        assertEquals(names("B", "lang::rascal::D", "C"), imports.getDependencies());
+    }
+
+    @Test
+    public void ignoresLayoutAndEscapesInNames() {
+        ModuleImports imports = ModuleImports.scan("module A\nimport lang :: /* comment */ \\syntax::B;\n", URI);
+
+        assertEquals(names("lang::syntax::B"), imports.getImports());
+    }
+
+    @Test
+    public void ignoresImportsInTags() {
+        ModuleImports imports = ModuleImports.scan("@doc{Use it like: import Fake;}\nmodule A\nimport B;\n", URI);
+
+        assertEquals(names("B"), imports.getImports());
+    }
+
+    @Test
+    public void ignoresTheBody() {
+        ModuleImports imports = ModuleImports.scan("module A\nimport B;\nlexical Q = [\\\"];\nstr s = \"import Fake;\";\n", URI);
+
+        assertEquals(names("B"), imports.getImports());
+        assertEquals(Collections.emptySet(), imports.getExtends());
+    }
+
+    @Test
+    public void scansTheTextWhenTheHeaderDoesNotParse() {
+        ModuleImports imports = ModuleImports.scan("modle A\nimport B;\nextend C;\n", URI);
+
+        assertEquals(names("B"), imports.getImports());
+        assertEquals(names("C"), imports.getExtends());
+    }
+
+    @Test
+    public void scanTextSkipsCommentsAndStrings() {
+        ModuleImports imports = ModuleImports.scanText("module A\n// import X;\n/* import Y; */\nimport B;\nstr s = \"import Z;\";\n");
+
+        assertEquals(names("B"), imports.getImports());
+    }
+
+    @Test
+    public void scanTextNormalizesNames() {
+        ModuleImports imports = ModuleImports.scanText("module A\nimport lang :: \\syntax :: B ;\nextend\n  C;\n");
+
+        assertEquals(names("lang::syntax::B"), imports.getImports());
+        assertEquals(names("C"), imports.getExtends());
+    }
+
+    @Test
+    public void scanTextHandlesEscapedQuotesInStrings() {
+        ModuleImports imports = ModuleImports.scanText("module A\nstr s = \"a \\\" import X;\";\nimport B;\n");
+
+        assertEquals(names("B"), imports.getImports());
+    }
+}
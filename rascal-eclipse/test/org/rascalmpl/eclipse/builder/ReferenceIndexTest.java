@@ -0,0 +1,142 @@
+package org.rascalmpl.eclipse.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.rascalmpl.values.ValueFactoryFactory;
+
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IValueFactory;
+
+public class ReferenceIndexTest {
+    private static final IValueFactory VF = ValueFactoryFactory.getValueFactory();
+
+    private ReferenceIndex index;
+    private ISourceLocation a;
+    private ISourceLocation b;
+
+    @Before
+    public void setUp() throws URISyntaxException {
+        index = new ReferenceIndex();
+        a = VF.sourceLocation("project", "p", "/src/A.rsc");
+        b = VF.sourceLocation("project", "p", "/src/B.rsc");
+    }
+
+    private ISourceLocation at(ISourceLocation file, int offset, int length) {
+        return VF.sourceLocation(file, offset, length);
+    }
+
+    @Test
+    public void findsUsesInOtherModules() {
+        ISourceLocation def = at(b, 10, 5);
+        index.put(a, Arrays.asList(at(a, 100, 3), def, at(a, 200, 3), def));
+
+        assertEquals(set(at(a, 100, 3), at(a, 200, 3)), new HashSet<>(index.findReferences(def)));
+        assertEquals(Arrays.asList(at(a, 100, 3), at(a, 200, 3)), index.findReferencesAt(a, 101));
+        assertEquals(Arrays.asList(at(a, 100, 3), at(a, 200, 3)), index.findReferencesAt(b, 12));
+        assertEquals(2, index.findReferencesInto(b).size());
+        assertEquals(Collections.emptyList(), index.findReferencesAt(a, 150));
+    }
+
+    @Test
+    public void findsTheInnermostDefinition() {
+        ISourceLocation outer = at(b, 0, 100);
+        ISourceLocation inner = at(b, 10, 20);
+        index.put(a, Arrays.asList(at(a, 5, 1), outer, at(a, 50, 1), inner));
+
+        assertEquals(Arrays.asList(at(a, 50, 1)), index.findReferencesAt(b, 15));
+        assertEquals(Arrays.asList(at(a, 5, 1)), index.findReferencesAt(b, 50));
+    }
+
+    @Test
+    public void putReplacesTheContributionOfAModule() {
+        ISourceLocation def = at(b, 10, 5);
+        index.put(a, Arrays.asList(at(a, 100, 3), def));
+        index.put(a, Arrays.asList(at(a, 300, 3), def));
+
+        assertEquals(Arrays.asList(at(a, 300, 3)), index.findReferences(def));
+    }
+
+    @Test
+    public void combinesTheContributionsOfModules() throws URISyntaxException {
+        ISourceLocation c = VF.sourceLocation("project", "q", "/src/C.rsc");
+        ISourceLocation def = at(b, 10, 5);
+        index.put(a, Arrays.asList(at(a, 100, 3), def));
+        index.put(c, Arrays.asList(at(c, 7, 3), def));
+
+        assertEquals(Arrays.asList(at(a, 100, 3), at(c, 7, 3)), index.findReferencesAt(b, 10));
+
+        index.remove(a);
+        assertEquals(Arrays.asList(at(c, 7, 3)), index.findReferencesAt(b, 10));
+    }
+
+    @Test
+    public void removeForgetsDefinitionsWithoutUses() {
+        ISourceLocation def = at(b, 10, 5);
+        index.put(a, Arrays.asList(at(a, 100, 3), def));
+        index.remove(a);
+
+        assertEquals(Collections.emptyList(), index.findReferences(def));
+        assertEquals(Collections.emptyList(), index.findReferencesInto(b));
+        assertEquals(Collections.emptyList(), index.findReferencesAt(b, 12));
+
+        // the definition is found again once it is used again
+        index.put(a, Arrays.asList(at(a, 100, 3), def));
+        assertEquals(Arrays.asList(at(a, 100, 3)), index.findReferencesInto(b));
+    }
+
+    @Test
+    public void findsLocationsWithoutOffsets() {
+        index.put(a, Arrays.asList(at(a, 0, 6), b));
+
+        assertEquals(Arrays.asList(at(a, 0, 6)), index.findReferences(b));
+    }
+
+    @Test
+    public void compactsWhenHalfOfTheLocationsAreStale() {
+        List<ISourceLocation> many = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            many.add(at(a, i * 10, 3));
+            many.add(at(b, i * 10, 5));
+        }
+
+        index.put(a, many);
+        assertEquals(6000, index.getLocationCount());
+
+        ISourceLocation def = at(b, 20, 5);
+        index.put(a, Arrays.asList(at(a, 40000, 3), def, at(a, 50000, 3), def));
+
+        assertEquals(3, index.getLocationCount());
+        assertEquals(Arrays.asList(at(a, 40000, 3), at(a, 50000, 3)), index.findReferencesAt(b, 21));
+        assertEquals(Collections.emptyList(), index.findReferencesAt(b, 10));
+        assertTrue(index.findReferences(at(b, 10, 5)).isEmpty());
+    }
+
+    @Test
+    public void growsBeyondTheInitialTables() {
+        List<ISourceLocation> many = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            many.add(at(a, i * 10, 3));
+            many.add(at(b, i, 1));
+        }
+
+        index.put(a, many);
+
+        for (int i = 0; i < 5000; i += 499) {
+            assertEquals(Arrays.asList(at(a, i * 10, 3)), index.findReferences(at(b, i, 1)));
+        }
+    }
+
+    private static HashSet<ISourceLocation> set(ISourceLocation... locs) {
+        return new HashSet<>(Arrays.asList(locs));
+    }
+}
@@ -0,0 +1,180 @@
+package org.rascalmpl.eclipse.editor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.net.URISyntaxException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.rascalmpl.eclipse.editor.IncrementalParser.Chain;
+import org.rascalmpl.eclipse.editor.IncrementalParser.Shift;
+import org.rascalmpl.values.ValueFactoryFactory;
+import org.rascalmpl.values.uptr.ITree;
+import org.rascalmpl.values.uptr.TreeAdapter;
+
+import io.usethesource.vallang.IList;
+import io.usethesource.vallang.ISourceLocation;
+import io.usethesource.vallang.IValueFactory;
+
+public class IncrementalParserTest {
+    private static final IValueFactory VF = ValueFactoryFactory.getValueFactory();
+
+    private static final String MODULE =
+        "module A\n"
+        + "\n"
+        + "int f(int x) = x + 1;\n"
+        + "\n"
+        + "int g(int y) {\n"
+        + "  return y * 2;\n"
+        + "}\n"
+        + "\n"
+        + "str h() = \"h\";\n";
+
+    private ISourceLocation loc;
+    private IncrementalParser parser;
+
+    @Before
+    public void setUp() throws URISyntaxException {
+        loc = VF.sourceLocation("unknown", "", "/A.rsc");
+        parser = new IncrementalParser();
+        parser.update(MODULE, full(MODULE));
+    }
+
+    private ITree full(String input) {
+        return ParserCache.parseModule(input.toCharArray(), loc);
+    }
+
+    private static String replace(String input, String from, String to) {
+        int at = input.indexOf(from);
+        return input.substring(0, at) + to + input.substring(at + from.length());
+    }
+
+    /**
+     * Parses the input incrementally, and checks that the tree and all its locations are the same as after a full parse.
+     */
+    private ITree assertIncremental(String input) {
+        ITree tree = parser.parse(input, loc);
+        assertNotNull("could not parse incrementally", tree);
+        parser.update(input, tree);
+
+        ITree materialized = parser.getDisplacement(tree).materialize(tree);
+        ITree expected = full(input);
+
+        assertEquals(expected, materialized);
+        assertSameLocations(expected, materialized);
+        return materialized;
+    }
+
+    private static void assertSameLocations(ITree expected, ITree actual) {
+        assertEquals(TreeAdapter.yield(expected), TreeAdapter.getLocation(expected), TreeAdapter.getLocation(actual));
+
+        if (TreeAdapter.isAppl(expected)) {
+            IList e = TreeAdapter.getArgs(expected);
+            IList a = TreeAdapter.getArgs(actual);
+            assertEquals(e.length(), a.length());
+
+            for (int i = 0; i < e.length(); i++) {
+                assertSameLocations((ITree) e.get(i), (ITree) a.get(i));
+            }
+        }
+    }
+
+    private static ITree toplevel(ITree module, int index) {
+        ITree top = TreeAdapter.getStartTop(module);
+        return (ITree) TreeAdapter.getListASTArgs(TreeAdapter.getArg(TreeAdapter.getArg(top, "body"), "toplevels")).get(index);
+    }
+
+    @Test
+    public void editInTheFirstDeclaration() {
+        assertIncremental(replace(MODULE, "x + 1", "x + 100"));
+    }
+
+    @Test
+    public void editInTheMiddleDeclarationAddingLines() {
+        ITree before = full(MODULE);
+        parser.update(MODULE, before);
+
+        ITree after = assertIncremental(replace(MODULE, "  return y * 2;\n", "  y += 1;\n  return y * 2;\n"));
+
+        // the declaration before the edit did not move, so it is shared
+        assertSame(toplevel(before, 0), toplevel(after, 0));
+    }
+
+    @Test
+    public void editInTheLastDeclaration() {
+        assertIncremental(replace(MODULE, "\"h\"", "\"hello\""));
+    }
+
+    @Test
+    public void deletionInADeclaration() {
+        assertIncremental(replace(MODULE, "y * 2", "y"));
+    }
+
+    @Test
+    public void successiveEdits() {
+        String first = replace(MODULE, "  return y * 2;\n", "  return\n    y * 2;\n");
+        assertIncremental(first);
+
+        String second = replace(first, "x + 1", "x + 2 + 3");
+        assertIncremental(second);
+
+        String third = replace(second, "\"h\"", "\"h\" + \"i\"");
+        assertIncremental(third);
+    }
+
+    @Test
+    public void editAcrossTwoDeclarations() {
+        assertNull(parser.parse(replace(MODULE, "1;\n\nint g", "2;\nint gg"), loc));
+    }
+
+    @Test
+    public void editInTheHeader() {
+        assertNull(parser.parse(replace(MODULE, "module A", "module AB"), loc));
+    }
+
+    @Test
+    public void editWhichDoesNotParse() {
+        assertNull(parser.parse(replace(MODULE, "x + 1", "x + "), loc));
+    }
+
+    @Test
+    public void sameInputGivesTheSameTree() {
+        ITree tree = parser.parse(MODULE, loc);
+        assertNotNull(tree);
+        assertSame(tree, parser.parse(MODULE, loc));
+    }
+
+    @Test
+    public void shiftMovesOnlyPositionsAfterTheEdit() {
+        // an edit which ended at offset 10, on line 2 column 3, and added 5 characters, one of them a newline
+        Shift shift = new Shift(10, 5, 2, 1, -2);
+
+        ISourceLocation before = VF.sourceLocation(loc, 2, 3, 1, 1, 2, 5);
+        assertEquals(before, shift.apply(before));
+
+        ISourceLocation sameLine = VF.sourceLocation(loc, 10, 2, 2, 2, 3, 5);
+        assertEquals(VF.sourceLocation(loc, 15, 2, 3, 3, 1, 3), shift.apply(sameLine));
+
+        ISourceLocation laterLine = VF.sourceLocation(loc, 20, 4, 4, 4, 1, 5);
+        assertEquals(VF.sourceLocation(loc, 25, 4, 5, 5, 1, 5), shift.apply(laterLine));
+
+        ISourceLocation around = VF.sourceLocation(loc, 5, 10, 1, 3, 5, 2);
+        assertEquals(VF.sourceLocation(loc, 5, 15, 1, 4, 5, 2), shift.apply(around));
+    }
+
+    @Test
+    public void chainsApplyShiftsInOrder() {
+        Shift first = new Shift(0, 10, 1, 0, 10);
+        Shift second = new Shift(12, 1, 1, 0, 1);
+        Chain chain = Chain.then(Chain.then(null, first), second);
+        ISourceLocation l = VF.sourceLocation(loc, 5, 1, 1, 1, 5, 6);
+
+        // the first shift moves the location to offset 15, which the second then moves to 16
+        assertEquals(VF.sourceLocation(loc, 16, 1, 1, 1, 16, 17), Chain.apply(chain, l));
+        assertEquals(Chain.apply(chain, l), Chain.apply(Chain.concat(Chain.then(null, first), Chain.then(null, second)), l));
+        assertSame(l, Chain.apply(null, l));
+    }
+}